@@ -0,0 +1,72 @@
+package com.n1k0lai.calendarwidget;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * The default range of the calendar, 1970-2100, in a given locale and time zone along with
+ * random dates and touch locations inside it.
+ */
+@State(Scope.Benchmark)
+public class CalendarRangeState {
+
+    static final int SAMPLE_COUNT = 1024;
+    static final int WEEK_WIDTH = 1080;
+
+    @Param({"en_US", "de_DE", "ar_EG", "ja_JP"})
+    public String locale;
+
+    @Param({"UTC", "America/New_York", "Europe/Berlin", "America/Sao_Paulo", "Australia/Lord_Howe"})
+    public String timeZone;
+
+    TimeZone zone;
+    Calendar minDate;
+    Calendar maxDate;
+    int firstDayOfWeek;
+    WeekIndex weekIndex;
+    long[] dates = new long[SAMPLE_COUNT];
+    int[] weeks = new int[SAMPLE_COUNT];
+    float[] locations = new float[SAMPLE_COUNT];
+
+    @Setup
+    public void setUp() {
+        String[] localeParts = locale.split("_");
+        Locale calendarLocale = new Locale(localeParts[0], localeParts[1]);
+        zone = TimeZone.getTimeZone(timeZone);
+
+        minDate = Calendar.getInstance(zone, calendarLocale);
+        minDate.clear();
+        minDate.set(1970, Calendar.JANUARY, 1);
+        maxDate = Calendar.getInstance(zone, calendarLocale);
+        maxDate.clear();
+        maxDate.set(2100, Calendar.JANUARY, 1);
+        firstDayOfWeek = minDate.getFirstDayOfWeek();
+
+        weekIndex = new WeekIndex(WeekIndex.toEpochDay(minDate), WeekIndex.toEpochDay(maxDate),
+                firstDayOfWeek, minDate.getMinimalDaysInFirstWeek());
+
+        Random random = new Random(42);
+        long range = maxDate.getTimeInMillis() - minDate.getTimeInMillis();
+        for (int i = 0; i < SAMPLE_COUNT; i++) {
+            dates[i] = minDate.getTimeInMillis() + (long) (random.nextDouble() * range);
+            weeks[i] = random.nextInt(weekIndex.getWeekCount());
+            locations[i] = random.nextFloat() * WEEK_WIDTH;
+        }
+    }
+
+    /**
+     * Creates a scratch calendar configured like the ones of the view.
+     */
+    Calendar newCalendar() {
+        Calendar calendar = (Calendar) minDate.clone();
+        calendar.setFirstDayOfWeek(firstDayOfWeek);
+        return calendar;
+    }
+}
@@ -0,0 +1,80 @@
+package com.n1k0lai.calendarwidget;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.text.DateFormatSymbols;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Compares the locale and time zone dependent part of the construction of a calendar view:
+ * created from scratch as the view used to, with a cold {@link CalendarResources} and with
+ * the shared warm one.
+ */
+@State(Scope.Benchmark)
+public class ConstructionBenchmark {
+
+    @Param({"en_US", "de_DE", "ar_EG", "ja_JP"})
+    public String locale;
+
+    @Param({"UTC", "America/New_York", "Australia/Lord_Howe"})
+    public String timeZone;
+
+    private Locale mLocale;
+    private TimeZone mZone;
+
+    @Setup
+    public void setUp() {
+        String[] localeParts = locale.split("_");
+        mLocale = new Locale(localeParts[0], localeParts[1]);
+        mZone = TimeZone.getTimeZone(timeZone);
+        CalendarResources.get(mLocale, mZone);
+    }
+
+    @Benchmark
+    public void unshared(Blackhole blackhole) throws ParseException {
+        Calendar minDate = Calendar.getInstance(mZone, mLocale);
+        Calendar maxDate = Calendar.getInstance(mZone, mLocale);
+        blackhole.consume(Calendar.getInstance(mZone, mLocale));
+        blackhole.consume(Calendar.getInstance(mZone, mLocale));
+        blackhole.consume(new SimpleDateFormat("EEEE d MMMM yyyy", mLocale));
+        blackhole.consume(new SimpleDateFormat("LLLL yyyy", mLocale));
+        blackhole.consume(new SimpleDateFormat("EEEE d MMMM", mLocale));
+        blackhole.consume(DateFormatSymbols.getInstance(mLocale).getShortWeekdays());
+        SimpleDateFormat dateFormat = new SimpleDateFormat(CalendarResources.DATE_FORMAT);
+        dateFormat.setTimeZone(mZone);
+        minDate.setTime(dateFormat.parse(CalendarResources.DEFAULT_MIN_DATE));
+        maxDate.setTime(dateFormat.parse(CalendarResources.DEFAULT_MAX_DATE));
+        blackhole.consume(minDate);
+        blackhole.consume(maxDate);
+    }
+
+    @Benchmark
+    public void coldCache(Blackhole blackhole) {
+        createCalendars(new CalendarResources(mLocale, mZone), blackhole);
+    }
+
+    @Benchmark
+    public void warmCache(Blackhole blackhole) {
+        createCalendars(CalendarResources.get(mLocale, mZone), blackhole);
+    }
+
+    private static void createCalendars(CalendarResources resources, Blackhole blackhole) {
+        Calendar minDate = resources.newCalendar();
+        Calendar maxDate = resources.newCalendar();
+        blackhole.consume(resources.newCalendar());
+        blackhole.consume(resources.newCalendar());
+        minDate.setTimeInMillis(resources.getDefaultMinDate());
+        maxDate.setTimeInMillis(resources.getDefaultMaxDate());
+        blackhole.consume(minDate);
+        blackhole.consume(maxDate);
+    }
+}
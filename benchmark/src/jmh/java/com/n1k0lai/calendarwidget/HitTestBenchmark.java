@@ -0,0 +1,63 @@
+package com.n1k0lai.calendarwidget;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+
+import java.util.Calendar;
+
+/**
+ * Compares resolving a touch location of a week row to an in-range day.
+ */
+public class HitTestBenchmark {
+
+    private static final int DAY_START = CalendarRangeState.WEEK_WIDTH / 8;
+
+    @Benchmark
+    @OperationsPerInvocation(CalendarRangeState.SAMPLE_COUNT)
+    public long calendarDayFromLocation(CalendarRangeState state) {
+        Calendar firstDay = state.newCalendar();
+        Calendar day = state.newCalendar();
+        long sum = 0;
+        for (int i = 0; i < CalendarRangeState.SAMPLE_COUNT; i++) {
+            float x = state.locations[i];
+            if (x < DAY_START) {
+                continue;
+            }
+            firstDay.setTimeInMillis(state.minDate.getTimeInMillis());
+            firstDay.add(Calendar.WEEK_OF_YEAR, state.weeks[i]);
+            firstDay.add(Calendar.DAY_OF_MONTH, state.firstDayOfWeek - firstDay.get(Calendar.DAY_OF_WEEK));
+
+            int dayPosition = getDayPosition(x);
+            day.setTimeInMillis(firstDay.getTimeInMillis());
+            day.add(Calendar.DAY_OF_MONTH, dayPosition);
+            if (!day.before(state.minDate) && !day.after(state.maxDate)) {
+                sum += day.get(Calendar.DAY_OF_MONTH);
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CalendarRangeState.SAMPLE_COUNT)
+    public long epochDayFromLocation(CalendarRangeState state) {
+        WeekIndex weekIndex = state.weekIndex;
+        long sum = 0;
+        for (int i = 0; i < CalendarRangeState.SAMPLE_COUNT; i++) {
+            float x = state.locations[i];
+            if (x < DAY_START) {
+                continue;
+            }
+            long day = weekIndex.getFirstDayOf(state.weeks[i]) + getDayPosition(x);
+            if (weekIndex.isInRange(day)) {
+                sum += day;
+            }
+        }
+        return sum;
+    }
+
+    private static int getDayPosition(float x) {
+        int dayPosition = (int) ((x - DAY_START) * WeekIndex.DAYS_PER_WEEK
+                / (CalendarRangeState.WEEK_WIDTH - DAY_START));
+        return Math.min(dayPosition, WeekIndex.DAYS_PER_WEEK - 1);
+    }
+}
@@ -0,0 +1,94 @@
+package com.n1k0lai.calendarwidget;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.LocalDate;
+import java.time.temporal.WeekFields;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * Measures the setup of the range and the jumps between distant weeks for the default range
+ * and for all the supported dates, years 1 to 9999, which should cost the same. The setup
+ * checks the jumped to weeks against <code>java.time</code> before measuring.
+ */
+@State(Scope.Benchmark)
+public class RangeSizeBenchmark {
+
+    private static final int JUMP_COUNT = 1024;
+
+    @Param({"default", "supported"})
+    public String range;
+
+    @Param({"UTC", "America/New_York", "Pacific/Kiritimati"})
+    public String timeZone;
+
+    private CalendarResources mResources;
+    private WeekIndex mWeekIndex;
+    private final int[] mJumps = new int[JUMP_COUNT];
+    private final int[] mDaysOfMonth = new int[WeekIndex.DAYS_PER_WEEK];
+    private final int[] mMonths = new int[WeekIndex.DAYS_PER_WEEK];
+
+    @Setup
+    public void setUp() {
+        mResources = new CalendarResources(Locale.GERMANY, TimeZone.getTimeZone(timeZone));
+        mWeekIndex = createWeekIndex();
+
+        // Alternate between both ends of the range and random weeks
+        Random random = new Random(42);
+        int lastWeek = mWeekIndex.getWeekCount() - 1;
+        for (int i = 0; i < JUMP_COUNT; i++) {
+            mJumps[i] = i % 3 == 0 ? 0 : i % 3 == 1 ? lastWeek : random.nextInt(lastWeek + 1);
+        }
+        for (int week : mJumps) {
+            checkWeek(week);
+        }
+    }
+
+    @Benchmark
+    public WeekIndex setUpRange() {
+        return createWeekIndex();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(JUMP_COUNT)
+    public int jump() {
+        int sum = 0;
+        for (int week : mJumps) {
+            long firstDay = mWeekIndex.getFirstDayOf(mWeekIndex.getWeekOf(mWeekIndex.getFirstDayOf(week)));
+            mWeekIndex.getWeekDays(week, mDaysOfMonth, mMonths);
+            sum += mWeekIndex.getWeekNumber(week) + mDaysOfMonth[0] + (int) firstDay;
+        }
+        return sum;
+    }
+
+    private WeekIndex createWeekIndex() {
+        boolean supported = range.equals("supported");
+        long minDate = supported ? mResources.getSupportedMinDate() : mResources.getDefaultMinDate();
+        long maxDate = supported ? mResources.getSupportedMaxDate() : mResources.getDefaultMaxDate();
+        Calendar calendar = mResources.newCalendar();
+        return new WeekIndex(WeekIndex.toEpochDay(minDate, mResources.getTimeZone()),
+                WeekIndex.toEpochDay(maxDate, mResources.getTimeZone()),
+                calendar.getFirstDayOfWeek(), calendar.getMinimalDaysInFirstWeek());
+    }
+
+    private void checkWeek(int week) {
+        LocalDate firstDay = LocalDate.ofEpochDay(mWeekIndex.getFirstDayOf(week));
+        mWeekIndex.getWeekDays(week, mDaysOfMonth, mMonths);
+        int weekNumber = firstDay.get(WeekFields.ISO.weekOfWeekBasedYear());
+        if (mWeekIndex.getWeekOf(firstDay.toEpochDay()) != week
+                && mWeekIndex.isInRange(firstDay.toEpochDay())
+                || mDaysOfMonth[0] != firstDay.getDayOfMonth()
+                || mMonths[0] != firstDay.getMonthValue() - 1
+                || mWeekIndex.getWeekNumber(week) != weekNumber) {
+            throw new IllegalStateException("Week " + week + " does not start on " + firstDay);
+        }
+    }
+}
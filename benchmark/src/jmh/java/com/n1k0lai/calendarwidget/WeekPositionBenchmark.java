@@ -0,0 +1,68 @@
+package com.n1k0lai.calendarwidget;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+
+import java.util.Calendar;
+
+/**
+ * Compares the week position lookups and the range setup of the adapter, computed from
+ * {@link Calendar} fields as the widget used to and from epoch days.
+ */
+public class WeekPositionBenchmark {
+
+    private static final long MILLIS_IN_DAY = 86400000L;
+    private static final long MILLIS_IN_WEEK = 7 * MILLIS_IN_DAY;
+
+    @Benchmark
+    @OperationsPerInvocation(CalendarRangeState.SAMPLE_COUNT)
+    public int calendarWeeksSinceMinDate(CalendarRangeState state) {
+        Calendar date = state.newCalendar();
+        int sum = 0;
+        for (long millis : state.dates) {
+            date.setTimeInMillis(millis);
+            sum += getWeeksSinceMinDate(state, date);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CalendarRangeState.SAMPLE_COUNT)
+    public int epochDayWeekOf(CalendarRangeState state) {
+        int sum = 0;
+        for (long millis : state.dates) {
+            sum += state.weekIndex.getWeekOf(WeekIndex.toEpochDay(millis, state.zone));
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int calendarAdapterInit(CalendarRangeState state) {
+        int weekCount = getWeeksSinceMinDate(state, state.maxDate);
+        if (state.minDate.get(Calendar.DAY_OF_WEEK) != state.firstDayOfWeek
+                || state.maxDate.get(Calendar.DAY_OF_WEEK) != state.firstDayOfWeek) {
+            weekCount++;
+        }
+        return weekCount;
+    }
+
+    @Benchmark
+    public WeekIndex epochDayAdapterInit(CalendarRangeState state) {
+        return new WeekIndex(WeekIndex.toEpochDay(state.minDate), WeekIndex.toEpochDay(state.maxDate),
+                state.firstDayOfWeek, state.minDate.getMinimalDaysInFirstWeek());
+    }
+
+    private static int getWeeksSinceMinDate(CalendarRangeState state, Calendar date) {
+        Calendar minDate = state.minDate;
+        if (date.before(minDate)) {
+            return 0;
+        }
+        long endTimeMillis = date.getTimeInMillis()
+                + date.getTimeZone().getOffset(date.getTimeInMillis());
+        long startTimeMillis = minDate.getTimeInMillis()
+                + minDate.getTimeZone().getOffset(minDate.getTimeInMillis());
+        long dayOffsetMillis = (minDate.get(Calendar.DAY_OF_WEEK) - state.firstDayOfWeek)
+                * MILLIS_IN_DAY;
+        return (int) ((endTimeMillis - startTimeMillis + dayOffsetMillis) / MILLIS_IN_WEEK);
+    }
+}
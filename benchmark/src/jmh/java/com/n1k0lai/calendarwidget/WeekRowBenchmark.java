@@ -0,0 +1,51 @@
+package com.n1k0lai.calendarwidget;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Calendar;
+
+/**
+ * Compares the generation of the date part of every week row of the range, i.e. the week of
+ * year, the days of month, the months and the range checks bound by a week view.
+ */
+public class WeekRowBenchmark {
+
+    @Benchmark
+    public void calendarRows(CalendarRangeState state, Blackhole blackhole) {
+        Calendar date = state.newCalendar();
+        int weekCount = state.weekIndex.getWeekCount();
+        for (int week = 0; week < weekCount; week++) {
+            date.setTimeInMillis(state.minDate.getTimeInMillis());
+            date.add(Calendar.WEEK_OF_YEAR, week);
+            blackhole.consume(date.get(Calendar.WEEK_OF_YEAR));
+            date.add(Calendar.DAY_OF_MONTH, state.firstDayOfWeek - date.get(Calendar.DAY_OF_WEEK));
+            for (int d = 0; d < WeekIndex.DAYS_PER_WEEK; d++) {
+                blackhole.consume(date.get(Calendar.MONTH));
+                if (date.before(state.minDate) || date.after(state.maxDate)) {
+                    blackhole.consume(0);
+                } else {
+                    blackhole.consume(date.get(Calendar.DAY_OF_MONTH));
+                }
+                date.add(Calendar.DAY_OF_MONTH, 1);
+            }
+        }
+    }
+
+    @Benchmark
+    public void epochDayRows(CalendarRangeState state, Blackhole blackhole) {
+        WeekIndex weekIndex = state.weekIndex;
+        int[] daysOfMonth = new int[WeekIndex.DAYS_PER_WEEK];
+        int[] months = new int[WeekIndex.DAYS_PER_WEEK];
+        int weekCount = weekIndex.getWeekCount();
+        for (int week = 0; week < weekCount; week++) {
+            blackhole.consume(weekIndex.getWeekNumber(week));
+            long firstDay = weekIndex.getFirstDayOf(week);
+            weekIndex.getWeekDays(week, daysOfMonth, months);
+            for (int d = 0; d < WeekIndex.DAYS_PER_WEEK; d++) {
+                blackhole.consume(months[d]);
+                blackhole.consume(weekIndex.isInRange(firstDay + d) ? daysOfMonth[d] : 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.n1k0lai.calendarwidget;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Bundle;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+
+import com.n1k0lai.calendarwidget.test.R;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+
+/**
+ * Compares the first frame of a calendar with the inflated layout and with the layout built in
+ * code, see the <code>inflateLayout</code> attribute. A first frame is the inflation of the
+ * calendar, its measure, its layout and its drawing into a bitmap. It runs on a device or an
+ * emulator:
+ * <pre>
+ * ./gradlew connectedAndroidTest
+ * </pre>
+ * The median time of both is reported in the instrumentation status and the log.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FirstFrameBenchmark {
+
+    private static final String TAG = "FirstFrameBenchmark";
+    private static final int WARMUP_FRAMES = 10;
+    private static final int MEASURED_FRAMES = 50;
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1200;
+
+    private final Context mContext = InstrumentationRegistry.getContext();
+    private final Bitmap mBitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+    private final Canvas mCanvas = new Canvas(mBitmap);
+
+    @Test
+    public void firstFrames() {
+        final long[] inflatedNanos = new long[MEASURED_FRAMES];
+        final long[] builtNanos = new long[MEASURED_FRAMES];
+        // The views create handlers, so they are created on the main thread like in an activity
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                // Interleave the runs so a change of the clock of the device affects both
+                for (int i = 0; i < WARMUP_FRAMES; i++) {
+                    drawFirstFrame(R.layout.benchmark_inflated_calendar);
+                    drawFirstFrame(R.layout.benchmark_built_calendar);
+                }
+                for (int i = 0; i < MEASURED_FRAMES; i++) {
+                    inflatedNanos[i] = drawFirstFrame(R.layout.benchmark_inflated_calendar);
+                    builtNanos[i] = drawFirstFrame(R.layout.benchmark_built_calendar);
+                }
+            }
+        });
+        mBitmap.recycle();
+
+        Bundle results = new Bundle();
+        results.putLong("inflatedFirstFrameNanos", median(inflatedNanos));
+        results.putLong("builtFirstFrameNanos", median(builtNanos));
+        Log.i(TAG, "inflated: " + median(inflatedNanos) + " ns, built in code: " + median(builtNanos) + " ns");
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, results);
+    }
+
+    /**
+     * Creates a calendar from the given layout and draws its first frame.
+     *
+     * @return The duration of the first frame in nanoseconds.
+     */
+    private long drawFirstFrame(int layoutResId) {
+        long startNanos = System.nanoTime();
+        View view = LayoutInflater.from(mContext).inflate(layoutResId, null);
+        view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, WIDTH, HEIGHT);
+        view.draw(mCanvas);
+        return System.nanoTime() - startNanos;
+    }
+
+    private static long median(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
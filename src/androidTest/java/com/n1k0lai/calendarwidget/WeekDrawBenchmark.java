@@ -0,0 +1,146 @@
+package com.n1k0lai.calendarwidget;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.os.Bundle;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Calendar;
+
+/**
+ * Compares the drawing of the frames of the weeks with the day and week numbers drawn as text
+ * and blitted from a {@link NumberAtlas}. It draws into a bitmap with the rasterizer of the
+ * device, so it runs on a device or an emulator:
+ * <pre>
+ * ./gradlew connectedAndroidTest
+ * </pre>
+ * The time per frame of both is reported in the instrumentation status and the log.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WeekDrawBenchmark {
+
+    private static final String TAG = "WeekDrawBenchmark";
+    private static final int DAYS_PER_WEEK = WeekIndex.DAYS_PER_WEEK;
+    private static final int SHOWN_WEEK_COUNT = 6;
+    private static final int WARMUP_FRAMES = 200;
+    private static final int MEASURED_FRAMES = 1000;
+    private static final int WIDTH = 1080;
+    private static final int WEEK_HEIGHT = 160;
+
+    private final int[] mDaysOfMonth = new int[DAYS_PER_WEEK];
+    private final int[] mMonths = new int[DAYS_PER_WEEK];
+    private final int[] mDecorations = new int[DAYS_PER_WEEK];
+
+    private WeekIndex mWeekIndex;
+    private MonthRenderer.Style mStyle;
+    private WeekPainter mPainter;
+    private Bitmap mBitmap;
+    private Canvas mCanvas;
+    private Paint mPaint;
+    private NumberAtlas mDayNumberAtlas;
+    private NumberAtlas mWeekNumberAtlas;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getTargetContext();
+        long minDay = WeekIndex.toEpochDay(1900, 0, 1);
+        long maxDay = WeekIndex.toEpochDay(2100, 11, 31);
+        mWeekIndex = new WeekIndex(minDay, maxDay, Calendar.MONDAY, 4);
+        mStyle = MonthRenderer.Style.obtain(context);
+        mPainter = new WeekPainter();
+        mPainter.setSize(WIDTH, WEEK_HEIGHT);
+        mBitmap = Bitmap.createBitmap(WIDTH, SHOWN_WEEK_COUNT * WEEK_HEIGHT, Bitmap.Config.ARGB_8888);
+        mCanvas = new Canvas(mBitmap);
+
+        // The same paints as the views
+        mPaint = new Paint();
+        mPaint.setAntiAlias(true);
+        mPaint.setStyle(Paint.Style.FILL);
+        mPaint.setTextSize(mStyle.getDateTextSize());
+        mPaint.setTextAlign(Paint.Align.CENTER);
+        Paint dayPaint = new Paint(mPaint);
+        dayPaint.setFakeBoldText(true);
+        mDayNumberAtlas = new NumberAtlas(dayPaint, WeekPainter.DAY_NUMBER_LABELS);
+        Paint weekPaint = new Paint(mPaint);
+        weekPaint.setFakeBoldText(false);
+        mWeekNumberAtlas = new NumberAtlas(weekPaint, WeekPainter.WEEK_NUMBER_LABELS);
+    }
+
+    @After
+    public void tearDown() {
+        mBitmap.recycle();
+    }
+
+    @Test
+    public void drawFrames() {
+        // Interleave the runs so a change of the clock of the device affects both
+        for (int i = 0; i < WARMUP_FRAMES; i++) {
+            drawFrame(i, true);
+            drawFrame(i, false);
+        }
+        long textNanos = 0;
+        long atlasNanos = 0;
+        for (int i = 0; i < MEASURED_FRAMES; i++) {
+            textNanos += drawFrame(i, false);
+            atlasNanos += drawFrame(i, true);
+        }
+
+        Bundle results = new Bundle();
+        results.putLong("textFrameNanos", textNanos / MEASURED_FRAMES);
+        results.putLong("atlasFrameNanos", atlasNanos / MEASURED_FRAMES);
+        Log.i(TAG, "text: " + textNanos / MEASURED_FRAMES + " ns/frame, atlas: "
+                + atlasNanos / MEASURED_FRAMES + " ns/frame");
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, results);
+    }
+
+    /**
+     * Draws the shown weeks of a frame, scrolled by one week per frame, the way the canvas
+     * display draws its rows.
+     *
+     * @return The duration of the drawing in nanoseconds.
+     */
+    private long drawFrame(int frame, boolean atlas) {
+        NumberAtlas dayNumberAtlas = atlas ? mDayNumberAtlas : null;
+        NumberAtlas weekNumberAtlas = atlas ? mWeekNumberAtlas : null;
+        long startNanos = System.nanoTime();
+        mCanvas.drawColor(Color.WHITE);
+        for (int i = 0; i < SHOWN_WEEK_COUNT; i++) {
+            bind((frame + i) % mWeekIndex.getWeekCount(), i == 0);
+            int saveCount = mCanvas.save();
+            mCanvas.translate(0, i * WEEK_HEIGHT);
+            mPainter.draw(mCanvas, mPaint, mStyle, dayNumberAtlas, weekNumberAtlas);
+            mCanvas.restoreToCount(saveCount);
+        }
+        return System.nanoTime() - startNanos;
+    }
+
+    private void bind(int week, boolean selected) {
+        long firstDay = mWeekIndex.getFirstDayOf(week);
+        mWeekIndex.getWeekDays(week, mDaysOfMonth, mMonths);
+        int inRangeMask = 0;
+        int focusMask = 0;
+        for (int d = 0; d < DAYS_PER_WEEK; d++) {
+            if (mWeekIndex.isInRange(firstDay + d)) {
+                inRangeMask |= 1 << d;
+            }
+            if (mMonths[d] == mMonths[0]) {
+                focusMask |= 1 << d;
+            }
+            mDecorations[d] = (week + d) % 3;
+        }
+        mPainter.setWeek(mWeekIndex.getWeekNumber(week), mDaysOfMonth, mDecorations, inRangeMask,
+                inRangeMask, true, week != 0);
+        mPainter.setFocusMask(focusMask);
+        mPainter.setSelection(selected ? 3 : -1, 0);
+    }
+}
@@ -0,0 +1,387 @@
+package com.n1k0lai.calendarwidget;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Message;
+import android.os.Process;
+import android.provider.CalendarContract;
+import android.provider.CalendarContract.Instances;
+import android.util.SparseArray;
+
+import java.util.Arrays;
+
+/**
+ * This class decorates the days of a {@link CalendarView} with the event instances of the
+ * calendar provider, see {@link CalendarContract.Instances}. It is set on the view through
+ * {@link CalendarView#setInstancesSource(CalendarInstancesSource)} and requires the
+ * <code>READ_CALENDAR</code> permission, without it no day is decorated.
+ * <p>
+ * Only the months around the focused month are loaded, one query per month on a background
+ * thread, and the flags of the loaded months are cached. A change of the provider reloads
+ * the cached months and invalidates only the months whose flags changed. The days of the
+ * instances are read from their Julian days, which the provider computes in the default
+ * time zone.
+ * <p>
+ * The source only uses the given {@link ContentResolver}, so it can be run against a local
+ * provider registered for {@link CalendarContract#AUTHORITY}.
+ */
+public final class CalendarInstancesSource implements Handler.Callback {
+
+    /**
+     * Maps the event instances to decoration flags.
+     */
+    public interface FlagMapper {
+
+        /**
+         * Gets the decoration flags of the instances of a calendar.
+         *
+         * @param calendarId The id of the calendar of the instance.
+         * @param allDay Whether the instance lasts all day.
+         * @return The flags or 0 to not decorate the days of the instance.
+         */
+        int getFlags(long calendarId, boolean allDay);
+    }
+
+    /**
+     * The default mapper, decorating every instance with the flag <code>1</code>.
+     */
+    public static final FlagMapper DEFAULT_FLAG_MAPPER = new FlagMapper() {
+        @Override
+        public int getFlags(long calendarId, boolean allDay) {
+            return 1;
+        }
+    };
+
+    private static final String THREAD_NAME = "CalendarView.InstancesSource";
+    private static final int MSG_LOAD = 1;
+
+    private static final int DEFAULT_PREFETCH_MONTHS = 2;
+    private static final long RELOAD_DELAY_MILLIS = 250;
+
+    private static final long JULIAN_DAY_OF_EPOCH = 2440588L;
+
+    private static final String[] PROJECTION = {
+            Instances.CALENDAR_ID,
+            Instances.START_DAY,
+            Instances.END_DAY,
+            Instances.ALL_DAY
+    };
+    private static final int COLUMN_CALENDAR_ID = 0;
+    private static final int COLUMN_START_DAY = 1;
+    private static final int COLUMN_END_DAY = 2;
+    private static final int COLUMN_ALL_DAY = 3;
+    private static final String SELECTION = Instances.VISIBLE + "=1";
+
+    private final ContentResolver mResolver;
+    private final DayDecorations mDecorations = new DayDecorations();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * The flags of the days of the loaded months, keyed by <code>year * 12 + month</code>.
+     * Only accessed on the main thread.
+     */
+    private final SparseArray<int[]> mMonthFlags = new SparseArray<int[]>();
+    private final SparseArray<Boolean> mLoadingMonths = new SparseArray<Boolean>();
+
+    private final ContentObserver mObserver = new ContentObserver(mMainHandler) {
+        @Override
+        public void onChange(boolean selfChange) {
+            // Coalesce the bursts of notifications of a sync
+            mMainHandler.removeCallbacks(mReloadRunnable);
+            mMainHandler.postDelayed(mReloadRunnable, RELOAD_DELAY_MILLIS);
+        }
+    };
+
+    private final Runnable mReloadRunnable = new Runnable() {
+        @Override
+        public void run() {
+            reload();
+        }
+    };
+
+    private volatile FlagMapper mFlagMapper = DEFAULT_FLAG_MAPPER;
+    private int mPrefetchMonths = DEFAULT_PREFETCH_MONTHS;
+    private int mGeneration;
+    private int mFocusedMonthKey = -1;
+
+    private CalendarView mView;
+    private HandlerThread mThread;
+    private Handler mWorkerHandler;
+
+    /**
+     * Creates a new source.
+     *
+     * @param resolver The resolver querying the instances.
+     */
+    public CalendarInstancesSource(ContentResolver resolver) {
+        mResolver = resolver;
+    }
+
+    /**
+     * Sets the mapper of the instances to decoration flags and reloads the instances. The days
+     * keep their flags until the reloaded months replace them.
+     *
+     * @param mapper The mapper.
+     */
+    public void setFlagMapper(FlagMapper mapper) {
+        if (mapper == null) {
+            throw new IllegalArgumentException("The flag mapper cannot be null.");
+        }
+        mFlagMapper = mapper;
+        reload();
+    }
+
+    /**
+     * Gets the mapper of the instances to decoration flags.
+     *
+     * @return The mapper.
+     */
+    public FlagMapper getFlagMapper() {
+        return mFlagMapper;
+    }
+
+    /**
+     * Sets the number of months loaded on each side of the focused month.
+     *
+     * @param prefetchMonths The number of months.
+     */
+    public void setPrefetchMonths(int prefetchMonths) {
+        if (prefetchMonths < 0) {
+            throw new IllegalArgumentException("Invalid prefetch months: " + prefetchMonths);
+        }
+        mPrefetchMonths = prefetchMonths;
+        loadWindow();
+    }
+
+    /**
+     * Gets the number of months loaded on each side of the focused month.
+     *
+     * @return The number of months.
+     */
+    public int getPrefetchMonths() {
+        return mPrefetchMonths;
+    }
+
+    /**
+     * Gets the decorations of the loaded instances.
+     */
+    DayDecorations getDayDecorations() {
+        return mDecorations;
+    }
+
+    /**
+     * Starts loading the instances for the given view and observing the provider.
+     */
+    void start(CalendarView view) {
+        if (mView != null) {
+            stop();
+        }
+        mView = view;
+        mThread = new HandlerThread(THREAD_NAME, Process.THREAD_PRIORITY_BACKGROUND);
+        mThread.start();
+        mWorkerHandler = new Handler(mThread.getLooper(), this);
+        mResolver.registerContentObserver(CalendarContract.CONTENT_URI, true, mObserver);
+        // The provider may have changed while stopped
+        reload();
+    }
+
+    /**
+     * Stops the background thread and the observer, the loaded months are kept.
+     */
+    void stop() {
+        if (mView == null) {
+            return;
+        }
+        mResolver.unregisterContentObserver(mObserver);
+        mMainHandler.removeCallbacksAndMessages(null);
+        mThread.quit();
+        mThread = null;
+        mWorkerHandler = null;
+        mView = null;
+        mLoadingMonths.clear();
+        mGeneration++;
+    }
+
+    /**
+     * Moves the loaded window to the months around the given month.
+     *
+     * @param monthKey The focused month as <code>year * 12 + month</code>.
+     */
+    void setFocusedMonth(int monthKey) {
+        if (mFocusedMonthKey == monthKey) {
+            return;
+        }
+        mFocusedMonthKey = monthKey;
+        loadWindow();
+    }
+
+    /**
+     * Reloads the window after a change of the provider or of the mapper. The months out of the
+     * window are dropped as their flags may have changed, the others are kept until reloaded.
+     */
+    private void reload() {
+        cancelLoads();
+        for (int i = mMonthFlags.size() - 1; i >= 0; i--) {
+            if (!isInWindow(mMonthFlags.keyAt(i))) {
+                mMonthFlags.removeAt(i);
+            }
+        }
+        loadWindow(true);
+    }
+
+    /**
+     * Drops the pending loads, the loads in progress are dropped when published.
+     */
+    private void cancelLoads() {
+        mGeneration++;
+        mLoadingMonths.clear();
+        if (mWorkerHandler != null) {
+            mWorkerHandler.removeMessages(MSG_LOAD);
+        }
+    }
+
+    private void loadWindow() {
+        loadWindow(false);
+    }
+
+    private void loadWindow(boolean reload) {
+        if (mWorkerHandler == null || mFocusedMonthKey == -1) {
+            return;
+        }
+        // Load the focused month first, then alternate away from it
+        for (int distance = 0; distance <= mPrefetchMonths; distance++) {
+            loadMonth(mFocusedMonthKey + distance, reload);
+            if (distance != 0) {
+                loadMonth(mFocusedMonthKey - distance, reload);
+            }
+        }
+    }
+
+    private void loadMonth(int monthKey, boolean reload) {
+        if (monthKey < 0 || mLoadingMonths.get(monthKey) != null
+                || !reload && mMonthFlags.get(monthKey) != null) {
+            return;
+        }
+        mLoadingMonths.put(monthKey, Boolean.TRUE);
+        mWorkerHandler.obtainMessage(MSG_LOAD, monthKey, mGeneration).sendToTarget();
+    }
+
+    private boolean isInWindow(int monthKey) {
+        return Math.abs(monthKey - mFocusedMonthKey) <= mPrefetchMonths;
+    }
+
+    @Override
+    public boolean handleMessage(Message message) {
+        final int monthKey = message.arg1;
+        final int generation = message.arg2;
+        final int[] flags = queryMonth(monthKey);
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                onMonthLoaded(monthKey, generation, flags);
+            }
+        });
+        return true;
+    }
+
+    private void onMonthLoaded(int monthKey, int generation, int[] flags) {
+        if (generation != mGeneration) {
+            return;
+        }
+        mLoadingMonths.remove(monthKey);
+        if (!isInWindow(monthKey)) {
+            return;
+        }
+        int[] previousFlags = mMonthFlags.get(monthKey);
+        if (previousFlags == null) {
+            // Compare with the flags the month is drawn with, none unless it left the window
+            previousFlags = getPublishedFlags(monthKey, flags.length);
+        }
+        mMonthFlags.put(monthKey, flags);
+        // Evict the months the window moved away from
+        for (int i = mMonthFlags.size() - 1; i >= 0; i--) {
+            if (!isInWindow(mMonthFlags.keyAt(i))) {
+                mMonthFlags.removeAt(i);
+            }
+        }
+        if (!Arrays.equals(previousFlags, flags)) {
+            publish(monthKey, monthKey);
+        }
+    }
+
+    private int[] getPublishedFlags(int monthKey, int dayCount) {
+        int[] flags = new int[dayCount];
+        long firstDay = WeekIndex.toEpochDay(monthKey / 12, monthKey % 12, 1);
+        mDecorations.getFlags(firstDay, firstDay + dayCount - 1, flags, 0);
+        return flags;
+    }
+
+    /**
+     * Rebuilds the decorations from the loaded months and invalidates the given months of the view.
+     */
+    private void publish(int firstMonthKey, int lastMonthKey) {
+        synchronized (mDecorations) {
+            mDecorations.clear();
+            for (int i = 0; i < mMonthFlags.size(); i++) {
+                int monthKey = mMonthFlags.keyAt(i);
+                int[] flags = mMonthFlags.valueAt(i);
+                long firstDay = WeekIndex.toEpochDay(monthKey / 12, monthKey % 12, 1);
+                for (int d = 0; d < flags.length; d++) {
+                    mDecorations.add(firstDay + d, firstDay + d, flags[d]);
+                }
+            }
+        }
+        if (mView != null) {
+            mView.invalidateDayDecorations(firstMonthKey, lastMonthKey);
+        }
+    }
+
+    /**
+     * Queries the instances overlapping the given month, called on the background thread.
+     */
+    private int[] queryMonth(int monthKey) {
+        int year = monthKey / 12;
+        int month = monthKey % 12;
+        int[] flags = new int[WeekIndex.getMonthLength(year, month)];
+        long firstDay = WeekIndex.toEpochDay(year, month, 1);
+        long lastDay = firstDay + flags.length - 1;
+
+        Uri.Builder builder = Instances.CONTENT_BY_DAY_URI.buildUpon();
+        ContentUris.appendId(builder, firstDay + JULIAN_DAY_OF_EPOCH);
+        ContentUris.appendId(builder, lastDay + JULIAN_DAY_OF_EPOCH);
+        Cursor cursor;
+        try {
+            cursor = mResolver.query(builder.build(), PROJECTION, SELECTION, null, null);
+        } catch (SecurityException e) {
+            // Without the permission no day is decorated
+            return flags;
+        }
+        if (cursor == null) {
+            return flags;
+        }
+        FlagMapper mapper = mFlagMapper;
+        try {
+            while (cursor.moveToNext()) {
+                int instanceFlags = mapper.getFlags(cursor.getLong(COLUMN_CALENDAR_ID),
+                        cursor.getInt(COLUMN_ALL_DAY) != 0);
+                if (instanceFlags == 0) {
+                    continue;
+                }
+                long start = Math.max(firstDay, cursor.getLong(COLUMN_START_DAY) - JULIAN_DAY_OF_EPOCH);
+                long end = Math.min(lastDay, cursor.getLong(COLUMN_END_DAY) - JULIAN_DAY_OF_EPOCH);
+                for (long day = start; day <= end; day++) {
+                    flags[(int) (day - firstDay)] |= instanceFlags;
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        return flags;
+    }
+}
@@ -0,0 +1,185 @@
+package com.n1k0lai.calendarwidget;
+
+import java.util.Arrays;
+
+/**
+ * This class is a {@link CalendarView.MetricsSink} aggregating the timings in fixed-bucket
+ * histograms, so recording a timing costs a few integer operations and no allocation. Bucket
+ * <code>i</code> holds the durations below <code>2^(i + 11)</code> nanoseconds, i.e. about 2&micro;s
+ * for the first one, and the last bucket holds all the longer durations. The aggregates can be
+ * polled or dumped from any thread.
+ */
+public class CalendarMetrics implements CalendarView.MetricsSink {
+
+    /**
+     * The number of buckets of each histogram.
+     */
+    public static final int BUCKET_COUNT = 20;
+
+    private static final int FIRST_BUCKET_SHIFT = 11;
+    private static final String[] METRIC_NAMES = {
+            "bind", "draw", "scroll", "goTo", "setMonthDisplayed"
+    };
+
+    private final long[][] mBuckets = new long[CalendarView.METRIC_COUNT][BUCKET_COUNT];
+    private final long[] mTotalNanos = new long[CalendarView.METRIC_COUNT];
+    private final long[] mMaxNanos = new long[CalendarView.METRIC_COUNT];
+    private long mDataSetChangedCount;
+    private long mBindCountSincePoll;
+    private long mLastPollNanos = System.nanoTime();
+
+    @Override
+    public synchronized void onSectionTimed(int metric, long durationNanos) {
+        mBuckets[metric][getBucket(durationNanos)]++;
+        mTotalNanos[metric] += durationNanos;
+        if (durationNanos > mMaxNanos[metric]) {
+            mMaxNanos[metric] = durationNanos;
+        }
+        if (metric == CalendarView.METRIC_BIND) {
+            mBindCountSincePoll++;
+        }
+    }
+
+    @Override
+    public synchronized void onDataSetChanged() {
+        mDataSetChangedCount++;
+    }
+
+    /**
+     * Gets the number of timings recorded for the given section.
+     *
+     * @param metric The section, e.g. {@link CalendarView#METRIC_BIND}.
+     * @return The number of timings.
+     */
+    public synchronized long getCount(int metric) {
+        long count = 0;
+        for (long bucketCount : mBuckets[metric]) {
+            count += bucketCount;
+        }
+        return count;
+    }
+
+    /**
+     * Gets the mean duration of the given section.
+     *
+     * @param metric The section, e.g. {@link CalendarView#METRIC_BIND}.
+     * @return The mean duration in nanoseconds or 0 if none was recorded.
+     */
+    public synchronized long getMeanNanos(int metric) {
+        long count = getCount(metric);
+        return count == 0 ? 0 : mTotalNanos[metric] / count;
+    }
+
+    /**
+     * Gets the longest duration of the given section.
+     *
+     * @param metric The section, e.g. {@link CalendarView#METRIC_BIND}.
+     * @return The longest duration in nanoseconds.
+     */
+    public synchronized long getMaxNanos(int metric) {
+        return mMaxNanos[metric];
+    }
+
+    /**
+     * Gets an upper bound of the given percentile of the durations of the given section.
+     *
+     * @param metric The section, e.g. {@link CalendarView#METRIC_BIND}.
+     * @param percentile The percentile [0-100].
+     * @return The upper bound of the bucket holding the percentile in nanoseconds, or 0 if
+     *         none was recorded.
+     */
+    public synchronized long getPercentileNanos(int metric, double percentile) {
+        long count = getCount(metric);
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(count * percentile / 100);
+        long cumulatedCount = 0;
+        for (int i = 0; i < BUCKET_COUNT - 1; i++) {
+            cumulatedCount += mBuckets[metric][i];
+            if (cumulatedCount >= rank) {
+                return getBucketUpperBoundNanos(i);
+            }
+        }
+        return mMaxNanos[metric];
+    }
+
+    /**
+     * Copies the histogram of the given section.
+     *
+     * @param metric The section, e.g. {@link CalendarView#METRIC_BIND}.
+     * @param outCounts Receives the {@link #BUCKET_COUNT} bucket counts.
+     */
+    public synchronized void getHistogram(int metric, long[] outCounts) {
+        System.arraycopy(mBuckets[metric], 0, outCounts, 0, BUCKET_COUNT);
+    }
+
+    /**
+     * Gets the number of times the weeks were notified of a change of their data.
+     *
+     * @return The number of notifications.
+     */
+    public synchronized long getDataSetChangedCount() {
+        return mDataSetChangedCount;
+    }
+
+    /**
+     * Gets the number of week binds per second since the previous call.
+     *
+     * @return The rate of binds.
+     */
+    public synchronized float pollRebindsPerSecond() {
+        long nowNanos = System.nanoTime();
+        float rate = mBindCountSincePoll * 1e9f / Math.max(1, nowNanos - mLastPollNanos);
+        mBindCountSincePoll = 0;
+        mLastPollNanos = nowNanos;
+        return rate;
+    }
+
+    /**
+     * Clears all the aggregates.
+     */
+    public synchronized void reset() {
+        for (int metric = 0; metric < CalendarView.METRIC_COUNT; metric++) {
+            Arrays.fill(mBuckets[metric], 0);
+        }
+        Arrays.fill(mTotalNanos, 0);
+        Arrays.fill(mMaxNanos, 0);
+        mDataSetChangedCount = 0;
+        mBindCountSincePoll = 0;
+        mLastPollNanos = System.nanoTime();
+    }
+
+    /**
+     * Gets the upper bound of the given bucket.
+     *
+     * @param bucket The bucket [0-{@link #BUCKET_COUNT}).
+     * @return The upper bound in nanoseconds, {@link Long#MAX_VALUE} for the last bucket.
+     */
+    public static long getBucketUpperBoundNanos(int bucket) {
+        return bucket >= BUCKET_COUNT - 1 ? Long.MAX_VALUE : 1L << (bucket + FIRST_BUCKET_SHIFT);
+    }
+
+    /**
+     * Dumps the aggregates, one line per section.
+     */
+    @Override
+    public synchronized String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int metric = 0; metric < CalendarView.METRIC_COUNT; metric++) {
+            builder.append(METRIC_NAMES[metric])
+                    .append(": count=").append(getCount(metric))
+                    .append(" mean=").append(getMeanNanos(metric) / 1000).append("us")
+                    .append(" p50<").append(getPercentileNanos(metric, 50) / 1000).append("us")
+                    .append(" p99<").append(getPercentileNanos(metric, 99) / 1000).append("us")
+                    .append(" max=").append(getMaxNanos(metric) / 1000).append("us\n");
+        }
+        builder.append("dataSetChanged: count=").append(mDataSetChangedCount).append('\n');
+        return builder.toString();
+    }
+
+    private static int getBucket(long durationNanos) {
+        int bucket = 63 - Long.numberOfLeadingZeros(durationNanos | 1) - (FIRST_BUCKET_SHIFT - 1);
+        return Math.max(0, Math.min(bucket, BUCKET_COUNT - 1));
+    }
+}
@@ -0,0 +1,96 @@
+package com.n1k0lai.calendarwidget;
+
+/**
+ * This class is an immutable snapshot of the state the {@link CalendarView} needs to build its
+ * weeks: the range and the first day of week through the {@link WeekIndex}, the decorations, the
+ * rules disabling days and the selected day. Since the snapshot never changes, the weeks can be
+ * built on a background thread while the view keeps mutating its own calendars.
+ */
+final class CalendarModel {
+
+    private final int mWeeksVersion;
+    private final WeekIndex mWeekIndex;
+    private final DayDecorations mDecorations;
+    private final DayRules mRules;
+    private final long mSelectedDay;
+
+    /**
+     * Creates a new snapshot.
+     *
+     * @param weeksVersion Identifies the content of the weeks, i.e. the index, the decorations
+     * and the rules.
+     * @param weekIndex The index of the weeks.
+     * @param decorations The decorations or null if none.
+     * @param rules The rules disabling days or null if none.
+     * @param selectedDay The selected epoch day.
+     */
+    CalendarModel(int weeksVersion, WeekIndex weekIndex, DayDecorations decorations, DayRules rules,
+            long selectedDay) {
+        mWeeksVersion = weeksVersion;
+        mWeekIndex = weekIndex;
+        mDecorations = decorations;
+        mRules = rules;
+        mSelectedDay = selectedDay;
+    }
+
+    public int getWeeksVersion() {
+        return mWeeksVersion;
+    }
+
+    public WeekIndex getWeekIndex() {
+        return mWeekIndex;
+    }
+
+    public DayDecorations getDecorations() {
+        return mDecorations;
+    }
+
+    public DayRules getRules() {
+        return mRules;
+    }
+
+    public long getSelectedDay() {
+        return mSelectedDay;
+    }
+
+    /**
+     * Gets a snapshot with the given selected day sharing the weeks of this one.
+     */
+    public CalendarModel withSelectedDay(long selectedDay) {
+        if (selectedDay == mSelectedDay) {
+            return this;
+        }
+        return new CalendarModel(mWeeksVersion, mWeekIndex, mDecorations, mRules, selectedDay);
+    }
+
+    /**
+     * Builds the content of the given week.
+     */
+    public WeekData buildWeek(int week) {
+        int[] daysOfMonth = new int[WeekIndex.DAYS_PER_WEEK];
+        int[] months = new int[WeekIndex.DAYS_PER_WEEK];
+        int[] decorations = new int[WeekIndex.DAYS_PER_WEEK];
+        mWeekIndex.getWeekDays(week, daysOfMonth, months);
+        long firstDay = mWeekIndex.getFirstDayOf(week);
+        if (mDecorations != null) {
+            mDecorations.getFlags(firstDay, firstDay + WeekIndex.DAYS_PER_WEEK - 1, decorations, 0);
+        }
+        return new WeekData(week, mWeekIndex.getWeekNumber(week), daysOfMonth, months, decorations,
+                getEnabledMask(mWeekIndex, mRules, firstDay));
+    }
+
+    /**
+     * Gets the days of the week starting at the given day which are in the range and not
+     * disabled by the rules, the bit <code>i</code> of the mask is set if the day
+     * <code>firstDay + i</code> is enabled.
+     */
+    public static int getEnabledMask(WeekIndex weekIndex, DayRules rules, long firstDay) {
+        int mask = rules != null ? rules.getEnabledMask(firstDay) : (1 << WeekIndex.DAYS_PER_WEEK) - 1;
+        for (int d = 0; d < WeekIndex.DAYS_PER_WEEK; d++) {
+            if (!weekIndex.isInRange(firstDay + d)) {
+                mask &= ~(1 << d);
+            }
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,219 @@
+package com.n1k0lai.calendarwidget;
+
+import java.text.DateFormatSymbols;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * This class holds the locale and time zone dependent resources of the {@link CalendarView},
+ * i.e. the date formats, the week day names, the formatted month titles and day descriptions
+ * and the default range. They are expensive to create, so the instances are shared across the
+ * views through a small process-wide cache. The formats are only used under the lock of their
+ * instance, which makes the sharing safe from any thread.
+ */
+final class CalendarResources {
+
+    static final String DATE_FORMAT = "MM/dd/yyyy";
+    static final String DEFAULT_MIN_DATE = "01/01/1970";
+    static final String DEFAULT_MAX_DATE = "01/01/2100";
+    static final String SUPPORTED_MIN_DATE = "01/01/0001";
+    static final String SUPPORTED_MAX_DATE = "12/31/9999";
+
+    private static final String DATE_FORMAT_LOCALIZED = "EEEE d MMMM yyyy";
+    private static final String MONTH_FORMAT_LOCALIZED = "LLLL yyyy";
+    private static final String DAY_FORMAT_LOCALIZED = "EEEE d MMMM";
+
+    private static final int MAX_CACHED_COUNT = 8;
+    private static final int MONTH_TITLE_CACHE_SIZE = 24;
+    private static final int DAY_DESCRIPTION_CACHE_SIZE = 256;
+
+    private static final Map<String, CalendarResources> sCache =
+            new LruMap<String, CalendarResources>(MAX_CACHED_COUNT);
+
+    private final Locale mLocale;
+    private final TimeZone mTimeZone;
+    private final Calendar mCalendarPrototype;
+    private final SimpleDateFormat mDateFormat;
+    private final SimpleDateFormat mDateFormatLocalized;
+    private final SimpleDateFormat mMonthFormatLocalized;
+    private final SimpleDateFormat mDayFormatLocalized;
+    private final String[] mShortWeekdays;
+    private final String[] mShortMonths;
+    private final long mDefaultMinDate;
+    private final long mDefaultMaxDate;
+    private final long mSupportedMinDate;
+    private final long mSupportedMaxDate;
+    private final Map<Integer, String> mMonthTitles = new LruMap<Integer, String>(MONTH_TITLE_CACHE_SIZE);
+    private final Map<Long, String> mDayDescriptions = new LruMap<Long, String>(DAY_DESCRIPTION_CACHE_SIZE);
+
+    /**
+     * Gets the shared resources of the given locale and time zone, creating them if needed.
+     */
+    static CalendarResources get(Locale locale, TimeZone zone) {
+        String key = locale.toString() + '/' + zone.getID();
+        synchronized (sCache) {
+            CalendarResources resources = sCache.get(key);
+            if (resources == null) {
+                resources = new CalendarResources(locale, zone);
+                sCache.put(key, resources);
+            }
+            return resources;
+        }
+    }
+
+    CalendarResources(Locale locale, TimeZone zone) {
+        mLocale = locale;
+        mTimeZone = (TimeZone) zone.clone();
+        mCalendarPrototype = Calendar.getInstance(mTimeZone, locale);
+        setProlepticGregorian(mCalendarPrototype);
+
+        mDateFormat = createDateFormat(DATE_FORMAT, Locale.getDefault());
+        mDateFormatLocalized = createDateFormat(DATE_FORMAT_LOCALIZED, locale);
+        mMonthFormatLocalized = createDateFormat(MONTH_FORMAT_LOCALIZED, locale);
+        mDayFormatLocalized = createDateFormat(DAY_FORMAT_LOCALIZED, locale);
+        mShortWeekdays = DateFormatSymbols.getInstance(locale).getShortWeekdays();
+        mShortMonths = DateFormatSymbols.getInstance(locale).getShortMonths();
+
+        try {
+            mDefaultMinDate = mDateFormat.parse(DEFAULT_MIN_DATE).getTime();
+            mDefaultMaxDate = mDateFormat.parse(DEFAULT_MAX_DATE).getTime();
+            mSupportedMinDate = mDateFormat.parse(SUPPORTED_MIN_DATE).getTime();
+            mSupportedMaxDate = mDateFormat.parse(SUPPORTED_MAX_DATE).getTime();
+        } catch (ParseException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public Locale getLocale() {
+        return mLocale;
+    }
+
+    public TimeZone getTimeZone() {
+        return mTimeZone;
+    }
+
+    /**
+     * Creates a calendar of the locale and the time zone set to the current time.
+     */
+    public Calendar newCalendar() {
+        Calendar calendar;
+        synchronized (mCalendarPrototype) {
+            calendar = (Calendar) mCalendarPrototype.clone();
+        }
+        calendar.setTimeInMillis(System.currentTimeMillis());
+        return calendar;
+    }
+
+    public long getDefaultMinDate() {
+        return mDefaultMinDate;
+    }
+
+    public long getDefaultMaxDate() {
+        return mDefaultMaxDate;
+    }
+
+    public long getSupportedMinDate() {
+        return mSupportedMinDate;
+    }
+
+    public long getSupportedMaxDate() {
+        return mSupportedMaxDate;
+    }
+
+    /**
+     * Gets the short name of the given day of week, e.g. {@link Calendar#SUNDAY}.
+     */
+    public String getShortWeekday(int dayOfWeek) {
+        return mShortWeekdays[dayOfWeek];
+    }
+
+    /**
+     * Gets the short name of the given month [0-11].
+     */
+    public String getShortMonth(int month) {
+        return mShortMonths[month];
+    }
+
+    /**
+     * Parses a date in the {@link #DATE_FORMAT} format.
+     *
+     * @return The parsed date in milliseconds.
+     */
+    public synchronized long parseDate(String date) throws ParseException {
+        return mDateFormat.parse(date).getTime();
+    }
+
+    /**
+     * Formats the full localized description of the given date.
+     */
+    public synchronized String formatDate(long millis) {
+        return mDateFormatLocalized.format(new Date(millis));
+    }
+
+    /**
+     * Gets the localized title of the given month [0-11].
+     */
+    public synchronized String getMonthTitle(int year, int month) {
+        Integer key = year * 12 + month;
+        String title = mMonthTitles.get(key);
+        if (title == null) {
+            long firstDay = WeekIndex.toEpochDay(year, month, 1);
+            title = mMonthFormatLocalized.format(new Date(WeekIndex.toMillis(firstDay, mTimeZone)));
+            mMonthTitles.put(key, title);
+        }
+        return title;
+    }
+
+    /**
+     * Gets the localized description of the given epoch day.
+     */
+    public synchronized String getDayDescription(long day) {
+        String description = mDayDescriptions.get(day);
+        if (description == null) {
+            description = mDayFormatLocalized.format(new Date(WeekIndex.toMillis(day, mTimeZone)));
+            mDayDescriptions.put(day, description);
+        }
+        return description;
+    }
+
+    private SimpleDateFormat createDateFormat(String pattern, Locale locale) {
+        SimpleDateFormat format = new SimpleDateFormat(pattern, locale);
+        format.setTimeZone(mTimeZone);
+        setProlepticGregorian(format.getCalendar());
+        return format;
+    }
+
+    /**
+     * Makes the calendar follow the Gregorian rules before 1582 too, as the epoch day
+     * arithmetic of the {@link WeekIndex} does, instead of switching to the Julian calendar.
+     */
+    private static void setProlepticGregorian(Calendar calendar) {
+        if (calendar instanceof GregorianCalendar) {
+            ((GregorianCalendar) calendar).setGregorianChange(new Date(Long.MIN_VALUE));
+        }
+    }
+
+    private static final class LruMap<K, V> extends LinkedHashMap<K, V> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int mMaxSize;
+
+        LruMap(int maxSize) {
+            super(maxSize, 0.75f, true);
+            mMaxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > mMaxSize;
+        }
+    }
+}
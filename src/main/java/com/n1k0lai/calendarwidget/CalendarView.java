@@ -1,42 +1,58 @@
 package com.n1k0lai.calendarwidget;
 
+import android.annotation.TargetApi;
 import android.app.Service;
 import android.content.Context;
 import android.content.res.TypedArray;
 import android.database.DataSetObserver;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Paint.Align;
 import android.graphics.Paint.Style;
-import android.graphics.Path;
-import android.graphics.Point;
+import android.graphics.PointF;
 import android.graphics.Rect;
+import android.graphics.Typeface;
 import android.os.Build;
+import android.os.Bundle;
 import android.os.Parcel;
 import android.os.Parcelable;
+import android.os.Trace;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.LinearSmoothScroller;
+import android.support.v7.widget.RecyclerView;
 import android.text.TextUtils;
 import android.util.AttributeSet;
 import android.util.DisplayMetrics;
 import android.util.Log;
+import android.util.LruCache;
 import android.util.TypedValue;
 import android.view.GestureDetector;
+import android.view.Gravity;
 import android.view.LayoutInflater;
 import android.view.MotionEvent;
 import android.view.View;
+import android.view.ViewConfiguration;
 import android.view.ViewGroup;
 import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityManager;
+import android.view.accessibility.AccessibilityNodeInfo;
+import android.view.accessibility.AccessibilityNodeProvider;
 import android.widget.AbsListView;
 import android.widget.AbsListView.OnScrollListener;
 import android.widget.BaseAdapter;
 import android.widget.FrameLayout;
+import android.widget.LinearLayout;
 import android.widget.ListView;
+import android.widget.OverScroller;
+import android.widget.SectionIndexer;
 import android.widget.TextView;
 
-import java.text.DateFormatSymbols;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.List;
 import java.util.Locale;
 import java.util.TimeZone;
 
@@ -47,9 +63,80 @@ import java.util.TimeZone;
  */
 public class CalendarView extends FrameLayout {
 
-    private static final long MILLIS_IN_DAY = 86400000L;
-    private static final int DAYS_PER_WEEK = 7;
-    private static final long MILLIS_IN_WEEK = DAYS_PER_WEEK * MILLIS_IN_DAY;
+    /**
+     * The weeks are displayed by a list with a view per week.
+     */
+    public static final int DISPLAY_MODE_LIST = 0;
+
+    /**
+     * The weeks are drawn by a single view directly from the scroll offset.
+     */
+    public static final int DISPLAY_MODE_CANVAS = 1;
+
+    /**
+     * The weeks are displayed by a {@link RecyclerView} with a view per week.
+     */
+    public static final int DISPLAY_MODE_RECYCLER = 2;
+
+    /**
+     * The weeks of a month are displayed as a grid of six weeks per page, paged horizontally.
+     */
+    public static final int DISPLAY_MODE_MONTH_PAGER = 3;
+
+    /**
+     * A tap selects a single date.
+     */
+    public static final int SELECTION_MODE_SINGLE = 0;
+
+    /**
+     * A tap toggles the selection of a date, any number of dates may be selected.
+     */
+    public static final int SELECTION_MODE_MULTIPLE = 1;
+
+    /**
+     * A first tap selects the start of a range of dates and a second tap its end.
+     */
+    public static final int SELECTION_MODE_RANGE = 2;
+
+    /**
+     * The binding of a week to its row.
+     */
+    public static final int METRIC_BIND = 0;
+
+    /**
+     * The drawing of the weeks.
+     */
+    public static final int METRIC_DRAW = 1;
+
+    /**
+     * The detection of the displayed month upon scroll.
+     */
+    public static final int METRIC_SCROLL = 2;
+
+    /**
+     * The navigation to a date.
+     */
+    public static final int METRIC_GO_TO = 3;
+
+    /**
+     * The update of the displayed month.
+     */
+    public static final int METRIC_SET_MONTH_DISPLAYED = 4;
+
+    /**
+     * The number of timed sections.
+     */
+    public static final int METRIC_COUNT = 5;
+
+    private static final String[] METRIC_TRACE_NAMES = {
+            "CalendarView#bind",
+            "CalendarView#draw",
+            "CalendarView#scroll",
+            "CalendarView#goTo",
+            "CalendarView#setMonthDisplayed"
+    };
+
+    private static final int DAYS_PER_WEEK = WeekIndex.DAYS_PER_WEEK;
 
     private static final int SCROLL_HYST_WEEKS = 2;
     private static final int GOTO_SCROLL_DURATION = 1000;
@@ -57,57 +144,60 @@ public class CalendarView extends FrameLayout {
     private static final int SCROLL_CHANGE_DELAY = 40;
     private static final float LIST_FRICTION = .05f;
     private static final float LIST_VELOCITY_SCALE = 0.333f;
+    private static final int PREFETCH_WEEK_COUNT = 4;
+    private static final int MAX_ANIMATED_SCROLL_WEEKS = 104;
+    private static final int MAX_MONTH_SECTION_COUNT = 1200;
+    private static final int MONTH_PAGE_WEEK_COUNT = 6;
+    private static final int MONTHS_PER_YEAR = 12;
+    private static final float YEAR_OVERVIEW_TEXT_SCALE = 0.6f;
+    private static final String PAYLOAD_SELECTION = "selection";
+    private static final String PAYLOAD_FOCUS = "focus";
+    private static final String PAYLOAD_DECORATIONS = "decorations";
 
-    private static final String DATE_FORMAT = "MM/dd/yyyy";
-    private static final String DATE_FORMAT_LOCALIZED = "EEEE d MMMM yyyy";
-    private static final String MONTH_FORMAT_LOCALIZED = "LLLL yyyy";
-    private static final String DAY_FORMAT_LOCALIZED = "EEEE d MMMM";
-
-    private static final String DEFAULT_MIN_DATE = "01/01/1970";
-    private static final String DEFAULT_MAX_DATE = "01/01/2100";
     private static final int DEFAULT_SHOWN_WEEK_COUNT = 6;
-    private static final float DEFAULT_DATE_TEXT_SIZE = 14;
     private static final int DEFAULT_WEEK_DAY_TEXT_APPEARANCE_RES_ID = -1;
     private static final boolean DEFAULT_SHOW_WEEK_NUMBER = true;
+    private static final boolean DEFAULT_TEXT_CACHE_ENABLED = false;
+    private static final boolean DEFAULT_INFLATE_LAYOUT = true;
+    private static final boolean DEFAULT_FAST_SCROLL_ENABLED = false;
+    private static final int DEFAULT_RENDER_CACHE_SIZE = 0;
+    private static final float DEFAULT_WEEK_DAY_TEXT_SIZE = 12;
+    private static final int DEFAULT_DISPLAY_MODE = DISPLAY_MODE_LIST;
+    private static final int DEFAULT_SELECTION_MODE = SELECTION_MODE_SINGLE;
+
+
+    private static final int DECORATION_CACHE_MONTH_COUNT = 24;
+    private static final int PREBUILT_SCREENS_BEFORE = 2;
+    private static final int PREBUILT_SCREENS_AFTER = 3;
 
-    private static final int UNSCALED_SELECTED_DATE_ARROW_WIDTH = 2;
     private static final int UNSCALED_WEEK_MIN_VISIBLE_HEIGHT = 12;
     private static final int UNSCALED_LIST_SCROLL_TOP_OFFSET = 2;
     private static final int UNSCALED_BOTTOM_BUFFER = 20;
-    private static final int UNSCALED_WEEK_SEPARATOR_LINE_WIDTH = 1;
-
-    private static final String DEFAULT_SELECTED_WEEK_BACKGROUND_COLOR_HEX = "#cc33b5e5";
-    private static final String DEFAULT_FOCUSED_MONTH_DATE_COLOR_HEX = "#000000";
-    private static final String DEFAULT_UNFOCUSED_MONTH_DATE_COLOR_HEX = "#cc808080";
-    private static final String DEFAULT_WEEK_SEPARATOR_LINE_COLOR_HEX = "#00000000";
-    private static final String DEFAULT_WEEK_NUMBER_COLOR_HEX = "#cc0099cc";
-    private static final String DEFAULT_SELECTED_WEEK_NUMBER_COLOR_HEX = "#ffffff";
-    private static final String DEFAULT_SELECTED_DATE_ARROWS_COLOR_HEX = "#cc33b5e5";
+    private static final int UNSCALED_MONTH_NAME_PADDING = 2;
+    private static final int UNSCALED_DIVIDER_HEIGHT = 1;
+    private static final int UNSCALED_WEEK_DAY_PADDING = 2;
+
     private static final String DEFAULT_WEEKDAY_COLOR_HEX = "#cc808080";
     private static final String DEFAULT_WEEKEND_COLOR_HEX = "#cc0099cc";
     private static final String DEFAULT_DIVIDER_COLOR_HEX = "#dedede";
 
-    private final int mWeekSeparatorLineWidth;
-    private final int mDateTextSize;
     private final int mWeekDayTextAppearance;
-    private final int mSelectedDateArrowWidth;
-    private final int mSelectedDateArrowsColor;
-    private final int mSelectedWeekBackgroundColor;
-    private final int mFocusedMonthDateColor;
-    private final int mUnfocusedMonthDateColor;
-    private final int mWeekSeparatorLineColor;
-    private final int mWeekNumberColor;
-    private final int mSelectedWeekNumberColor;
     private final int mWeekdayColor;
     private final int mWeekendColor;
+    private final int mDisplayMode;
+
+    private MonthRenderer.Style mStyle;
 
     private int mListScrollTopOffset;
     private int mWeekMinVisibleHeight;
     private int mBottomBuffer;
     private int mShownWeekCount;
     private boolean mShowWeekNumber;
+    private boolean mTextCacheEnabled;
     private int mFirstDayOfWeek;
     private int mCurrentMonthDisplayed;
+    private int mDisplayedMonthKey;
+    private int mSelectionMode;
     private long mPreviousScrollPosition;
     private boolean mIsScrollingUp = false;
     private int mPreviousScrollState = OnScrollListener.SCROLL_STATE_IDLE;
@@ -115,28 +205,58 @@ public class CalendarView extends FrameLayout {
 
     private ScrollStateRunnable mScrollStateChangedRunnable = new ScrollStateRunnable();
     private OnDateChangeListener mOnDateChangeListener;
+    private OnSelectionChangeListener mOnSelectionChangeListener;
+    private long mDateChangeDebounceMillis;
+    private long mDispatchedDay = WeekIndex.NO_DAY;
+    private boolean mDateChangePending;
+    private final Runnable mDateChangeRunnable = new Runnable() {
+        @Override
+        public void run() {
+            dispatchDateChange();
+        }
+    };
+    private MetricsSink mMetricsSink;
     private WeeksAdapter mAdapter;
+    private WeeksDisplay mWeeksDisplay;
     private ListView mListView;
     private TextView mMonthName;
     private ViewGroup mDayNamesHeader;
+    private DayNamesView mDayNamesView;
 
     private Calendar mTempDate;
     private Calendar mFirstDayOfMonth;
     private Calendar mMinDate;
     private Calendar mMaxDate;
+    private WeekIndex mWeekIndex;
+    private NumberAtlas mDayNumberAtlas;
+    private NumberAtlas mWeekNumberAtlas;
+    private DayDecorations mDayDecorations;
+    private DayRules mDayRules;
+    private CalendarInstancesSource mInstancesSource;
+    private WeekRenderCache mRenderCache;
+    private YearView mYearView;
+    private CalendarModel mModel;
+    private int mWeeksVersion;
+
+    private WeeksBuilder mWeeksBuilder;
+    private WeekData[] mBuiltWeeks;
+    private int mBuiltFirstWeek;
+    private int mBuiltWeeksVersion = -1;
+    private int mRequestedFirstWeek;
+    private int mRequestedLastWeek = -1;
+
+    private CalendarResources mResources;
+    private final LruCache<Integer, int[]> mMonthDecorations =
+            new LruCache<Integer, int[]>(DECORATION_CACHE_MONTH_COUNT);
 
-    private final SimpleDateFormat mDateFormat = new SimpleDateFormat(DATE_FORMAT);
-    private final SimpleDateFormat mDateFormatLocalized;
-    private final SimpleDateFormat mMonthFormatLocalized;
-    private final SimpleDateFormat mDayFormatLocalized;
-    private final String[] mDaysOfWeekLocalized;
-
-    private Parcelable mListViewState;
     private Locale mCurrentLocale;
     private Context mContext;
+    private AccessibilityManager mAccessibilityManager;
 
     /**
-     * The callback used to indicate the user changes the date.
+     * The callback used to indicate the user changes the date. In the
+     * {@link #SELECTION_MODE_MULTIPLE} and {@link #SELECTION_MODE_RANGE} modes the taps do not
+     * change the date, they are reported to the {@link OnSelectionChangeListener}.
      */
     public interface OnDateChangeListener {
 
@@ -151,6 +271,45 @@ public class CalendarView extends FrameLayout {
         void onSelectedDayChange(CalendarView view, int year, int month, int dayOfMonth);
     }
 
+    /**
+     * The callback used to indicate the selected dates change in the {@link #SELECTION_MODE_MULTIPLE}
+     * and {@link #SELECTION_MODE_RANGE} modes.
+     */
+    public interface OnSelectionChangeListener {
+
+        /**
+         * Called once per change of the selected dates with the ranges of consecutive days which
+         * were selected and deselected. The ranges are pairs of dates in milliseconds, the range
+         * <code>i</code> spans from <code>ranges[2 * i]</code> to <code>ranges[2 * i + 1]</code>
+         * inclusive.
+         *
+         * @param view The view associated with this listener.
+         * @param selectedRanges The ranges of the newly selected dates.
+         * @param deselectedRanges The ranges of the newly deselected dates.
+         */
+        void onSelectionChange(CalendarView view, long[] selectedRanges, long[] deselectedRanges);
+    }
+
+    /**
+     * The callback used to record the timings of the calendar, e.g. {@link CalendarMetrics}.
+     * It is called on the main thread.
+     */
+    public interface MetricsSink {
+
+        /**
+         * Called upon completion of a timed section.
+         *
+         * @param metric The section, e.g. {@link #METRIC_BIND}.
+         * @param durationNanos The duration of the section in nanoseconds.
+         */
+        void onSectionTimed(int metric, long durationNanos);
+
+        /**
+         * Called when the weeks are notified of a change of their data.
+         */
+        void onDataSetChanged();
+    }
+
     public CalendarView(Context context) {
         this(context, null);
     }
@@ -163,18 +322,17 @@ public class CalendarView extends FrameLayout {
         super(context, attrs, 0);
 
         mContext = context;
+        mAccessibilityManager = (AccessibilityManager) context.
+                getSystemService(Service.ACCESSIBILITY_SERVICE);
 
         mCurrentLocale = context.getResources().getConfiguration().locale;
 
-        mTempDate = getLocalizedCalendar(mTempDate);
-        mFirstDayOfMonth = getLocalizedCalendar(mFirstDayOfMonth);
-        mMinDate = getLocalizedCalendar(mMinDate);
-        mMaxDate = getLocalizedCalendar(mMaxDate);
+        mResources = CalendarResources.get(mCurrentLocale, TimeZone.getDefault());
 
-        mDateFormatLocalized = new SimpleDateFormat(DATE_FORMAT_LOCALIZED, mCurrentLocale);
-        mMonthFormatLocalized = new SimpleDateFormat(MONTH_FORMAT_LOCALIZED, mCurrentLocale);
-        mDayFormatLocalized = new SimpleDateFormat(DAY_FORMAT_LOCALIZED, mCurrentLocale);
-        mDaysOfWeekLocalized = DateFormatSymbols.getInstance(mCurrentLocale).getShortWeekdays();
+        mTempDate = mResources.newCalendar();
+        mFirstDayOfMonth = mResources.newCalendar();
+        mMinDate = mResources.newCalendar();
+        mMaxDate = mResources.newCalendar();
 
         TypedArray attributesArray = context.obtainStyledAttributes(
                 attrs, R.styleable.CalendarView, R.attr.calendarViewStyle, 0);
@@ -184,41 +342,36 @@ public class CalendarView extends FrameLayout {
                 R.styleable.CalendarView_firstDayOfWeek, Calendar.getInstance().getFirstDayOfWeek());
         mShownWeekCount = attributesArray.getInt(
                 R.styleable.CalendarView_shownWeekCount, DEFAULT_SHOWN_WEEK_COUNT);
+        mTextCacheEnabled = attributesArray.getBoolean(
+                R.styleable.CalendarView_textCacheEnabled, DEFAULT_TEXT_CACHE_ENABLED);
+        int renderCacheSize = attributesArray.getInt(
+                R.styleable.CalendarView_renderCacheSize, DEFAULT_RENDER_CACHE_SIZE);
+        if (renderCacheSize > 0) {
+            mRenderCache = new WeekRenderCache(renderCacheSize);
+        }
 
         String minDate = attributesArray.getString(R.styleable.CalendarView_minDate);
         if (TextUtils.isEmpty(minDate) || !parseDate(minDate, mMinDate)) {
-            parseDate(DEFAULT_MIN_DATE, mMinDate);
+            mMinDate.setTimeInMillis(mResources.getDefaultMinDate());
         }
         String maxDate = attributesArray.getString(R.styleable.CalendarView_maxDate);
         if (TextUtils.isEmpty(maxDate) || !parseDate(maxDate, mMaxDate)) {
-            parseDate(DEFAULT_MAX_DATE, mMaxDate);
+            mMaxDate.setTimeInMillis(mResources.getDefaultMaxDate());
         }
         if (mMaxDate.before(mMinDate)) {
             throw new IllegalArgumentException("Max date cannot be before min date.");
         }
+        checkSupportedDate(mMinDate.getTimeInMillis());
+        checkSupportedDate(mMaxDate.getTimeInMillis());
         boolean setDate = attributesArray.getBoolean(R.styleable.CalendarView_setInitialDate, true);
-
-        mSelectedWeekBackgroundColor = attributesArray.getColor(
-                R.styleable.CalendarView_selectedWeekBackgroundColor,
-                Color.parseColor(DEFAULT_SELECTED_WEEK_BACKGROUND_COLOR_HEX));
-        mFocusedMonthDateColor = attributesArray.getColor(
-                R.styleable.CalendarView_focusedMonthDateColor,
-                Color.parseColor(DEFAULT_FOCUSED_MONTH_DATE_COLOR_HEX));
-        mUnfocusedMonthDateColor = attributesArray.getColor(
-                R.styleable.CalendarView_unfocusedMonthDateColor,
-                Color.parseColor(DEFAULT_UNFOCUSED_MONTH_DATE_COLOR_HEX));
-        mWeekSeparatorLineColor = attributesArray.getColor(
-                R.styleable.CalendarView_weekSeparatorLineColor,
-                Color.parseColor(DEFAULT_WEEK_SEPARATOR_LINE_COLOR_HEX));
-        mWeekNumberColor = attributesArray.getColor(
-                R.styleable.CalendarView_weekNumberColor,
-                Color.parseColor(DEFAULT_WEEK_NUMBER_COLOR_HEX));
-        mSelectedWeekNumberColor = attributesArray.getColor(
-                R.styleable.CalendarView_selectedWeekNumberColor,
-                Color.parseColor(DEFAULT_SELECTED_WEEK_NUMBER_COLOR_HEX));
-        mSelectedDateArrowsColor = attributesArray.getColor(
-                R.styleable.CalendarView_selectedDateArrowsColor,
-                Color.parseColor(DEFAULT_SELECTED_DATE_ARROWS_COLOR_HEX));
+        boolean inflateLayout = attributesArray.getBoolean(
+                R.styleable.CalendarView_inflateLayout, DEFAULT_INFLATE_LAYOUT);
+        boolean fastScrollEnabled = attributesArray.getBoolean(
+                R.styleable.CalendarView_fastScrollEnabled, DEFAULT_FAST_SCROLL_ENABLED);
+        mDisplayMode = attributesArray.getInt(R.styleable.CalendarView_displayMode, DEFAULT_DISPLAY_MODE);
+        mSelectionMode = attributesArray.getInt(R.styleable.CalendarView_selectionMode, DEFAULT_SELECTION_MODE);
+
+        mStyle = new MonthRenderer.Style(context, attributesArray);
         mWeekdayColor =  attributesArray.getColor(
                 R.styleable.CalendarView_weekdayColor,
                 Color.parseColor(DEFAULT_WEEKDAY_COLOR_HEX));
@@ -231,15 +384,6 @@ public class CalendarView extends FrameLayout {
 
         DisplayMetrics displayMetrics = getResources().getDisplayMetrics();
 
-        int dateTextAppearanceResId = attributesArray.getResourceId(
-                R.styleable.CalendarView_dateTextAppearance, android.R.style.TextAppearance_Small);
-        TypedArray dateTextAppearance = context.obtainStyledAttributes(dateTextAppearanceResId,
-                R.styleable.DateTextAppearance);
-        mDateTextSize = dateTextAppearance.getDimensionPixelSize(
-                R.styleable.DateTextAppearance_textSize, (int) TypedValue.applyDimension(
-                        TypedValue.COMPLEX_UNIT_SP, DEFAULT_DATE_TEXT_SIZE, displayMetrics));
-        dateTextAppearance.recycle();
-
         mWeekDayTextAppearance = attributesArray.getResourceId(
                 R.styleable.CalendarView_weekDayTextAppearance, DEFAULT_WEEK_DAY_TEXT_APPEARANCE_RES_ID);
         attributesArray.recycle();
@@ -250,27 +394,54 @@ public class CalendarView extends FrameLayout {
                 UNSCALED_LIST_SCROLL_TOP_OFFSET, displayMetrics);
         mBottomBuffer = (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP,
                 UNSCALED_BOTTOM_BUFFER, displayMetrics);
-        mSelectedDateArrowWidth = (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP,
-                UNSCALED_SELECTED_DATE_ARROW_WIDTH, displayMetrics);
-        mWeekSeparatorLineWidth = (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP,
-                UNSCALED_WEEK_SEPARATOR_LINE_WIDTH, displayMetrics);
 
-        LayoutInflater inflater = (LayoutInflater) context.
-                getSystemService(Service.LAYOUT_INFLATER_SERVICE);
-        inflater.inflate(R.layout.calendar_view, this, true);
-
-        mListView = (ListView) findViewById(android.R.id.list);
-        mDayNamesHeader = (ViewGroup) findViewById(R.id.day_names);
+        if (inflateLayout) {
+            LayoutInflater inflater = (LayoutInflater) context.
+                    getSystemService(Service.LAYOUT_INFLATER_SERVICE);
+            inflater.inflate(R.layout.calendar_view, this, true);
+            mListView = (ListView) findViewById(android.R.id.list);
+        } else if (mDisplayMode == DISPLAY_MODE_LIST) {
+            mListView = createListView(context);
+        }
 
-        mMonthName = (TextView) findViewById(R.id.month_name);
-        mMonthName.setTextColor(mFocusedMonthDateColor);
+        switch (mDisplayMode) {
+            case DISPLAY_MODE_CANVAS:
+                mWeeksDisplay = new WeeksCanvasView(context);
+                break;
+            case DISPLAY_MODE_RECYCLER:
+                mWeeksDisplay = new RecyclerWeeksDisplay(context);
+                break;
+            case DISPLAY_MODE_MONTH_PAGER:
+                mWeeksDisplay = new MonthPagerView(context);
+                break;
+            default:
+                mWeeksDisplay = new ListWeeksDisplay();
+                break;
+        }
+        if (!inflateLayout) {
+            buildLayout(context, displayMetrics);
+        } else if (mWeeksDisplay.getView() != mListView) {
+            ViewGroup listContainer = (ViewGroup) mListView.getParent();
+            listContainer.addView(mWeeksDisplay.getView(), listContainer.indexOfChild(mListView),
+                    mListView.getLayoutParams());
+            listContainer.removeView(mListView);
+            mListView = null;
+        }
+        if (inflateLayout) {
+            mDayNamesHeader = (ViewGroup) findViewById(R.id.day_names);
+            mMonthName = (TextView) findViewById(R.id.month_name);
+        }
+        mMonthName.setTextColor(mStyle.getFocusedMonthDateColor());
 
         View mDivider = findViewById(R.id.divider);
         mDivider.setBackgroundColor(mDividerColor);
 
         setUpHeader();
-        setUpListView();
+        if (mListView != null) {
+            setUpListView();
+        }
         setUpAdapter();
+        setFastScrollEnabled(fastScrollEnabled);
 
         if (setDate) {
             setDate(mTempDate.getTimeInMillis());
@@ -279,11 +450,8 @@ public class CalendarView extends FrameLayout {
 
     @Override
     protected Parcelable onSaveInstanceState() {
-        if (mListView.getLastVisiblePosition() != -1) {
-            mListViewState = mListView.onSaveInstanceState();
-        }
-
-        return new SavedState(super.onSaveInstanceState(), mListViewState, getDate(), getFocusedDate());
+        return new SavedState(super.onSaveInstanceState(), mWeeksDisplay.onSaveState(),
+                getDate(), getFocusedDate());
     }
 
     @Override
@@ -291,9 +459,9 @@ public class CalendarView extends FrameLayout {
         SavedState savedState = (SavedState) state;
         super.onRestoreInstanceState(savedState.getSuperState());
 
-        mListViewState = savedState.getListState();
-        if (mListViewState != null) {
-            mListView.onRestoreInstanceState(mListViewState);
+        Parcelable listState = savedState.getListState();
+        if (listState != null) {
+            mWeeksDisplay.onRestoreState(listState);
             setCurrentDate(savedState.getSelectedDate(), savedState.getFocusedDate());
         } else {
             setDate(savedState.getSelectedDate());
@@ -311,14 +479,58 @@ public class CalendarView extends FrameLayout {
         }
     }
 
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mWeeksBuilder = new WeeksBuilder(new WeeksBuilder.OnWeeksBuiltListener() {
+            @Override
+            public void onWeeksBuilt(CalendarModel model, int firstWeek, WeekData[] weeks) {
+                if (model.getWeeksVersion() == mModel.getWeeksVersion()) {
+                    mBuiltWeeks = weeks;
+                    mBuiltFirstWeek = firstWeek;
+                    mBuiltWeeksVersion = model.getWeeksVersion();
+                }
+            }
+        });
+        requestWeeks(mWeeksDisplay.getFirstVisiblePosition(), true);
+        if (mInstancesSource != null) {
+            mInstancesSource.start(this);
+            mInstancesSource.setFocusedMonth(mDisplayedMonthKey);
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        mWeeksBuilder.quit();
+        mWeeksBuilder = null;
+        if (mInstancesSource != null) {
+            mInstancesSource.stop();
+        }
+    }
+
     @Override
     public void setEnabled(boolean enabled) {
-        mListView.setEnabled(enabled);
+        mWeeksDisplay.getView().setEnabled(enabled);
     }
 
     @Override
     public boolean isEnabled() {
-        return mListView.isEnabled();
+        return mWeeksDisplay.getView().isEnabled();
+    }
+
+    /**
+     * Gets how the weeks are displayed.
+     *
+     * @return The display mode set through the <code>displayMode</code> attribute.
+     *
+     * @see #DISPLAY_MODE_LIST
+     * @see #DISPLAY_MODE_CANVAS
+     * @see #DISPLAY_MODE_RECYCLER
+     * @see #DISPLAY_MODE_MONTH_PAGER
+     */
+    public int getDisplayMode() {
+        return mDisplayMode;
     }
 
     /**
@@ -337,9 +549,10 @@ public class CalendarView extends FrameLayout {
      * since January 1, 1970 00:00:00 in {@link TimeZone#getDefault()} time
      * zone.
      *
-     * @param minDate The minimal supported date.
+     * @param minDate The minimal supported date, not before January 1 of year 1.
      */
     public void setMinDate(long minDate) {
+        checkSupportedDate(minDate);
         mTempDate.setTimeInMillis(minDate);
         if (isSameDate(mTempDate, mMinDate)) {
             return;
@@ -369,9 +582,10 @@ public class CalendarView extends FrameLayout {
      * since January 1, 1970 00:00:00 in {@link TimeZone#getDefault()} time
      * zone.
      *
-     * @param maxDate The maximal supported date.
+     * @param maxDate The maximal supported date, not after December 31 of year 9999.
      */
     public void setMaxDate(long maxDate) {
+        checkSupportedDate(maxDate);
         mTempDate.setTimeInMillis(maxDate);
         if (isSameDate(mTempDate, mMaxDate)) {
             return;
@@ -385,6 +599,81 @@ public class CalendarView extends FrameLayout {
         }
     }
 
+    /**
+     * Sets the range to all the supported dates, from January 1 of year 1 to December 31 of
+     * year 9999 of the proleptic Gregorian calendar, and shows the selected date. The weeks are
+     * bound lazily, so such a range costs as much as a short one.
+     */
+    public void setUnboundedRange() {
+        mMinDate.setTimeInMillis(mResources.getSupportedMinDate());
+        mMaxDate.setTimeInMillis(mResources.getSupportedMaxDate());
+        mAdapter.init();
+        mAdapter.notifyDataSetChanged();
+        goTo(mAdapter.mSelectedDate, false, true, true);
+    }
+
+    /**
+     * Sets whether the weeks can be scrolled quickly by dragging a thumb showing the month
+     * and the year, or only the year for ranges over a hundred years. Only the
+     * {@link #DISPLAY_MODE_LIST} display has a fast scroller.
+     *
+     * @param fastScrollEnabled True to enable the fast scroller.
+     */
+    public void setFastScrollEnabled(boolean fastScrollEnabled) {
+        if (mListView != null) {
+            mListView.setFastScrollEnabled(fastScrollEnabled);
+        }
+    }
+
+    /**
+     * Gets whether the weeks can be scrolled quickly by dragging a thumb.
+     *
+     * @return True if the fast scroller is enabled.
+     */
+    public boolean isFastScrollEnabled() {
+        return mListView != null && mListView.isFastScrollEnabled();
+    }
+
+    /**
+     * Shows an overview of the year of the displayed month in place of the weeks, or the weeks
+     * again. The twelve months of the year are drawn as small grids, tapping a month shows its
+     * weeks and a horizontal fling shows the previous or next year.
+     *
+     * @param shown True to show the year overview.
+     */
+    public void setYearOverviewShown(boolean shown) {
+        if (shown == isYearOverviewShown()) {
+            return;
+        }
+        View dayNames = mDayNamesView != null ? mDayNamesView : mDayNamesHeader;
+        if (shown) {
+            if (mYearView == null) {
+                mYearView = new YearView(mContext);
+                ViewGroup weeksContainer = (ViewGroup) mWeeksDisplay.getView().getParent();
+                weeksContainer.addView(mYearView, new LayoutParams(
+                        LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT));
+            }
+            mYearView.setYear(mDisplayedMonthKey / 12);
+            mYearView.setVisibility(View.VISIBLE);
+            mWeeksDisplay.getView().setVisibility(View.INVISIBLE);
+            dayNames.setVisibility(View.INVISIBLE);
+        } else {
+            mYearView.setVisibility(View.GONE);
+            mWeeksDisplay.getView().setVisibility(View.VISIBLE);
+            dayNames.setVisibility(View.VISIBLE);
+            mMonthName.setText(mResources.getMonthTitle(mDisplayedMonthKey / 12, mDisplayedMonthKey % 12));
+        }
+    }
+
+    /**
+     * Gets whether the year overview is shown.
+     *
+     * @return True if the year overview is shown in place of the weeks.
+     */
+    public boolean isYearOverviewShown() {
+        return mYearView != null && mYearView.getVisibility() == View.VISIBLE;
+    }
+
     /**
      * Sets whether to show the week number.
      *
@@ -408,6 +697,33 @@ public class CalendarView extends FrameLayout {
         return mShowWeekNumber;
     }
 
+    /**
+     * Sets whether the day and week numbers are drawn from bitmaps rendered once
+     * instead of being laid out as text on every frame.
+     *
+     * @param textCacheEnabled True to draw the numbers from the cache.
+     */
+    public void setTextCacheEnabled(boolean textCacheEnabled) {
+        if (mTextCacheEnabled == textCacheEnabled) {
+            return;
+        }
+        mTextCacheEnabled = textCacheEnabled;
+        if (!textCacheEnabled) {
+            mDayNumberAtlas = null;
+            mWeekNumberAtlas = null;
+        }
+        mAdapter.notifyDataSetChanged();
+    }
+
+    /**
+     * Gets whether the day and week numbers are drawn from the cache.
+     *
+     * @return True if drawing the numbers from the cache.
+     */
+    public boolean isTextCacheEnabled() {
+        return mTextCacheEnabled;
+    }
+
     /**
      * Gets the first day of week.
      *
@@ -442,754 +758,3429 @@ public class CalendarView extends FrameLayout {
         if (mFirstDayOfWeek == firstDayOfWeek) {
             return;
         }
+        // Keep the middle of the first visible week at the top, the weeks only shift by days
+        long anchorDay = mWeekIndex.getFirstDayOf(mWeeksDisplay.getFirstVisiblePosition()) + 3;
         mFirstDayOfWeek = firstDayOfWeek;
-        mAdapter.init();
-        mAdapter.notifyDataSetChanged();
+        mAdapter.reindexWeeks();
+        mWeeksDisplay.scrollToPosition(mWeekIndex.getWeekOf(anchorDay), false);
         setUpHeader();
     }
 
     /**
-     * Sets the listener to be notified upon selected date change.
+     * Sets the decorations drawn below the day numbers. The decorations of the shown
+     * months are cached, call {@link #invalidateDayDecorations()} after changing them.
      *
-     * @param listener The listener to be notified.
+     * @param decorations The decorations or null to remove them.
      */
-    public void setOnDateChangeListener(OnDateChangeListener listener) {
-        mOnDateChangeListener = listener;
+    public void setDayDecorations(DayDecorations decorations) {
+        mDayDecorations = decorations;
+        invalidateDayDecorations();
     }
 
     /**
-     * Gets the selected date in milliseconds since January 1, 1970 00:00:00 in
-     * {@link TimeZone#getDefault()} time zone.
+     * Gets the decorations drawn below the day numbers.
      *
-     * @return The selected date.
+     * @return The decorations or null if none.
      */
-    public long getDate() {
-        return mAdapter.mSelectedDate.getTimeInMillis();
+    public DayDecorations getDayDecorations() {
+        return mDayDecorations;
     }
 
     /**
-     * Gets the focused month in milliseconds since January 1, 1970 00:00:00 in
-     * {@link TimeZone#getDefault()} time zone.
-     *
-     * @return The focused month.
+     * Discards the cached decorations and redraws the weeks.
      */
-    public long getFocusedDate() {
-        return mFirstDayOfMonth.getTimeInMillis();
+    public void invalidateDayDecorations() {
+        mMonthDecorations.evictAll();
+        updateModel(mModel.getWeekIndex(), mModel.getSelectedDay());
+        mAdapter.notifyDataSetChanged();
     }
 
     /**
-     * Sets the selected date in milliseconds since January 1, 1970 00:00:00 in
-     * {@link TimeZone#getDefault()} time zone.
-     *
-     * @param date The selected date.
-     *
-     * @throws IllegalArgumentException if the provided date
-     * is before the range start of after the range end.
-     *
-     * @see #setDate(long, boolean, boolean)
-     * @see #setMinDate(long)
-     * @see #setMaxDate(long)
+     * Discards the cached decorations of the given months, as <code>year * 12 + month</code>,
+     * and redraws only the shown weeks overlapping them.
      */
-    public void setDate(long date) {
-        setDate(date, false, false);
+    void invalidateDayDecorations(int firstMonthKey, int lastMonthKey) {
+        for (Integer key : mMonthDecorations.snapshot().keySet()) {
+            if (key >= firstMonthKey && key <= lastMonthKey) {
+                mMonthDecorations.remove(key);
+            }
+        }
+        WeekIndex weekIndex = mModel.getWeekIndex();
+        firstMonthKey = Math.max(firstMonthKey, WeekIndex.getMonthKey(weekIndex.getMinDay()));
+        lastMonthKey = Math.min(lastMonthKey, WeekIndex.getMonthKey(weekIndex.getMaxDay()));
+        if (firstMonthKey > lastMonthKey) {
+            return;
+        }
+        long firstDay = Math.max(weekIndex.getMinDay(),
+                WeekIndex.toEpochDay(firstMonthKey / 12, firstMonthKey % 12, 1));
+        long lastDay = Math.min(weekIndex.getMaxDay(),
+                WeekIndex.toEpochDay(lastMonthKey / 12, lastMonthKey % 12, 1)
+                        + WeekIndex.getMonthLength(lastMonthKey / 12, lastMonthKey % 12) - 1);
+        int firstWeek = weekIndex.getWeekOf(firstDay);
+        int lastWeek = weekIndex.getWeekOf(lastDay);
+
+        // Rebuild the prebuilt weeks of the months in place under a new version, so the builds
+        // in flight with the previous decorations are dropped
+        WeekData[] builtWeeks = mBuiltWeeksVersion == mModel.getWeeksVersion() ? mBuiltWeeks : null;
+        mModel = new CalendarModel(++mWeeksVersion, weekIndex, mDayDecorations, mDayRules,
+                mModel.getSelectedDay());
+        if (builtWeeks != null) {
+            int first = Math.max(firstWeek, mBuiltFirstWeek);
+            int last = Math.min(lastWeek, mBuiltFirstWeek + builtWeeks.length - 1);
+            for (int week = first; week <= last; week++) {
+                builtWeeks[week - mBuiltFirstWeek] = mModel.buildWeek(week);
+            }
+            mBuiltWeeksVersion = mWeeksVersion;
+        }
+        if (builtWeeks == null || mBuiltFirstWeek != mRequestedFirstWeek
+                || mBuiltFirstWeek + builtWeeks.length - 1 != mRequestedLastWeek) {
+            // The requested weeks are still being built with the previous version, build them again
+            requestWeeks(mWeeksDisplay.getFirstVisiblePosition(), true);
+        }
+        if (mRenderCache != null) {
+            mRenderCache.evictWeeks(weekIndex.getFirstDayOf(firstWeek), weekIndex.getFirstDayOf(lastWeek));
+        }
+        mWeeksDisplay.onDecorationsChanged(firstWeek, lastWeek);
+        updateYearOverview();
     }
 
     /**
-     * Sets the selected date in milliseconds since January 1, 1970 00:00:00 in
-     * {@link TimeZone#getDefault()} time zone.
-     *
-     * @param date The date.
-     * @param animate Whether to animate the scroll to the current date.
-     * @param center Whether to center the current date even if it is already visible.
-     *
-     * @throws IllegalArgumentException if the provided date
-     * is before the range start of after the range end.
+     * Sets the source decorating the days with the event instances of the calendar provider.
+     * The source replaces the decorations set through {@link #setDayDecorations(DayDecorations)}
+     * and loads the months around the focused month while the view is attached to a window.
      *
-     * @see #setMinDate(long)
-     * @see #setMaxDate(long)
+     * @param source The source or null to remove it along with its decorations.
      */
-    public void setDate(long date, boolean animate, boolean center) {
-        mTempDate.setTimeInMillis(date);
-        if (mTempDate.before(mMinDate)) {
-            goTo(mMinDate, animate, true, center);
-        } else if (mTempDate.after(mMaxDate)) {
-            goTo(mMaxDate, animate, true, center);
-        } else {
-            goTo(mTempDate, animate, true, center);
+    public void setInstancesSource(CalendarInstancesSource source) {
+        if (mInstancesSource != null) {
+            mInstancesSource.stop();
+        }
+        mInstancesSource = source;
+        if (source == null) {
+            setDayDecorations(null);
+            return;
+        }
+        setDayDecorations(source.getDayDecorations());
+        if (mWeeksBuilder != null) {
+            source.start(this);
+            source.setFocusedMonth(mDisplayedMonthKey);
         }
     }
 
     /**
-     * Gets the current time zone.
+     * Gets the source decorating the days with the event instances of the calendar provider.
      *
-     * @return TimeZone The current time zone.
+     * @return The source or null if none.
      */
-    public TimeZone getTimeZone() {
-        return mTempDate.getTimeZone();
+    public CalendarInstancesSource getInstancesSource() {
+        return mInstancesSource;
     }
 
     /**
-     * Sets the new time zone.
+     * Sets the rules disabling days. The disabled days are dimmed and cannot be tapped.
+     * Call {@link #invalidateDayRules()} after changing the rules.
      *
-     * @param zone The new time zone.
+     * @param rules The rules or null to enable all the days of the range.
      */
-    public void setTimeZone(TimeZone zone) {
-        Calendar currentMonth = (Calendar)
-                mFirstDayOfMonth.clone();
-
-        mAdapter.mSelectedDate.setTimeZone(zone);
-        mFirstDayOfMonth.setTimeZone(zone);
-        mTempDate.setTimeZone(zone);
-        mMaxDate.setTimeZone(zone);
-        mMinDate.setTimeZone(zone);
-
-        if (!isSameDate(currentMonth, mFirstDayOfMonth)) {
-            mFirstDayOfMonth.set(Calendar.YEAR,
-                    currentMonth.get(Calendar.YEAR));
-            mFirstDayOfMonth.set(Calendar.MONTH,
-                    currentMonth.get(Calendar.MONTH));
-            mFirstDayOfMonth.set(Calendar.DAY_OF_MONTH, 1);
-        }
-
-        mDateFormat.setTimeZone(zone);
-        mDateFormatLocalized.setTimeZone(zone);
-        mMonthFormatLocalized.setTimeZone(zone);
-        mDayFormatLocalized.setTimeZone(zone);
+    public void setDayRules(DayRules rules) {
+        mDayRules = rules;
+        invalidateDayRules();
+    }
 
-        parseDate(DEFAULT_MIN_DATE, mMinDate);
-        parseDate(DEFAULT_MAX_DATE, mMaxDate);
+    /**
+     * Gets the rules disabling days.
+     *
+     * @return The rules or null if none.
+     */
+    public DayRules getDayRules() {
+        return mDayRules;
+    }
 
-        mAdapter.init();
+    /**
+     * Reevaluates the rules for the weeks and redraws them.
+     */
+    public void invalidateDayRules() {
+        updateModel(mModel.getWeekIndex(), mModel.getSelectedDay());
         mAdapter.notifyDataSetChanged();
-
-        setCurrentDate(getDate(), getFocusedDate());
     }
 
-    private void setCurrentDate(long selectedDate, long focusedMonth) {
-        Calendar currentDate = (Calendar) mTempDate.clone();
-        currentDate.clear();
-        currentDate.setTimeInMillis(selectedDate);
-        if (currentDate.before(mMinDate)) {
-            mAdapter.setSelectedDay(mMinDate, false);
-            setMonthDisplayed(mMinDate, false);
-        } else if (currentDate.after(mMaxDate)) {
-            mAdapter.setSelectedDay(mMaxDate, false);
-            setMonthDisplayed(mMaxDate, false);
-        } else {
-            mAdapter.setSelectedDay(currentDate, false);
-            currentDate.setTimeInMillis(focusedMonth);
-            setMonthDisplayed(currentDate, false);
-        }
+    /**
+     * Sets the colors of the decoration dots. A dot is drawn for each flag set on a day,
+     * up to four dots, the flag <code>1 &lt;&lt; i</code> is drawn with the color at
+     * <code>i</code> modulo the number of colors.
+     *
+     * @param colors The colors of the flags.
+     */
+    public void setDecorationColors(int... colors) {
+        mStyle = mStyle.withDecorationColors(colors);
+        mAdapter.notifyDataSetChanged();
     }
 
-    private Calendar getLocalizedCalendar(Calendar oldCalendar) {
-        if (oldCalendar == null) {
-            return Calendar.getInstance(mCurrentLocale);
-        } else {
-            final long currentTimeMillis = oldCalendar.getTimeInMillis();
-            Calendar newCalendar = Calendar.getInstance(mCurrentLocale);
-            newCalendar.setTimeInMillis(currentTimeMillis);
-            return newCalendar;
+    /**
+     * Sets the size of the cache of the rendered weeks. The cached weeks are drawn from a bitmap
+     * when they scroll back into view, e.g. during a fling. The cache is discarded whenever the
+     * weeks change, except for the selection and the focused month which are part of the key
+     * of a cached week.
+     *
+     * @param maxKilobytes The maximal size of the cached bitmaps in kilobytes or 0 to disable
+     * the cache.
+     */
+    public void setRenderCacheSize(int maxKilobytes) {
+        if (maxKilobytes == getRenderCacheSize()) {
+            return;
         }
+        mRenderCache = maxKilobytes > 0 ? new WeekRenderCache(maxKilobytes) : null;
+        mAdapter.notifyDataSetChanged();
     }
 
-    private boolean isSameDate(Calendar firstDate, Calendar secondDate) {
+    /**
+     * Gets the size of the cache of the rendered weeks.
+     *
+     * @return The maximal size of the cached bitmaps in kilobytes or 0 if disabled.
+     */
+    public int getRenderCacheSize() {
+        return mRenderCache != null ? mRenderCache.maxSize() : 0;
+    }
+
+    /**
+     * Gets the number of weeks drawn from the render cache since it was created.
+     *
+     * @return The number of cache hits.
+     */
+    public int getRenderCacheHitCount() {
+        return mRenderCache != null ? mRenderCache.hitCount() : 0;
+    }
+
+    /**
+     * Gets the number of weeks rendered into the render cache since it was created.
+     *
+     * @return The number of cache misses.
+     */
+    public int getRenderCacheMissCount() {
+        return mRenderCache != null ? mRenderCache.missCount() : 0;
+    }
+
+    /**
+     * Sets the sink recording the timings of the calendar. While a sink is set the timed
+     * sections are also traced with {@link Trace} on API 18 and above. No timing is done
+     * without a sink.
+     *
+     * @param sink The sink or null to stop recording.
+     */
+    public void setMetricsSink(MetricsSink sink) {
+        mMetricsSink = sink;
+    }
+
+    /**
+     * Gets the sink recording the timings of the calendar.
+     *
+     * @return The sink or null if none.
+     */
+    public MetricsSink getMetricsSink() {
+        return mMetricsSink;
+    }
+
+    /**
+     * Prepares the locale and time zone dependent resources shared by the calendars, e.g. the
+     * date formats, so the first calendar using them is created faster. It may be called from
+     * any thread, typically at application startup.
+     *
+     * @param locale The locale of the calendars.
+     * @param zone The time zone of the calendars.
+     */
+    public static void prewarm(Locale locale, TimeZone zone) {
+        CalendarResources.get(locale, zone);
+    }
+
+    /**
+     * Sets the listener to be notified upon selected date change. The changes are delivered
+     * at most once per frame, and only when the selected day differs from the one delivered
+     * last, see {@link #setDateChangeDebounce(long)}.
+     *
+     * @param listener The listener to be notified.
+     */
+    public void setOnDateChangeListener(OnDateChangeListener listener) {
+        mOnDateChangeListener = listener;
+        mDispatchedDay = mModel.getSelectedDay();
+    }
+
+    /**
+     * Sets how long the selected date must stay the same before the change is delivered to
+     * the {@link OnDateChangeListener}, e.g. for a listener querying a database.
+     *
+     * @param debounceMillis The delay in milliseconds or 0 to deliver the changes on the next frame.
+     */
+    public void setDateChangeDebounce(long debounceMillis) {
+        mDateChangeDebounceMillis = debounceMillis;
+    }
+
+    /**
+     * Gets how long the selected date must stay the same before the change is delivered.
+     *
+     * @return The delay in milliseconds.
+     */
+    public long getDateChangeDebounce() {
+        return mDateChangeDebounceMillis;
+    }
+
+    /**
+     * Sets the listener to be notified upon change of the selected dates in the
+     * {@link #SELECTION_MODE_MULTIPLE} and {@link #SELECTION_MODE_RANGE} modes.
+     *
+     * @param listener The listener to be notified.
+     */
+    public void setOnSelectionChangeListener(OnSelectionChangeListener listener) {
+        mOnSelectionChangeListener = listener;
+    }
+
+    /**
+     * Sets how the dates are selected by a tap. Changing the mode deselects all the dates. In the
+     * {@link #SELECTION_MODE_MULTIPLE} and {@link #SELECTION_MODE_RANGE} modes a tap leaves the
+     * date of {@link #getDate()} unchanged and is only reported to the
+     * {@link OnSelectionChangeListener}.
+     *
+     * @param selectionMode The selection mode.
+     *
+     * @see #SELECTION_MODE_SINGLE
+     * @see #SELECTION_MODE_MULTIPLE
+     * @see #SELECTION_MODE_RANGE
+     */
+    public void setSelectionMode(int selectionMode) {
+        if (mSelectionMode == selectionMode) {
+            return;
+        }
+        mAdapter.clearSelectedDays();
+        mSelectionMode = selectionMode;
+        mAdapter.notifyDataSetChanged();
+    }
+
+    /**
+     * Gets how the dates are selected by a tap.
+     *
+     * @return The selection mode.
+     */
+    public int getSelectionMode() {
+        return mSelectionMode;
+    }
+
+    /**
+     * Selects the dates from the start date to the end date inclusive, clamped to the
+     * range of the calendar. In the {@link #SELECTION_MODE_RANGE} mode the dates replace
+     * the selected range.
+     *
+     * @param startDate The first selected date in milliseconds.
+     * @param endDate The last selected date in milliseconds.
+     *
+     * @throws IllegalStateException if the selection mode is {@link #SELECTION_MODE_SINGLE}.
+     */
+    public void selectDates(long startDate, long endDate) {
+        checkMultipleSelection();
+        TimeZone zone = getTimeZone();
+        mAdapter.selectDays(WeekIndex.toEpochDay(startDate, zone), WeekIndex.toEpochDay(endDate, zone));
+    }
+
+    /**
+     * Deselects the dates from the start date to the end date inclusive.
+     *
+     * @param startDate The first deselected date in milliseconds.
+     * @param endDate The last deselected date in milliseconds.
+     *
+     * @throws IllegalStateException if the selection mode is {@link #SELECTION_MODE_SINGLE}.
+     */
+    public void deselectDates(long startDate, long endDate) {
+        checkMultipleSelection();
+        TimeZone zone = getTimeZone();
+        mAdapter.deselectDays(WeekIndex.toEpochDay(startDate, zone), WeekIndex.toEpochDay(endDate, zone));
+    }
+
+    /**
+     * Deselects all the dates selected in the {@link #SELECTION_MODE_MULTIPLE} and
+     * {@link #SELECTION_MODE_RANGE} modes.
+     */
+    public void clearSelectedDates() {
+        mAdapter.clearSelectedDays();
+    }
+
+    /**
+     * Gets whether a date is selected in the {@link #SELECTION_MODE_MULTIPLE} and
+     * {@link #SELECTION_MODE_RANGE} modes.
+     *
+     * @param date The date in milliseconds.
+     * @return True if the date is selected.
+     */
+    public boolean isDateSelected(long date) {
+        return mAdapter.mDaySelection.contains(WeekIndex.toEpochDay(date, getTimeZone()));
+    }
+
+    /**
+     * Gets the number of dates selected in the {@link #SELECTION_MODE_MULTIPLE} and
+     * {@link #SELECTION_MODE_RANGE} modes.
+     *
+     * @return The number of selected dates.
+     */
+    public int getSelectedDateCount() {
+        return mAdapter.mDaySelection.size();
+    }
+
+    /**
+     * Gets the dates selected in the {@link #SELECTION_MODE_MULTIPLE} and
+     * {@link #SELECTION_MODE_RANGE} modes as ranges of consecutive days.
+     *
+     * @return The ranges as pairs of dates in milliseconds, see
+     * {@link OnSelectionChangeListener#onSelectionChange(CalendarView, long[], long[])}.
+     */
+    public long[] getSelectedRanges() {
+        DaySelection.DayRanges ranges = new DaySelection.DayRanges();
+        mAdapter.mDaySelection.getRanges(ranges);
+        return toDateRanges(ranges);
+    }
+
+    /**
+     * Gets the selected date in milliseconds since January 1, 1970 00:00:00 in
+     * {@link TimeZone#getDefault()} time zone.
+     *
+     * @return The selected date.
+     */
+    public long getDate() {
+        return mAdapter.mSelectedDate.getTimeInMillis();
+    }
+
+    /**
+     * Gets the focused month in milliseconds since January 1, 1970 00:00:00 in
+     * {@link TimeZone#getDefault()} time zone.
+     *
+     * @return The focused month.
+     */
+    public long getFocusedDate() {
+        return mFirstDayOfMonth.getTimeInMillis();
+    }
+
+    /**
+     * Sets the selected date in milliseconds since January 1, 1970 00:00:00 in
+     * {@link TimeZone#getDefault()} time zone.
+     *
+     * @param date The selected date.
+     *
+     * @throws IllegalArgumentException if the provided date
+     * is before the range start of after the range end.
+     *
+     * @see #setDate(long, boolean, boolean)
+     * @see #setMinDate(long)
+     * @see #setMaxDate(long)
+     */
+    public void setDate(long date) {
+        setDate(date, false, false);
+    }
+
+    /**
+     * Sets the selected date in milliseconds since January 1, 1970 00:00:00 in
+     * {@link TimeZone#getDefault()} time zone.
+     *
+     * @param date The date.
+     * @param animate Whether to animate the scroll to the current date.
+     * @param center Whether to center the current date even if it is already visible.
+     *
+     * @throws IllegalArgumentException if the provided date
+     * is before the range start of after the range end.
+     *
+     * @see #setMinDate(long)
+     * @see #setMaxDate(long)
+     */
+    public void setDate(long date, boolean animate, boolean center) {
+        mTempDate.setTimeInMillis(date);
+        if (mTempDate.before(mMinDate)) {
+            goTo(mMinDate, animate, true, center);
+        } else if (mTempDate.after(mMaxDate)) {
+            goTo(mMaxDate, animate, true, center);
+        } else {
+            goTo(mTempDate, animate, true, center);
+        }
+    }
+
+    /**
+     * Gets the current time zone.
+     *
+     * @return TimeZone The current time zone.
+     */
+    public TimeZone getTimeZone() {
+        return mTempDate.getTimeZone();
+    }
+
+    /**
+     * Sets the new time zone. The min and max dates keep their days in the new time zone.
+     *
+     * @param zone The new time zone.
+     */
+    public void setTimeZone(TimeZone zone) {
+        TimeZone currentZone = getTimeZone();
+        if (currentZone.getID().equals(zone.getID()) && currentZone.hasSameRules(zone)) {
+            return;
+        }
+
+        // The range and the displayed month are dates, keep them on the same days in the new
+        // time zone so the weeks do not move. The selected date is an instant and may move.
+        long minDay = WeekIndex.toEpochDay(mMinDate);
+        long maxDay = WeekIndex.toEpochDay(mMaxDate);
+        long focusedDay = WeekIndex.toEpochDay(mFirstDayOfMonth);
+
+        mResources = CalendarResources.get(mCurrentLocale, zone);
+
+        mAdapter.mSelectedDate.setTimeZone(zone);
+        mFirstDayOfMonth.setTimeZone(zone);
+        mTempDate.setTimeZone(zone);
+        mMaxDate.setTimeZone(zone);
+        mMinDate.setTimeZone(zone);
+
+        WeekIndex.setToEpochDay(mMinDate, minDay);
+        WeekIndex.setToEpochDay(mMaxDate, maxDay);
+        WeekIndex.setToEpochDay(mFirstDayOfMonth, focusedDay);
+
+        if (mAdapter.mSelectedDate.before(mMinDate)) {
+            mAdapter.setSelectedDay(mMinDate, false);
+        } else if (mAdapter.mSelectedDate.after(mMaxDate)) {
+            mAdapter.setSelectedDay(mMaxDate, false);
+        } else {
+            // Same weeks, only the selected day may have moved
+            mAdapter.updateSelectedDay(false);
+        }
+    }
+
+    private void setCurrentDate(long selectedDate, long focusedMonth) {
+        Calendar currentDate = (Calendar) mTempDate.clone();
+        currentDate.clear();
+        currentDate.setTimeInMillis(selectedDate);
+        if (currentDate.before(mMinDate)) {
+            mAdapter.setSelectedDay(mMinDate, false);
+            setMonthDisplayed(mMinDate, false);
+        } else if (currentDate.after(mMaxDate)) {
+            mAdapter.setSelectedDay(mMaxDate, false);
+            setMonthDisplayed(mMaxDate, false);
+        } else {
+            mAdapter.setSelectedDay(currentDate, false);
+            currentDate.setTimeInMillis(focusedMonth);
+            setMonthDisplayed(currentDate, false);
+        }
+    }
+
+    private void updateModel(WeekIndex weekIndex, long selectedDay) {
+        mModel = new CalendarModel(++mWeeksVersion, weekIndex, mDayDecorations, mDayRules, selectedDay);
+        mBuiltWeeks = null;
+        requestWeeks(mWeeksDisplay.getFirstVisiblePosition(), true);
+    }
+
+    /**
+     * Requests the weeks around the given position from the builder, unless the window
+     * requested last still covers a screen on each side of it.
+     */
+    private void requestWeeks(int firstVisibleWeek, boolean force) {
+        if (mWeeksBuilder == null || mModel == null) {
+            return;
+        }
+        if (!force && firstVisibleWeek - mShownWeekCount >= mRequestedFirstWeek
+                && firstVisibleWeek + 2 * mShownWeekCount <= mRequestedLastWeek) {
+            return;
+        }
+        mRequestedFirstWeek = Math.max(0, firstVisibleWeek - PREBUILT_SCREENS_BEFORE * mShownWeekCount);
+        mRequestedLastWeek = Math.min(mModel.getWeekIndex().getWeekCount() - 1,
+                firstVisibleWeek + PREBUILT_SCREENS_AFTER * mShownWeekCount);
+        mWeeksBuilder.build(mModel, mRequestedFirstWeek, mRequestedLastWeek);
+    }
+
+    private WeekData getBuiltWeek(int week) {
+        if (mBuiltWeeks == null || mBuiltWeeksVersion != mModel.getWeeksVersion()) {
+            return null;
+        }
+        int index = week - mBuiltFirstWeek;
+        return index >= 0 && index < mBuiltWeeks.length ? mBuiltWeeks[index] : null;
+    }
+
+    private void getWeekDecorations(long firstDay, int[] outFlags) {
+        if (mDayDecorations == null || mDayDecorations.size() == 0) {
+            Arrays.fill(outFlags, 0);
+            return;
+        }
+        for (int d = 0; d < DAYS_PER_WEEK;) {
+            long day = firstDay + d;
+            int[] monthFlags = getMonthDecorations(WeekIndex.getYear(day), WeekIndex.getMonth(day));
+            int dayOfMonth = WeekIndex.getDayOfMonth(day);
+            int count = Math.min(DAYS_PER_WEEK - d, monthFlags.length - dayOfMonth + 1);
+            System.arraycopy(monthFlags, dayOfMonth - 1, outFlags, d, count);
+            d += count;
+        }
+    }
+
+    private int[] getMonthDecorations(int year, int month) {
+        Integer key = year * 12 + month;
+        int[] monthFlags = mMonthDecorations.get(key);
+        if (monthFlags == null) {
+            monthFlags = new int[WeekIndex.getMonthLength(year, month)];
+            long firstDay = WeekIndex.toEpochDay(year, month, 1);
+            mDayDecorations.getFlags(firstDay, firstDay + monthFlags.length - 1, monthFlags, 0);
+            mMonthDecorations.put(key, monthFlags);
+        }
+        return monthFlags;
+    }
+
+    /**
+     * Schedules the delivery of the selected date, coalescing the changes of a frame or of
+     * the debounce delay into a single call of the listener.
+     */
+    private void scheduleDateChange() {
+        if (mOnDateChangeListener == null) {
+            return;
+        }
+        if (mDateChangeDebounceMillis > 0) {
+            removeCallbacks(mDateChangeRunnable);
+            postDelayed(mDateChangeRunnable, mDateChangeDebounceMillis);
+            mDateChangePending = true;
+            return;
+        }
+        if (mDateChangePending) {
+            return;
+        }
+        mDateChangePending = true;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            postOnAnimation(mDateChangeRunnable);
+        } else {
+            post(mDateChangeRunnable);
+        }
+    }
+
+    private void dispatchDateChange() {
+        mDateChangePending = false;
+        long selectedDay = mModel.getSelectedDay();
+        if (mOnDateChangeListener == null || selectedDay == mDispatchedDay) {
+            return;
+        }
+        mDispatchedDay = selectedDay;
+        mOnDateChangeListener.onSelectedDayChange(this, WeekIndex.getYear(selectedDay),
+                WeekIndex.getMonth(selectedDay), WeekIndex.getDayOfMonth(selectedDay));
+    }
+
+    private void updateYearOverview() {
+        if (isYearOverviewShown()) {
+            mYearView.update();
+        }
+    }
+
+    private void evictRenderCache() {
+        if (mRenderCache != null) {
+            mRenderCache.evictAll();
+        }
+    }
+
+    private NumberAtlas getDayNumberAtlas(Paint paint) {
+        if (mDayNumberAtlas == null) {
+            Paint textPaint = new Paint(paint);
+            textPaint.setFakeBoldText(true);
+            mDayNumberAtlas = new NumberAtlas(textPaint, WeekPainter.DAY_NUMBER_LABELS);
+        }
+        return mDayNumberAtlas;
+    }
+
+    private NumberAtlas getWeekNumberAtlas(Paint paint) {
+        if (mWeekNumberAtlas == null) {
+            Paint textPaint = new Paint(paint);
+            textPaint.setFakeBoldText(false);
+            mWeekNumberAtlas = new NumberAtlas(textPaint, WeekPainter.WEEK_NUMBER_LABELS);
+        }
+        return mWeekNumberAtlas;
+    }
+
+    private void checkMultipleSelection() {
+        if (mSelectionMode == SELECTION_MODE_SINGLE) {
+            throw new IllegalStateException("Dates can only be selected in the multiple and range modes.");
+        }
+    }
+
+    private long[] toDateRanges(DaySelection.DayRanges ranges) {
+        TimeZone zone = getTimeZone();
+        long[] dates = new long[2 * ranges.size()];
+        for (int i = 0; i < ranges.size(); i++) {
+            dates[2 * i] = WeekIndex.toMillis(ranges.getStart(i), zone);
+            dates[2 * i + 1] = WeekIndex.toMillis(ranges.getEnd(i), zone);
+        }
+        return dates;
+    }
+
+    private boolean isSameDate(Calendar firstDate, Calendar secondDate) {
         return (firstDate.get(Calendar.DAY_OF_YEAR) == secondDate.get(Calendar.DAY_OF_YEAR)
                 && firstDate.get(Calendar.YEAR) == secondDate.get(Calendar.YEAR));
     }
 
-    private void setUpAdapter() {
-        if (mAdapter == null) {
-            mAdapter = new WeeksAdapter(mContext);
-            mAdapter.registerDataSetObserver(new DataSetObserver() {
-                @Override
-                public void onChanged() {
-                    if (mOnDateChangeListener != null) {
-                        Calendar selectedDay = mAdapter.getSelectedDay();
-                        mOnDateChangeListener.onSelectedDayChange(CalendarView.this,
-                                selectedDay.get(Calendar.YEAR),
-                                selectedDay.get(Calendar.MONTH),
-                                selectedDay.get(Calendar.DAY_OF_MONTH));
+    private void setUpAdapter() {
+        if (mAdapter == null) {
+            mAdapter = new WeeksAdapter(mContext);
+            mWeeksDisplay.setAdapter(mAdapter);
+        }
+
+        mAdapter.notifyDataSetChanged();
+    }
+
+    private void setUpHeader() {
+        int[] mDayColors = new int[DAYS_PER_WEEK];
+        String[] mDayLabels = new String[DAYS_PER_WEEK];
+        for (int i = mFirstDayOfWeek, count = mFirstDayOfWeek + DAYS_PER_WEEK; i < count; i++) {
+            int calendarDay = (i > Calendar.SATURDAY) ? i - Calendar.SATURDAY : i;
+            mDayLabels[i - mFirstDayOfWeek] = mResources.getShortWeekday(calendarDay).substring(0, 1).toUpperCase();
+            mDayColors[i - mFirstDayOfWeek] = calendarDay == Calendar.SUNDAY ||
+                    calendarDay == Calendar.SATURDAY ? mWeekendColor : mWeekdayColor;
+        }
+
+        if (mDayNamesView != null) {
+            mDayNamesView.setDays(mDayLabels, mDayColors);
+            return;
+        }
+
+        TextView label = (TextView) mDayNamesHeader.getChildAt(0);
+        if (mShowWeekNumber) {
+            label.setVisibility(View.VISIBLE);
+        } else {
+            label.setVisibility(View.GONE);
+        }
+        for (int i = 1, count = mDayNamesHeader.getChildCount(); i < count; i++) {
+            label = (TextView) mDayNamesHeader.getChildAt(i);
+            if (mWeekDayTextAppearance > -1) {
+                label.setTextAppearance(mContext, mWeekDayTextAppearance);
+            }
+            if (i < DAYS_PER_WEEK + 1) {
+                label.setText(mDayLabels[i - 1]);
+                label.setTextColor(mDayColors[i - 1]);
+                label.setVisibility(View.VISIBLE);
+            } else {
+                label.setVisibility(View.GONE);
+            }
+        }
+        mDayNamesHeader.invalidate();
+    }
+
+    /**
+     * Builds the same hierarchy as the <code>calendar_view</code> layout in code, with the
+     * names of the days drawn by a single view.
+     */
+    private void buildLayout(Context context, DisplayMetrics displayMetrics) {
+        LinearLayout content = new LinearLayout(context);
+        content.setOrientation(LinearLayout.VERTICAL);
+        addView(content, new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT));
+
+        int monthNamePadding = (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP,
+                UNSCALED_MONTH_NAME_PADDING, displayMetrics);
+        mMonthName = new TextView(context);
+        mMonthName.setId(R.id.month_name);
+        mMonthName.setFocusable(true);
+        mMonthName.setFocusableInTouchMode(true);
+        mMonthName.setGravity(Gravity.CENTER);
+        mMonthName.setPadding(monthNamePadding, monthNamePadding, monthNamePadding, monthNamePadding);
+        content.addView(mMonthName, new LinearLayout.LayoutParams(
+                LayoutParams.MATCH_PARENT, LayoutParams.WRAP_CONTENT));
+
+        View divider = new View(context);
+        divider.setId(R.id.divider);
+        content.addView(divider, new LinearLayout.LayoutParams(LayoutParams.MATCH_PARENT,
+                (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP,
+                        UNSCALED_DIVIDER_HEIGHT, displayMetrics)));
+
+        FrameLayout weeksContainer = new FrameLayout(context);
+        content.addView(weeksContainer, new LinearLayout.LayoutParams(
+                LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT));
+        weeksContainer.addView(mWeeksDisplay.getView(), new LayoutParams(
+                LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT));
+
+        mDayNamesView = new DayNamesView(context, displayMetrics);
+        weeksContainer.addView(mDayNamesView, new LayoutParams(
+                LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT));
+    }
+
+    private ListView createListView(Context context) {
+        ListView listView = new ListView(context);
+        listView.setId(android.R.id.list);
+        listView.setDivider(null);
+        listView.setCacheColorHint(Color.TRANSPARENT);
+        listView.setDrawSelectorOnTop(false);
+        listView.setFastScrollEnabled(false);
+        listView.setOverScrollMode(View.OVER_SCROLL_NEVER);
+        return listView;
+    }
+
+    private void setUpListView() {
+        mListView.setItemsCanFocus(true);
+        mListView.setVerticalScrollBarEnabled(false);
+        mListView.setFriction(LIST_FRICTION);
+        mListView.setVelocityScale(LIST_VELOCITY_SCALE);
+        mListView.setOnScrollListener(new OnScrollListener() {
+            public void onScrollStateChanged(AbsListView view, int scrollState) {
+                CalendarView.this.onScrollStateChanged(view, scrollState);
+            }
+
+            public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+                View child = view.getChildAt(0);
+                if (child != null) {
+                    CalendarView.this.onScroll(firstVisibleItem, child.getBottom(), child.getHeight());
+                }
+            }
+        });
+    }
+
+    private long beginSection(int metric) {
+        if (mMetricsSink == null) {
+            return 0;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            beginTraceSection(metric);
+        }
+        return System.nanoTime();
+    }
+
+    private void endSection(int metric, long startNanos) {
+        if (startNanos == 0 || mMetricsSink == null) {
+            return;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.endSection();
+        }
+        mMetricsSink.onSectionTimed(metric, System.nanoTime() - startNanos);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private static void beginTraceSection(int metric) {
+        Trace.beginSection(METRIC_TRACE_NAMES[metric]);
+    }
+
+    private void onDataSetChanged() {
+        if (mMetricsSink != null) {
+            mMetricsSink.onDataSetChanged();
+        }
+    }
+
+    private Paint createDrawPaint() {
+        Paint paint = new Paint();
+        paint.setAntiAlias(true);
+        paint.setStyle(Style.FILL);
+        paint.setTextSize(mStyle.getDateTextSize());
+        paint.setTextAlign(Align.CENTER);
+        return paint;
+    }
+
+    private void goTo(Calendar date, boolean animate, boolean setSelected, boolean forceScroll) {
+        if (date.before(mMinDate) || date.after(mMaxDate)) {
+            throw new IllegalArgumentException("Time not between " + mMinDate.getTime()
+                    + " and " + mMaxDate.getTime());
+        }
+        long startNanos = beginSection(METRIC_GO_TO);
+
+        int firstFullyVisiblePosition = mWeeksDisplay.getFirstVisiblePosition();
+        int firstVisibleTop = mWeeksDisplay.getFirstVisibleTop();
+        if (firstVisibleTop < 0) {
+            firstFullyVisiblePosition++;
+        }
+        int lastFullyVisiblePosition = firstFullyVisiblePosition + mShownWeekCount - 1;
+        if (firstVisibleTop > mBottomBuffer) {
+            lastFullyVisiblePosition--;
+        }
+
+        if (setSelected) {
+            mAdapter.setSelectedDay(date, false);
+        }
+
+        int position = getWeeksSinceMinDate(date);
+        if (position < firstFullyVisiblePosition || position > lastFullyVisiblePosition
+                || forceScroll) {
+            mFirstDayOfMonth.setTimeInMillis(date.getTimeInMillis());
+            mFirstDayOfMonth.set(Calendar.DAY_OF_MONTH, 1);
+
+            setMonthDisplayed(mFirstDayOfMonth, false);
+
+            position = getWeeksSinceMinDate(mFirstDayOfMonth);
+
+            // Animating across years would bind every week in between, jump instead
+            if (Math.abs(position - firstFullyVisiblePosition) > MAX_ANIMATED_SCROLL_WEEKS) {
+                animate = false;
+            }
+
+            mPreviousScrollState = OnScrollListener.SCROLL_STATE_FLING;
+            mWeeksDisplay.scrollToPosition(position, animate);
+        } else if (setSelected) {
+            setMonthDisplayed(date, false);
+        }
+        endSection(METRIC_GO_TO, startNanos);
+    }
+
+    private void checkSupportedDate(long date) {
+        long day = WeekIndex.toEpochDay(date, getTimeZone());
+        if (day < WeekIndex.MIN_SUPPORTED_DAY || day > WeekIndex.MAX_SUPPORTED_DAY) {
+            throw new IllegalArgumentException("Date not between years 1 and 9999.");
+        }
+    }
+
+    private boolean parseDate(String date, Calendar outDate) {
+        try {
+            outDate.setTimeInMillis(mResources.parseDate(date));
+            return true;
+        } catch (ParseException e) {
+            Log.w(getClass().getSimpleName(), "Date: " + date + " not in format: " + CalendarResources.DATE_FORMAT);
+            return false;
+        }
+    }
+
+    private void onScrollStateChanged(AbsListView view, int scrollState) {
+        mScrollStateChangedRunnable.doScrollStateChange(view, scrollState);
+    }
+
+    private void onScroll(int firstVisibleItem, int firstVisibleBottom, int weekHeight) {
+        long currScroll = (long) firstVisibleItem * weekHeight - firstVisibleBottom;
+        if (currScroll < mPreviousScrollPosition) {
+            mIsScrollingUp = true;
+        } else if (currScroll > mPreviousScrollPosition) {
+            mIsScrollingUp = false;
+        } else {
+            return;
+        }
+        requestWeeks(firstVisibleItem, false);
+        long startNanos = beginSection(METRIC_SCROLL);
+
+        int offset = firstVisibleBottom < mWeekMinVisibleHeight ? 1 : 0;
+        int week = firstVisibleItem + offset;
+        if (mIsScrollingUp) {
+            week += SCROLL_HYST_WEEKS;
+        }
+        week = Math.min(week, mWeekIndex.getWeekCount() - 1);
+
+        long firstDay = mWeekIndex.getFirstDayOf(week);
+        int monthKey = WeekIndex.getMonthKey(mIsScrollingUp ? firstDay : firstDay + DAYS_PER_WEEK - 1);
+        int monthDiff = monthKey - mDisplayedMonthKey;
+        if ((!mIsScrollingUp && monthDiff > 0) || (mIsScrollingUp && monthDiff < 0)) {
+            long displayedDay = mIsScrollingUp ? firstDay - DAYS_PER_WEEK : firstDay + DAYS_PER_WEEK;
+            setMonthDisplayed(WeekIndex.getYear(displayedDay), WeekIndex.getMonth(displayedDay), true);
+        }
+        mPreviousScrollPosition = currScroll;
+        mPreviousScrollState = mCurrentScrollState;
+        endSection(METRIC_SCROLL, startNanos);
+    }
+
+    private void setMonthDisplayed(Calendar calendar, boolean send) {
+        setMonthDisplayed(calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH), send);
+    }
+
+    private void setMonthDisplayed(int year, int month, boolean send) {
+        long startNanos = beginSection(METRIC_SET_MONTH_DISPLAYED);
+        mMonthName.setText(mResources.getMonthTitle(year, month));
+        mMonthName.invalidate();
+
+        if (send) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                mMonthName.sendAccessibilityEvent(AccessibilityEvent.TYPE_VIEW_ACCESSIBILITY_FOCUSED);
+            } else {
+                mMonthName.sendAccessibilityEvent(AccessibilityEvent.TYPE_VIEW_FOCUSED);
+            }
+        }
+
+        mFirstDayOfMonth.set(year, month, 1);
+
+        mCurrentMonthDisplayed = month;
+        mDisplayedMonthKey = year * 12 + month;
+        mAdapter.setFocusMonth(mCurrentMonthDisplayed);
+        if (mInstancesSource != null) {
+            mInstancesSource.setFocusedMonth(mDisplayedMonthKey);
+        }
+        endSection(METRIC_SET_MONTH_DISPLAYED, startNanos);
+    }
+
+    private int getWeeksSinceMinDate(Calendar date) {
+        return mWeekIndex.getWeekOf(WeekIndex.toEpochDay(date));
+    }
+
+    private class ScrollStateRunnable implements Runnable {
+
+        private AbsListView mView;
+
+        private int mNewState;
+
+        public void doScrollStateChange(AbsListView view, int scrollState) {
+            mView = view;
+            mNewState = scrollState;
+            removeCallbacks(this);
+            postDelayed(this, SCROLL_CHANGE_DELAY);
+        }
+
+        public void run() {
+            mCurrentScrollState = mNewState;
+            if (mNewState == OnScrollListener.SCROLL_STATE_IDLE
+                    && mPreviousScrollState != OnScrollListener.SCROLL_STATE_IDLE) {
+                View child = mView.getChildAt(0);
+                if (child == null) {
+                    return;
+                }
+                int dist = child.getBottom() - mListScrollTopOffset;
+                if (dist > mListScrollTopOffset) {
+                    if (mIsScrollingUp) {
+                        mView.smoothScrollBy(dist - child.getHeight(), ADJUSTMENT_SCROLL_DURATION);
+                    } else {
+                        mView.smoothScrollBy(dist, ADJUSTMENT_SCROLL_DURATION);
+                    }
+                }
+            }
+            mPreviousScrollState = mNewState;
+        }
+    }
+
+    private class WeeksAdapter extends BaseAdapter implements OnTouchListener, SectionIndexer {
+
+        private final Calendar mSelectedDate = mResources.newCalendar();
+        private final DaySelection.DayRanges mSelectedRanges = new DaySelection.DayRanges();
+        private final DaySelection.DayRanges mDeselectedRanges = new DaySelection.DayRanges();
+
+        private DaySelection mDaySelection;
+        private long mRangeAnchorDay = WeekIndex.NO_DAY;
+
+        private MonthSection[] mSections;
+        private int mFirstSectionKey;
+        private int mMonthsPerSection;
+
+        private GestureDetector mGestureDetector;
+
+        private int mFocusedMonth;
+        private int mSelectedWeek;
+        private int mTotalWeekCount;
+
+        public WeeksAdapter(Context context) {
+            mGestureDetector = new GestureDetector(context, new CalendarGestureListener());
+            init();
+        }
+
+        private void init() {
+            long previousMaxDay = mWeekIndex != null ? mWeekIndex.getMaxDay() : Long.MAX_VALUE;
+            mWeekIndex = new WeekIndex(WeekIndex.toEpochDay(mMinDate), WeekIndex.toEpochDay(mMaxDate),
+                    mFirstDayOfWeek, mTempDate.getMinimalDaysInFirstWeek());
+            updateModel(mWeekIndex, WeekIndex.toEpochDay(mSelectedDate));
+            if (mDaySelection == null) {
+                mDaySelection = new DaySelection(mWeekIndex.getMinDay());
+            } else if (mDaySelection.getOriginDay() != mWeekIndex.getMinDay() || previousMaxDay > mWeekIndex.getMaxDay()) {
+                // Drop the selected days out of the new range
+                mDaySelection = mDaySelection.copyRange(mWeekIndex.getMinDay(), mWeekIndex.getMaxDay());
+            }
+            mSelectedWeek = mWeekIndex.getWeekOf(mModel.getSelectedDay());
+            mTotalWeekCount = mWeekIndex.getWeekCount();
+            mSections = null;
+            evictRenderCache();
+            mWeeksDisplay.onWeeksChanged();
+            updateYearOverview();
+        }
+
+        /**
+         * Rebuilds the weeks after a change of the first day of week. The days, their decorations
+         * and their selection are unchanged, so only the shown weeks are bound again: the list
+         * and the canvas rebind their visible rows on the next layout and draw.
+         */
+        public void reindexWeeks() {
+            init();
+            // Only the list observes the adapter, notify it of the new week count. The override
+            // would evict the render cache and notify the displays again, init() already did.
+            if (mListView != null && mListView.getAdapter() == this) {
+                super.notifyDataSetChanged();
+                onDataSetChanged();
+            }
+        }
+
+        @Override
+        public void notifyDataSetChanged() {
+            evictRenderCache();
+            super.notifyDataSetChanged();
+            onDataSetChanged();
+            mWeeksDisplay.onWeeksChanged();
+            updateYearOverview();
+        }
+
+        public void setSelectedDay(Calendar calendar, boolean send) {
+            if (calendar.compareTo(mSelectedDate) == 0) {
+               return;
+            }
+            mSelectedDate.setTimeInMillis(calendar.getTimeInMillis());
+            updateSelectedDay(send);
+        }
+
+        /**
+         * Updates the selected week and the focused month from the selected date, e.g. after
+         * the selected date moved to another day because the time zone changed.
+         */
+        public void updateSelectedDay(boolean send) {
+            int previousSelectedWeek = mSelectedWeek;
+            int previousFocusedMonth = mFocusedMonth;
+            mModel = mModel.withSelectedDay(WeekIndex.toEpochDay(mSelectedDate));
+            mSelectedWeek = mWeekIndex.getWeekOf(mModel.getSelectedDay());
+            mFocusedMonth = mSelectedDate.get(Calendar.MONTH);
+
+            // Only the selection and the focus changed, let the display refresh the affected weeks
+            mWeeksDisplay.onSelectionChanged(previousSelectedWeek, mSelectedWeek);
+            if (previousFocusedMonth != mFocusedMonth) {
+                mWeeksDisplay.onFocusMonthChanged();
+            }
+            updateYearOverview();
+            scheduleDateChange();
+
+            if (send) {
+                View weeksView = mWeeksDisplay.getView();
+                weeksView.setContentDescription(mResources.formatDate(mSelectedDate.getTimeInMillis()));
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                    weeksView.sendAccessibilityEvent(AccessibilityEvent.TYPE_ANNOUNCEMENT);
+                } else {
+                    mMonthName.sendAccessibilityEvent(AccessibilityEvent.TYPE_VIEW_FOCUSED);
+                }
+            }
+        }
+
+        @Override
+        public int getCount() {
+            return mTotalWeekCount;
+        }
+
+        @Override
+        public Object getItem(int position) {
+            return null;
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return position;
+        }
+
+        @Override
+        public View getView(int position, View convertView, ViewGroup parent) {
+            WeekView weekView;
+            if (convertView != null) {
+                weekView = (WeekView) convertView;
+            } else {
+                weekView = new WeekView(mContext, (mListView.getHeight() - mListView.getPaddingTop() -
+                        mListView.getPaddingBottom()) / mShownWeekCount);
+                AbsListView.LayoutParams params = new AbsListView.LayoutParams(
+                        LayoutParams.WRAP_CONTENT, LayoutParams.WRAP_CONTENT);
+                weekView.setLayoutParams(params);
+                weekView.setClickable(true);
+                weekView.setOnTouchListener(this);
+            }
+
+            weekView.init(position, getSelectedWeekDay(position), mFocusedMonth);
+
+            return weekView;
+        }
+
+        @Override
+        public Object[] getSections() {
+            if (mSections == null) {
+                int firstMonthKey = WeekIndex.getMonthKey(mWeekIndex.getMinDay());
+                int lastMonthKey = WeekIndex.getMonthKey(mWeekIndex.getMaxDay());
+                mMonthsPerSection = lastMonthKey - firstMonthKey < MAX_MONTH_SECTION_COUNT ? 1 : 12;
+                mFirstSectionKey = firstMonthKey / mMonthsPerSection;
+                mSections = new MonthSection[lastMonthKey / mMonthsPerSection - mFirstSectionKey + 1];
+                for (int i = 0; i < mSections.length; i++) {
+                    int monthKey = (mFirstSectionKey + i) * mMonthsPerSection;
+                    mSections[i] = new MonthSection(monthKey / 12, monthKey % 12, mMonthsPerSection == 1);
+                }
+            }
+            return mSections;
+        }
+
+        @Override
+        public int getPositionForSection(int section) {
+            getSections();
+            int monthKey = (mFirstSectionKey + section) * mMonthsPerSection;
+            return mWeekIndex.getWeekOf(WeekIndex.toEpochDay(monthKey / 12, monthKey % 12, 1));
+        }
+
+        @Override
+        public int getSectionForPosition(int position) {
+            getSections();
+            long day = Math.max(mWeekIndex.getFirstDayOf(position), mWeekIndex.getMinDay());
+            int section = WeekIndex.getMonthKey(day) / mMonthsPerSection - mFirstSectionKey;
+            return Math.max(0, Math.min(section, mSections.length - 1));
+        }
+
+        public int getSelectedWeekDay(int position) {
+            if (mSelectionMode != SELECTION_MODE_SINGLE) {
+                return -1;
+            }
+            return (mSelectedWeek == position) ? WeekIndex.getDayOfWeek(mModel.getSelectedDay()) : -1;
+        }
+
+        /**
+         * Gets the days of the given week selected in the multiple and range modes,
+         * see {@link DaySelection#getWeekMask(long)}.
+         */
+        public int getSelectionMask(int position) {
+            return mDaySelection.getWeekMask(mWeekIndex.getFirstDayOf(position));
+        }
+
+        public void selectDays(long firstDay, long lastDay) {
+            if (lastDay < firstDay) {
+                long day = firstDay;
+                firstDay = lastDay;
+                lastDay = day;
+            }
+            firstDay = Math.max(firstDay, mWeekIndex.getMinDay());
+            lastDay = Math.min(lastDay, mWeekIndex.getMaxDay());
+            if (mSelectionMode == SELECTION_MODE_RANGE) {
+                // Only one range is selected, deselect the days out of the new one
+                mDaySelection.set(mWeekIndex.getMinDay(), firstDay - 1, false, mDeselectedRanges);
+                mDaySelection.set(lastDay + 1, mWeekIndex.getMaxDay(), false, mDeselectedRanges);
+                mRangeAnchorDay = WeekIndex.NO_DAY;
+            }
+            mDaySelection.set(firstDay, lastDay, true, mSelectedRanges);
+            onSelectedDaysChanged();
+        }
+
+        public void deselectDays(long firstDay, long lastDay) {
+            mDaySelection.set(Math.min(firstDay, lastDay), Math.max(firstDay, lastDay), false,
+                    mDeselectedRanges);
+            onSelectedDaysChanged();
+        }
+
+        public void clearSelectedDays() {
+            mRangeAnchorDay = WeekIndex.NO_DAY;
+            mDaySelection.clear(mDeselectedRanges);
+            onSelectedDaysChanged();
+        }
+
+        private void onDayTappedInSelection(long day) {
+            if (mSelectionMode == SELECTION_MODE_MULTIPLE) {
+                boolean selected = mDaySelection.contains(day);
+                mDaySelection.set(day, day, !selected, selected ? mDeselectedRanges : mSelectedRanges);
+                onSelectedDaysChanged();
+            } else if (mRangeAnchorDay == WeekIndex.NO_DAY) {
+                selectDays(day, day);
+                mRangeAnchorDay = day;
+            } else {
+                selectDays(mRangeAnchorDay, day);
+            }
+        }
+
+        private long getFirstDay(DaySelection.DayRanges ranges) {
+            return ranges.size() > 0 ? ranges.getStart(0) : Long.MAX_VALUE;
+        }
+
+        private long getLastDay(DaySelection.DayRanges ranges) {
+            return ranges.size() > 0 ? ranges.getEnd(ranges.size() - 1) : Long.MIN_VALUE;
+        }
+
+        private void onSelectedDaysChanged() {
+            if (mSelectedRanges.size() == 0 && mDeselectedRanges.size() == 0) {
+                return;
+            }
+            long firstDay = Math.min(getFirstDay(mSelectedRanges), getFirstDay(mDeselectedRanges));
+            long lastDay = Math.max(getLastDay(mSelectedRanges), getLastDay(mDeselectedRanges));
+            long[] selectedRanges = toDateRanges(mSelectedRanges);
+            long[] deselectedRanges = toDateRanges(mDeselectedRanges);
+            mSelectedRanges.clear();
+            mDeselectedRanges.clear();
+
+            mWeeksDisplay.onSelectedDaysChanged(mWeekIndex.getWeekOf(firstDay), mWeekIndex.getWeekOf(lastDay));
+            updateYearOverview();
+
+            if (mOnSelectionChangeListener != null) {
+                mOnSelectionChangeListener.onSelectionChange(CalendarView.this, selectedRanges, deselectedRanges);
+            }
+        }
+
+        public int getFocusedMonth() {
+            return mFocusedMonth;
+        }
+
+        public void setFocusMonth(int month) {
+            if (mFocusedMonth == month) {
+                return;
+            }
+            mFocusedMonth = month;
+            mWeeksDisplay.onFocusMonthChanged();
+        }
+
+        @Override
+        public boolean onTouch(View v, MotionEvent event) {
+            if (CalendarView.this.isEnabled() && mGestureDetector.onTouchEvent(event)) {
+                WeekView weekView = (WeekView) v;
+                long day = weekView.getDayFromLocation(event.getX());
+                if (day == WeekIndex.NO_DAY || !weekView.isDayEnabled(day)) {
+                    return true;
+                }
+
+                onDayTapped(day);
+
+                return true;
+            }
+            return false;
+        }
+
+        private void onDayTapped(long day) {
+            if (mSelectionMode != SELECTION_MODE_SINGLE) {
+                // The tap only changes the selected dates, reported to the selection listener
+                onDayTappedInSelection(day);
+                return;
+            }
+            mTempDate.setTimeInMillis(mSelectedDate.getTimeInMillis());
+            WeekIndex.setToEpochDay(mTempDate, day);
+            onDateTapped(mTempDate);
+        }
+
+        private void onDateTapped(Calendar day) {
+            setSelectedDay(day, true);
+            setMonthDisplayed(day, false);
+        }
+
+        class CalendarGestureListener extends GestureDetector.SimpleOnGestureListener {
+            @Override
+            public boolean onSingleTapUp(MotionEvent e) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * A section of the fast scroller, a month or a year, formatted when shown.
+     */
+    private class MonthSection {
+
+        private final int mYear;
+        private final int mMonth;
+        private final boolean mShowMonth;
+
+        public MonthSection(int year, int month, boolean showMonth) {
+            mYear = year;
+            mMonth = month;
+            mShowMonth = showMonth;
+        }
+
+        @Override
+        public String toString() {
+            return mShowMonth ? mResources.getMonthTitle(mYear, mMonth) : Integer.toString(mYear);
+        }
+    }
+
+    /**
+     * A view which displays the weeks of the {@link WeeksAdapter}.
+     */
+    private interface WeeksDisplay {
+
+        View getView();
+
+        void setAdapter(WeeksAdapter adapter);
+
+        int getFirstVisiblePosition();
+
+        int getFirstVisibleTop();
+
+        void scrollToPosition(int position, boolean animate);
+
+        Parcelable onSaveState();
+
+        void onRestoreState(Parcelable state);
+
+        void onWeeksChanged();
+
+        void onSelectionChanged(int previousSelectedWeek, int selectedWeek);
+
+        void onSelectedDaysChanged(int firstWeek, int lastWeek);
+
+        void onDecorationsChanged(int firstWeek, int lastWeek);
+
+        void onFocusMonthChanged();
+    }
+
+    private class ListWeeksDisplay implements WeeksDisplay {
+
+        private Parcelable mListViewState;
+
+        @Override
+        public View getView() {
+            return mListView;
+        }
+
+        @Override
+        public void setAdapter(WeeksAdapter adapter) {
+            mListView.setAdapter(adapter);
+        }
+
+        @Override
+        public int getFirstVisiblePosition() {
+            return mListView.getFirstVisiblePosition();
+        }
+
+        @Override
+        public int getFirstVisibleTop() {
+            View firstChild = mListView.getChildAt(0);
+            return firstChild != null ? firstChild.getTop() : 0;
+        }
+
+        @Override
+        public void scrollToPosition(int position, boolean animate) {
+            if (animate) {
+                mListView.smoothScrollToPositionFromTop(position, mListScrollTopOffset, GOTO_SCROLL_DURATION);
+            } else {
+                mListView.setSelectionFromTop(position, mListScrollTopOffset);
+                onScrollStateChanged(mListView, OnScrollListener.SCROLL_STATE_IDLE);
+            }
+        }
+
+        @Override
+        public Parcelable onSaveState() {
+            if (mListView.getLastVisiblePosition() != -1) {
+                mListViewState = mListView.onSaveInstanceState();
+            }
+            return mListViewState;
+        }
+
+        @Override
+        public void onRestoreState(Parcelable state) {
+            mListViewState = state;
+            mListView.onRestoreInstanceState(state);
+        }
+
+        @Override
+        public void onWeeksChanged() {
+        }
+
+        @Override
+        public void onSelectionChanged(int previousSelectedWeek, int selectedWeek) {
+            onSelectedDaysChanged(previousSelectedWeek, previousSelectedWeek);
+            onSelectedDaysChanged(selectedWeek, selectedWeek);
+        }
+
+        @Override
+        public void onSelectedDaysChanged(int firstWeek, int lastWeek) {
+            // Update the shown weeks in place, the others are bound when they scroll into view
+            int firstPosition = mListView.getFirstVisiblePosition();
+            for (int i = 0, count = mListView.getChildCount(); i < count; i++) {
+                int week = firstPosition + i;
+                if (week >= firstWeek && week <= lastWeek) {
+                    ((WeekView) mListView.getChildAt(i)).setSelectedWeekDay(mAdapter.getSelectedWeekDay(week));
+                }
+            }
+        }
+
+        @Override
+        public void onDecorationsChanged(int firstWeek, int lastWeek) {
+            int firstPosition = mListView.getFirstVisiblePosition();
+            for (int i = 0, count = mListView.getChildCount(); i < count; i++) {
+                int week = firstPosition + i;
+                if (week >= firstWeek && week <= lastWeek) {
+                    ((WeekView) mListView.getChildAt(i)).updateDecorations();
+                }
+            }
+        }
+
+        @Override
+        public void onFocusMonthChanged() {
+            for (int i = 0, count = mListView.getChildCount(); i < count; i++) {
+                ((WeekView) mListView.getChildAt(i)).setFocusedMonth(mAdapter.getFocusedMonth());
+            }
+        }
+    }
+
+    /**
+     * Draws all the visible weeks from the scroll offset in a single pass with a
+     * shared {@link Paint}. It replaces the list in the {@link #DISPLAY_MODE_CANVAS} mode,
+     * so there are no child views to lay out and no adapter views to bind.
+     */
+    private class WeeksCanvasView extends View implements WeeksDisplay {
+
+        private final Paint mDrawPaint = createDrawPaint();
+        private final OverScroller mScroller;
+        private final GestureDetector mGestureDetector;
+
+        private final DataSetObserver mObserver = new DataSetObserver() {
+            @Override
+            public void onChanged() {
+                mRowsVersion++;
+                setScrollOffset(mScrollOffset);
+                invalidate();
+            }
+        };
+
+        private WeekRow[] mRows = new WeekRow[0];
+        private int[] mRowVersions = new int[0];
+        private int mRowsVersion;
+        private int mWeekHeight;
+        private int mScrollOffset;
+        private int mPendingPosition = -1;
+        private int mPendingWeekOffset;
+        private int mScrollState = OnScrollListener.SCROLL_STATE_IDLE;
+
+        private RowsNodeProvider mNodeProvider;
+
+        public WeeksCanvasView(Context context) {
+            super(context);
+
+            mScroller = new OverScroller(context);
+            mScroller.setFriction(LIST_FRICTION);
+            mGestureDetector = new GestureDetector(context, new CanvasGestureListener());
+            mGestureDetector.setIsLongpressEnabled(false);
+        }
+
+        @Override
+        public View getView() {
+            return this;
+        }
+
+        @Override
+        public void setAdapter(WeeksAdapter adapter) {
+            adapter.registerDataSetObserver(mObserver);
+        }
+
+        @Override
+        public int getFirstVisiblePosition() {
+            if (mWeekHeight <= 0 || mScrollOffset < 0) {
+                return 0;
+            }
+            return mScrollOffset / mWeekHeight;
+        }
+
+        @Override
+        public int getFirstVisibleTop() {
+            if (mWeekHeight <= 0) {
+                return 0;
+            }
+            return getFirstVisiblePosition() * mWeekHeight - mScrollOffset;
+        }
+
+        @Override
+        public void scrollToPosition(int position, boolean animate) {
+            if (mWeekHeight <= 0) {
+                mPendingPosition = position;
+                mPendingWeekOffset = -mListScrollTopOffset;
+                return;
+            }
+            mScroller.forceFinished(true);
+            int scrollOffset = clampScrollOffset(getScrollOffsetOf(position));
+            if (animate) {
+                mScrollState = OnScrollListener.SCROLL_STATE_FLING;
+                mScroller.startScroll(0, mScrollOffset, 0, scrollOffset - mScrollOffset, GOTO_SCROLL_DURATION);
+                invalidate();
+            } else {
+                mScrollState = OnScrollListener.SCROLL_STATE_IDLE;
+                setScrollOffset(scrollOffset);
+            }
+        }
+
+        @Override
+        public Parcelable onSaveState() {
+            // The first visible week, stored as its first day as the range may differ on restore
+            if (mPendingPosition != -1) {
+                return new DisplayState(mWeekIndex.getFirstDayOf(mPendingPosition), mPendingWeekOffset);
+            }
+            if (mWeekHeight <= 0) {
+                return null;
+            }
+            int position = getFirstVisiblePosition();
+            return new DisplayState(mWeekIndex.getFirstDayOf(position), mScrollOffset - position * mWeekHeight);
+        }
+
+        @Override
+        public void onRestoreState(Parcelable state) {
+            DisplayState displayState = (DisplayState) state;
+            int position = mWeekIndex.getWeekOf(displayState.getFirstDay());
+            if (mWeekHeight <= 0) {
+                mPendingPosition = position;
+                mPendingWeekOffset = displayState.getOffset();
+                return;
+            }
+            mScroller.forceFinished(true);
+            mScrollState = OnScrollListener.SCROLL_STATE_IDLE;
+            setScrollOffset(position * mWeekHeight + displayState.getOffset());
+        }
+
+        @Override
+        public void onWeeksChanged() {
+        }
+
+        @Override
+        public void onSelectionChanged(int previousSelectedWeek, int selectedWeek) {
+            onSelectedDaysChanged(previousSelectedWeek, previousSelectedWeek);
+            onSelectedDaysChanged(selectedWeek, selectedWeek);
+        }
+
+        @Override
+        public AccessibilityNodeProvider getAccessibilityNodeProvider() {
+            return getNodeProvider();
+        }
+
+        @Override
+        public boolean dispatchHoverEvent(MotionEvent event) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN
+                    && getNodeProvider().dispatchHoverEvent(event)) {
+                return true;
+            }
+            return super.dispatchHoverEvent(event);
+        }
+
+        @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+        private RowsNodeProvider getNodeProvider() {
+            if (mNodeProvider == null) {
+                mNodeProvider = new RowsNodeProvider(this) {
+                    @Override
+                    int getFirstVisibleWeek() {
+                        return getFirstVisiblePosition();
+                    }
+
+                    @Override
+                    int getVisibleWeekCount() {
+                        if (mWeekHeight <= 0) {
+                            return 0;
+                        }
+                        int contentHeight = getHeight() - getPaddingTop() - getPaddingBottom();
+                        int lastWeek = Math.min((mScrollOffset + contentHeight - 1) / mWeekHeight,
+                                mAdapter.getCount() - 1);
+                        return Math.max(0, lastWeek - getFirstVisiblePosition() + 1);
+                    }
+
+                    @Override
+                    WeekRow getRow(int week) {
+                        return WeeksCanvasView.this.getRow(week);
+                    }
+
+                    @Override
+                    int getRowTop(int week) {
+                        return getPaddingTop() + week * mWeekHeight - mScrollOffset;
+                    }
+                };
+            }
+            return mNodeProvider;
+        }
+
+        @Override
+        public void onSelectedDaysChanged(int firstWeek, int lastWeek) {
+            for (WeekRow row : mRows) {
+                int week = row.getWeek();
+                if (week >= firstWeek && week <= lastWeek) {
+                    row.setSelectedWeekDay(mAdapter.getSelectedWeekDay(week));
+                }
+            }
+            invalidate();
+        }
+
+        @Override
+        public void onDecorationsChanged(int firstWeek, int lastWeek) {
+            for (WeekRow row : mRows) {
+                int week = row.getWeek();
+                if (week >= firstWeek && week <= lastWeek) {
+                    row.updateDecorations();
+                }
+            }
+            invalidate();
+        }
+
+        @Override
+        public void onFocusMonthChanged() {
+            for (WeekRow row : mRows) {
+                row.setFocusedMonth(mAdapter.getFocusedMonth());
+            }
+            invalidate();
+        }
+
+        @Override
+        protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+            int position = mPendingPosition;
+            int weekOffset = mPendingWeekOffset;
+            if (position == -1) {
+                position = mWeekHeight > 0 ? getFirstVisiblePosition() + 1 : 0;
+                weekOffset = -mListScrollTopOffset;
+            }
+            mPendingPosition = -1;
+
+            mWeekHeight = (h - getPaddingTop() - getPaddingBottom()) / mShownWeekCount;
+            mRows = new WeekRow[mShownWeekCount + 2];
+            mRowVersions = new int[mRows.length];
+            for (int i = 0; i < mRows.length; i++) {
+                mRows[i] = new WeekRow();
+                mRows[i].setSize(w, mWeekHeight);
+            }
+            mScrollOffset = clampScrollOffset(position * mWeekHeight + weekOffset);
+        }
+
+        @Override
+        protected void onDraw(Canvas canvas) {
+            if (mWeekHeight <= 0) {
+                return;
+            }
+            long startNanos = beginSection(METRIC_DRAW);
+            int weekCount = mAdapter.getCount();
+            int bottom = getHeight() - getPaddingBottom();
+            int week = getFirstVisiblePosition();
+            int top = getPaddingTop() + week * mWeekHeight - mScrollOffset;
+            for (; week < weekCount && top < bottom; week++, top += mWeekHeight) {
+                int saveCount = canvas.save();
+                canvas.translate(0, top);
+                getRow(week).draw(canvas, mDrawPaint);
+                canvas.restoreToCount(saveCount);
+            }
+            endSection(METRIC_DRAW, startNanos);
+        }
+
+        @Override
+        public boolean onTouchEvent(MotionEvent event) {
+            if (!isEnabled()) {
+                return false;
+            }
+            mGestureDetector.onTouchEvent(event);
+            int action = event.getActionMasked();
+            if ((action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL)
+                    && mScroller.isFinished()) {
+                snapToWeek();
+            }
+            return true;
+        }
+
+        @Override
+        public void computeScroll() {
+            if (mScroller.computeScrollOffset()) {
+                setScrollOffset(mScroller.getCurrY());
+                invalidate();
+            } else if (mScrollState == OnScrollListener.SCROLL_STATE_FLING) {
+                snapToWeek();
+            }
+        }
+
+        private WeekRow getRow(int week) {
+            int slot = week % mRows.length;
+            WeekRow row = mRows[slot];
+            if (row.getWeek() != week || mRowVersions[slot] != mRowsVersion) {
+                row.init(week, mAdapter.getSelectedWeekDay(week), mAdapter.getFocusedMonth());
+                mRowVersions[slot] = mRowsVersion;
+            }
+            return row;
+        }
+
+        private int getScrollOffsetOf(int position) {
+            return position * mWeekHeight - mListScrollTopOffset;
+        }
+
+        private int clampScrollOffset(int scrollOffset) {
+            int contentHeight = getHeight() - getPaddingTop() - getPaddingBottom();
+            int maxScrollOffset = Math.max(-mListScrollTopOffset,
+                    mAdapter.getCount() * mWeekHeight - contentHeight);
+            return Math.max(-mListScrollTopOffset, Math.min(scrollOffset, maxScrollOffset));
+        }
+
+        private void setScrollOffset(int scrollOffset) {
+            scrollOffset = clampScrollOffset(scrollOffset);
+            if (scrollOffset == mScrollOffset) {
+                return;
+            }
+            mScrollOffset = scrollOffset;
+            if (mWeekHeight > 0) {
+                int firstVisiblePosition = getFirstVisiblePosition();
+                onScroll(firstVisiblePosition, (firstVisiblePosition + 1) * mWeekHeight - mScrollOffset,
+                        mWeekHeight);
+            }
+            invalidate();
+        }
+
+        private void snapToWeek() {
+            int dist = getFirstVisibleTop() + mWeekHeight - mListScrollTopOffset;
+            int delta = 0;
+            if (dist > mListScrollTopOffset) {
+                delta = mIsScrollingUp ? dist - mWeekHeight : dist;
+            }
+            if (clampScrollOffset(mScrollOffset + delta) == mScrollOffset) {
+                mScrollState = OnScrollListener.SCROLL_STATE_IDLE;
+                return;
+            }
+            mScrollState = OnScrollListener.SCROLL_STATE_FLING;
+            mScroller.startScroll(0, mScrollOffset, 0, delta, ADJUSTMENT_SCROLL_DURATION);
+            invalidate();
+        }
+
+        private class CanvasGestureListener extends GestureDetector.SimpleOnGestureListener {
+
+            @Override
+            public boolean onDown(MotionEvent e) {
+                mScroller.forceFinished(true);
+                mScrollState = OnScrollListener.SCROLL_STATE_TOUCH_SCROLL;
+                return true;
+            }
+
+            @Override
+            public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
+                setScrollOffset(mScrollOffset + (int) distanceY);
+                return true;
+            }
+
+            @Override
+            public boolean onFling(MotionEvent e1, MotionEvent e2, float velocityX, float velocityY) {
+                mScrollState = OnScrollListener.SCROLL_STATE_FLING;
+                mScroller.fling(0, mScrollOffset, 0, (int) (-velocityY * LIST_VELOCITY_SCALE),
+                        0, 0, clampScrollOffset(Integer.MIN_VALUE), clampScrollOffset(Integer.MAX_VALUE));
+                invalidate();
+                return true;
+            }
+
+            @Override
+            public boolean onSingleTapUp(MotionEvent e) {
+                int y = (int) e.getY() - getPaddingTop() + mScrollOffset;
+                if (mWeekHeight <= 0 || y < 0 || y / mWeekHeight >= mAdapter.getCount()) {
+                    return true;
+                }
+                WeekRow row = getRow(y / mWeekHeight);
+                long day = row.getDayFromLocation(e.getX());
+                if (day != WeekIndex.NO_DAY && row.isEnabled(day)) {
+                    mAdapter.onDayTapped(day);
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Displays a month per page as a grid of six weeks, paged horizontally. The previous and
+     * next months are laid out and rendered to bitmaps off-screen, so a swipe only translates
+     * the pages and the settled page becomes current without being drawn again. It replaces
+     * the list in the {@link #DISPLAY_MODE_MONTH_PAGER} mode.
+     */
+    private class MonthPagerView extends View implements WeeksDisplay {
+
+        private static final int PREVIOUS_PAGE = 0;
+        private static final int CURRENT_PAGE = 1;
+        private static final int NEXT_PAGE = 2;
+
+        private final Paint mDrawPaint = createDrawPaint();
+        private final OverScroller mScroller;
+        private final GestureDetector mGestureDetector;
+        private final int mMinFlingVelocity;
+        private final MonthPage[] mPages = { new MonthPage(), new MonthPage(), new MonthPage() };
+
+        private final Runnable mShowDisplayedMonthRunnable = new Runnable() {
+            @Override
+            public void run() {
+                if (mDisplayedMonthKey != mMonthKey) {
+                    showMonth(mDisplayedMonthKey, true);
+                }
+            }
+        };
+
+        private int mMonthKey = -1;
+        private boolean mPagesValid;
+        private int mWeekHeight;
+        private int mSwipeOffset;
+        private int mSettleDirection;
+
+        private RowsNodeProvider mNodeProvider;
+
+        public MonthPagerView(Context context) {
+            super(context);
+
+            mScroller = new OverScroller(context);
+            mGestureDetector = new GestureDetector(context, new PagerGestureListener());
+            mGestureDetector.setIsLongpressEnabled(false);
+            mMinFlingVelocity = ViewConfiguration.get(context).getScaledMinimumFlingVelocity();
+        }
+
+        @Override
+        public View getView() {
+            return this;
+        }
+
+        @Override
+        public void setAdapter(WeeksAdapter adapter) {
+        }
+
+        @Override
+        public int getFirstVisiblePosition() {
+            return getFirstWeek(clampMonthKey(mMonthKey));
+        }
+
+        @Override
+        public int getFirstVisibleTop() {
+            return 0;
+        }
+
+        @Override
+        public void scrollToPosition(int position, boolean animate) {
+            // Prefer the displayed month when it shows the week, the week may start in the previous one
+            int monthKey = clampMonthKey(mDisplayedMonthKey);
+            int firstWeek = getFirstWeek(monthKey);
+            if (position < firstWeek || position >= firstWeek + MONTH_PAGE_WEEK_COUNT) {
+                long lastDay = Math.min(mWeekIndex.getFirstDayOf(position) + DAYS_PER_WEEK - 1,
+                        mWeekIndex.getMaxDay());
+                monthKey = WeekIndex.getMonthKey(lastDay);
+            }
+            showMonth(monthKey, animate);
+        }
+
+        @Override
+        public Parcelable onSaveState() {
+            if (mMonthKey == -1) {
+                return null;
+            }
+            int monthKey = clampMonthKey(mMonthKey);
+            return new DisplayState(WeekIndex.toEpochDay(monthKey / 12, monthKey % 12, 1), 0);
+        }
+
+        @Override
+        public void onRestoreState(Parcelable state) {
+            showMonth(WeekIndex.getMonthKey(((DisplayState) state).getFirstDay()), false);
+        }
+
+        @Override
+        public void onWeeksChanged() {
+            mScroller.forceFinished(true);
+            mSettleDirection = 0;
+            mSwipeOffset = 0;
+            mPagesValid = false;
+            invalidate();
+        }
+
+        @Override
+        public void onSelectionChanged(int previousSelectedWeek, int selectedWeek) {
+            onSelectedDaysChanged(previousSelectedWeek, previousSelectedWeek);
+            onSelectedDaysChanged(selectedWeek, selectedWeek);
+            showDisplayedMonth();
+        }
+
+        @Override
+        public void onSelectedDaysChanged(int firstWeek, int lastWeek) {
+            if (!mPagesValid) {
+                return;
+            }
+            for (MonthPage page : mPages) {
+                page.updateSelection(firstWeek, lastWeek);
+            }
+            invalidate();
+        }
+
+        @Override
+        public void onDecorationsChanged(int firstWeek, int lastWeek) {
+            if (!mPagesValid) {
+                return;
+            }
+            for (MonthPage page : mPages) {
+                page.updateDecorations(firstWeek, lastWeek);
+            }
+            invalidate();
+        }
+
+        @Override
+        public void onFocusMonthChanged() {
+            // Each page focuses its own month, only follow the displayed month
+            showDisplayedMonth();
+        }
+
+        @Override
+        public AccessibilityNodeProvider getAccessibilityNodeProvider() {
+            return getNodeProvider();
+        }
+
+        @Override
+        public boolean dispatchHoverEvent(MotionEvent event) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN
+                    && getNodeProvider().dispatchHoverEvent(event)) {
+                return true;
+            }
+            return super.dispatchHoverEvent(event);
+        }
+
+        @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+        private RowsNodeProvider getNodeProvider() {
+            if (mNodeProvider == null) {
+                // The weeks of the current page, the neighbor pages are only shown while swiping
+                mNodeProvider = new RowsNodeProvider(this) {
+                    @Override
+                    int getFirstVisibleWeek() {
+                        return getCurrentPage() != null ? getCurrentPage().getFirstWeek() : 0;
+                    }
+
+                    @Override
+                    int getVisibleWeekCount() {
+                        return getCurrentPage() != null ? getCurrentPage().getWeekCount() : 0;
+                    }
+
+                    @Override
+                    WeekRow getRow(int week) {
+                        return getCurrentPage().getRow(week);
+                    }
+
+                    @Override
+                    int getRowTop(int week) {
+                        return getPaddingTop() + (week - getCurrentPage().getFirstWeek()) * mWeekHeight;
+                    }
+                };
+            }
+            return mNodeProvider;
+        }
+
+        /**
+         * Gets the page of the displayed month, laying it out if needed, or null while the
+         * pager is not laid out.
+         */
+        private MonthPage getCurrentPage() {
+            if (mWeekHeight <= 0) {
+                return null;
+            }
+            if (!mPagesValid) {
+                initPages();
+            }
+            return mPages[CURRENT_PAGE];
+        }
+
+        @Override
+        protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+            mWeekHeight = (h - getPaddingTop() - getPaddingBottom()) / MONTH_PAGE_WEEK_COUNT;
+            if (mWeekHeight <= 0 || w <= 0) {
+                mWeekHeight = 0;
+                return;
+            }
+            for (MonthPage page : mPages) {
+                page.setSize(w, h);
+            }
+        }
+
+        @Override
+        protected void onDraw(Canvas canvas) {
+            if (mWeekHeight <= 0) {
+                return;
+            }
+            long startNanos = beginSection(METRIC_DRAW);
+            if (!mPagesValid) {
+                initPages();
+            }
+            // The neighbor pages are rendered along with the current one, a swipe only moves them
+            int width = getWidth();
+            for (int i = 0; i < mPages.length; i++) {
+                Bitmap bitmap = mPages[i].render();
+                if (bitmap != null) {
+                    canvas.drawBitmap(bitmap, (i - CURRENT_PAGE) * width + mSwipeOffset, 0, null);
+                }
+            }
+            endSection(METRIC_DRAW, startNanos);
+        }
+
+        @Override
+        public boolean onTouchEvent(MotionEvent event) {
+            if (!isEnabled()) {
+                return false;
+            }
+            mGestureDetector.onTouchEvent(event);
+            int action = event.getActionMasked();
+            if ((action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL)
+                    && mScroller.isFinished()) {
+                if (mSwipeOffset < -getWidth() / 2) {
+                    settle(1);
+                } else if (mSwipeOffset > getWidth() / 2) {
+                    settle(-1);
+                } else {
+                    settle(0);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void computeScroll() {
+            if (!mScroller.computeScrollOffset()) {
+                return;
+            }
+            mSwipeOffset = mScroller.getCurrX();
+            if (mScroller.isFinished() && mSettleDirection != 0) {
+                onPageSettled(mSettleDirection);
+            }
+            invalidate();
+        }
+
+        private void showDisplayedMonth() {
+            // Deferred, the displayed month is set after the selection when a date is tapped
+            removeCallbacks(mShowDisplayedMonthRunnable);
+            if (mDisplayedMonthKey != mMonthKey) {
+                post(mShowDisplayedMonthRunnable);
+            }
+        }
+
+        private void showMonth(int monthKey, boolean animate) {
+            removeCallbacks(mShowDisplayedMonthRunnable);
+            mScroller.forceFinished(true);
+            mSettleDirection = 0;
+            monthKey = clampMonthKey(monthKey);
+            if (!animate || mWeekHeight <= 0 || monthKey == mMonthKey) {
+                if (monthKey != mMonthKey) {
+                    mMonthKey = monthKey;
+                    mPagesValid = false;
+                }
+                mSwipeOffset = 0;
+                requestWeeks(getFirstVisiblePosition(), false);
+                invalidate();
+                return;
+            }
+            if (!mPagesValid) {
+                initPages();
+            }
+            // Slide in the month from the side it lies on, a distant month replaces the neighbor
+            int direction = monthKey > mMonthKey ? 1 : -1;
+            MonthPage page = mPages[CURRENT_PAGE + direction];
+            if (page.getMonthKey() != monthKey) {
+                page.init(monthKey);
+            }
+            settle(direction);
+        }
+
+        private void settle(int direction) {
+            if (mPages[CURRENT_PAGE + direction].isEmpty()) {
+                direction = 0;
+            }
+            mSettleDirection = direction;
+            mScroller.startScroll(mSwipeOffset, 0, -direction * getWidth() - mSwipeOffset, 0,
+                    ADJUSTMENT_SCROLL_DURATION);
+            invalidate();
+        }
+
+        private void onPageSettled(int direction) {
+            MonthPage current = mPages[CURRENT_PAGE + direction];
+            MonthPage recycled = mPages[CURRENT_PAGE - direction];
+            mPages[CURRENT_PAGE - direction] = mPages[CURRENT_PAGE];
+            mPages[CURRENT_PAGE] = current;
+            mPages[CURRENT_PAGE + direction] = recycled;
+            mMonthKey = current.getMonthKey();
+            mSwipeOffset = 0;
+            mSettleDirection = 0;
+
+            // Only a page which does not neighbor the new month is laid out again
+            if (mPages[PREVIOUS_PAGE].getMonthKey() != mMonthKey - 1) {
+                mPages[PREVIOUS_PAGE].init(mMonthKey - 1);
+            }
+            if (mPages[NEXT_PAGE].getMonthKey() != mMonthKey + 1) {
+                mPages[NEXT_PAGE].init(mMonthKey + 1);
+            }
+            requestWeeks(getFirstVisiblePosition(), false);
+            if (mDisplayedMonthKey != mMonthKey) {
+                setMonthDisplayed(mMonthKey / 12, mMonthKey % 12, true);
+            }
+        }
+
+        private void initPages() {
+            mMonthKey = clampMonthKey(mMonthKey);
+            for (int i = 0; i < mPages.length; i++) {
+                mPages[i].init(mMonthKey + i - CURRENT_PAGE);
+            }
+            mPagesValid = true;
+        }
+
+        private int clampMonthKey(int monthKey) {
+            int firstMonthKey = WeekIndex.getMonthKey(mWeekIndex.getMinDay());
+            int lastMonthKey = WeekIndex.getMonthKey(mWeekIndex.getMaxDay());
+            return Math.max(firstMonthKey, Math.min(monthKey, lastMonthKey));
+        }
+
+        private int getFirstWeek(int monthKey) {
+            return mWeekIndex.getWeekOf(WeekIndex.toEpochDay(monthKey / 12, monthKey % 12, 1));
+        }
+
+        /**
+         * The rows of a month and their rendering.
+         */
+        private class MonthPage {
+
+            private final WeekRow[] mRows = new WeekRow[MONTH_PAGE_WEEK_COUNT];
+
+            private Bitmap mBitmap;
+            private Canvas mCanvas;
+            private int mMonthKey = -1;
+            private int mFirstWeek;
+            private int mWeekCount;
+            private boolean mRendered;
+
+            public MonthPage() {
+                for (int i = 0; i < mRows.length; i++) {
+                    mRows[i] = new WeekRow();
+                }
+            }
+
+            public void setSize(int width, int height) {
+                for (WeekRow row : mRows) {
+                    row.setSize(width, mWeekHeight);
+                }
+                mRendered = false;
+                if (mBitmap != null && mBitmap.getWidth() == width && mBitmap.getHeight() == height) {
+                    return;
+                }
+                if (mBitmap != null) {
+                    mBitmap.recycle();
+                }
+                mBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+                mCanvas = new Canvas(mBitmap);
+            }
+
+            public void init(int monthKey) {
+                mMonthKey = monthKey;
+                mWeekCount = 0;
+                mRendered = false;
+                if (clampMonthKey(monthKey) != monthKey) {
+                    return;
+                }
+                mFirstWeek = MonthPagerView.this.getFirstWeek(monthKey);
+                mWeekCount = Math.min(MONTH_PAGE_WEEK_COUNT, mAdapter.getCount() - mFirstWeek);
+                for (int i = 0; i < mWeekCount; i++) {
+                    int week = mFirstWeek + i;
+                    mRows[i].init(week, mAdapter.getSelectedWeekDay(week), monthKey % 12);
+                }
+            }
+
+            public int getMonthKey() {
+                return mMonthKey;
+            }
+
+            public int getFirstWeek() {
+                return mFirstWeek;
+            }
+
+            public int getWeekCount() {
+                return mWeekCount;
+            }
+
+            /**
+             * Gets the row of the given week of the page.
+             */
+            public WeekRow getRow(int week) {
+                return mRows[week - mFirstWeek];
+            }
+
+            public boolean isEmpty() {
+                return mWeekCount == 0;
+            }
+
+            public void updateSelection(int firstWeek, int lastWeek) {
+                for (int i = 0; i < mWeekCount; i++) {
+                    int week = mFirstWeek + i;
+                    if (week >= firstWeek && week <= lastWeek) {
+                        mRows[i].setSelectedWeekDay(mAdapter.getSelectedWeekDay(week));
+                        mRendered = false;
+                    }
+                }
+            }
+
+            public void updateDecorations(int firstWeek, int lastWeek) {
+                for (int i = 0; i < mWeekCount; i++) {
+                    int week = mFirstWeek + i;
+                    if (week >= firstWeek && week <= lastWeek) {
+                        mRows[i].updateDecorations();
+                        mRendered = false;
+                    }
+                }
+            }
+
+            public WeekRow getRowAt(float y) {
+                int row = (int) Math.floor((y - getPaddingTop()) / mWeekHeight);
+                return row >= 0 && row < mWeekCount ? mRows[row] : null;
+            }
+
+            public Bitmap render() {
+                if (mWeekCount == 0 || mBitmap == null) {
+                    return null;
+                }
+                if (!mRendered) {
+                    mBitmap.eraseColor(Color.TRANSPARENT);
+                    for (int i = 0; i < mWeekCount; i++) {
+                        int saveCount = mCanvas.save();
+                        mCanvas.translate(0, getPaddingTop() + i * mWeekHeight);
+                        mRows[i].draw(mCanvas, mDrawPaint);
+                        mCanvas.restoreToCount(saveCount);
+                    }
+                    mRendered = true;
+                }
+                return mBitmap;
+            }
+        }
+
+        private class PagerGestureListener extends GestureDetector.SimpleOnGestureListener {
+
+            @Override
+            public boolean onDown(MotionEvent e) {
+                mScroller.forceFinished(true);
+                mSettleDirection = 0;
+                return true;
+            }
+
+            @Override
+            public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
+                int width = getWidth();
+                int minOffset = mPages[NEXT_PAGE].isEmpty() ? 0 : -width;
+                int maxOffset = mPages[PREVIOUS_PAGE].isEmpty() ? 0 : width;
+                mSwipeOffset = Math.max(minOffset, Math.min(mSwipeOffset - (int) distanceX, maxOffset));
+                invalidate();
+                return true;
+            }
+
+            @Override
+            public boolean onFling(MotionEvent e1, MotionEvent e2, float velocityX, float velocityY) {
+                if (Math.abs(velocityX) < mMinFlingVelocity || Math.abs(velocityX) < Math.abs(velocityY)) {
+                    return false;
+                }
+                settle(velocityX < 0 ? 1 : -1);
+                return true;
+            }
+
+            @Override
+            public boolean onSingleTapUp(MotionEvent e) {
+                if (mSwipeOffset != 0 || mWeekHeight <= 0 || !mPagesValid) {
+                    return true;
+                }
+                WeekRow row = mPages[CURRENT_PAGE].getRowAt(e.getY());
+                if (row == null) {
+                    return true;
+                }
+                long day = row.getDayFromLocation(e.getX());
+                if (day != WeekIndex.NO_DAY && row.isEnabled(day)) {
+                    mAdapter.onDayTapped(day);
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Displays the weeks in a {@link RecyclerView}. The week ids are stable, selection
+     * and focus changes only rebind the affected weeks with a payload, and the upcoming
+     * weeks are laid out ahead of time while flinging.
+     */
+    private class RecyclerWeeksDisplay extends RecyclerView.OnScrollListener implements WeeksDisplay {
+
+        private final RecyclerView mRecyclerView;
+        private final WeeksLayoutManager mLayoutManager;
+        private final WeeksRecyclerAdapter mRecyclerAdapter = new WeeksRecyclerAdapter();
+
+        private int mScrollState = RecyclerView.SCROLL_STATE_IDLE;
+
+        public RecyclerWeeksDisplay(Context context) {
+            mRecyclerView = new RecyclerView(context);
+            mLayoutManager = new WeeksLayoutManager(context);
+            mRecyclerView.setLayoutManager(mLayoutManager);
+            mRecyclerView.setHasFixedSize(true);
+            mRecyclerView.setItemAnimator(null);
+            mRecyclerView.setVerticalScrollBarEnabled(false);
+            mRecyclerView.setOverScrollMode(View.OVER_SCROLL_NEVER);
+            mRecyclerView.addOnScrollListener(this);
+            mRecyclerAdapter.setHasStableIds(true);
+        }
+
+        @Override
+        public View getView() {
+            return mRecyclerView;
+        }
+
+        @Override
+        public void setAdapter(WeeksAdapter adapter) {
+            mRecyclerView.setAdapter(mRecyclerAdapter);
+        }
+
+        @Override
+        public int getFirstVisiblePosition() {
+            return Math.max(0, mLayoutManager.findFirstVisibleItemPosition());
+        }
+
+        @Override
+        public int getFirstVisibleTop() {
+            View firstChild = mLayoutManager.findViewByPosition(mLayoutManager.findFirstVisibleItemPosition());
+            return firstChild != null ? firstChild.getTop() : 0;
+        }
+
+        @Override
+        public void scrollToPosition(int position, boolean animate) {
+            if (animate) {
+                WeekSmoothScroller smoothScroller = new WeekSmoothScroller(mRecyclerView.getContext());
+                smoothScroller.setTargetPosition(position);
+                mLayoutManager.startSmoothScroll(smoothScroller);
+            } else {
+                mRecyclerView.stopScroll();
+                mLayoutManager.scrollToPositionWithOffset(position, mListScrollTopOffset);
+            }
+        }
+
+        @Override
+        public Parcelable onSaveState() {
+            return mLayoutManager.onSaveInstanceState();
+        }
+
+        @Override
+        public void onRestoreState(Parcelable state) {
+            mLayoutManager.onRestoreInstanceState(state);
+        }
+
+        @Override
+        public void onWeeksChanged() {
+            mRecyclerAdapter.notifyDataSetChanged();
+        }
+
+        @Override
+        public void onSelectionChanged(int previousSelectedWeek, int selectedWeek) {
+            if (previousSelectedWeek == selectedWeek) {
+                return;
+            }
+            int weekCount = mRecyclerAdapter.getItemCount();
+            if (previousSelectedWeek >= 0 && previousSelectedWeek < weekCount) {
+                mRecyclerAdapter.notifyItemChanged(previousSelectedWeek, PAYLOAD_SELECTION);
+            }
+            if (selectedWeek >= 0 && selectedWeek < weekCount) {
+                mRecyclerAdapter.notifyItemChanged(selectedWeek, PAYLOAD_SELECTION);
+            }
+        }
+
+        @Override
+        public void onSelectedDaysChanged(int firstWeek, int lastWeek) {
+            mRecyclerAdapter.notifyItemRangeChanged(firstWeek, lastWeek - firstWeek + 1, PAYLOAD_SELECTION);
+        }
+
+        @Override
+        public void onDecorationsChanged(int firstWeek, int lastWeek) {
+            mRecyclerAdapter.notifyItemRangeChanged(firstWeek, lastWeek - firstWeek + 1, PAYLOAD_DECORATIONS);
+        }
+
+        @Override
+        public void onFocusMonthChanged() {
+            mRecyclerAdapter.notifyItemRangeChanged(0, mRecyclerAdapter.getItemCount(), PAYLOAD_FOCUS);
+        }
+
+        @Override
+        public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+            int previousState = mScrollState;
+            mScrollState = newState;
+            if (newState == RecyclerView.SCROLL_STATE_IDLE && previousState != RecyclerView.SCROLL_STATE_IDLE) {
+                snapToWeek();
+            }
+        }
+
+        @Override
+        public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+            int firstVisiblePosition = mLayoutManager.findFirstVisibleItemPosition();
+            View firstChild = mLayoutManager.findViewByPosition(firstVisiblePosition);
+            if (firstChild != null) {
+                onScroll(firstVisiblePosition, firstChild.getBottom(), firstChild.getHeight());
+            }
+        }
+
+        private void snapToWeek() {
+            View firstChild = mLayoutManager.findViewByPosition(mLayoutManager.findFirstVisibleItemPosition());
+            if (firstChild == null) {
+                return;
+            }
+            int dist = firstChild.getBottom() - mListScrollTopOffset;
+            if (dist > mListScrollTopOffset) {
+                if (mIsScrollingUp) {
+                    mRecyclerView.smoothScrollBy(0, dist - firstChild.getHeight());
+                } else {
+                    mRecyclerView.smoothScrollBy(0, dist);
+                }
+            }
+        }
+
+        private int getWeekHeight() {
+            return (mRecyclerView.getHeight() - mRecyclerView.getPaddingTop() -
+                    mRecyclerView.getPaddingBottom()) / mShownWeekCount;
+        }
+
+        private class WeeksLayoutManager extends LinearLayoutManager {
+
+            public WeeksLayoutManager(Context context) {
+                super(context, VERTICAL, false);
+            }
+
+            @Override
+            protected int getExtraLayoutSpace(RecyclerView.State state) {
+                if (mScrollState == RecyclerView.SCROLL_STATE_SETTLING) {
+                    return Math.max(super.getExtraLayoutSpace(state), PREFETCH_WEEK_COUNT * getWeekHeight());
+                }
+                return super.getExtraLayoutSpace(state);
+            }
+        }
+
+        private class WeekSmoothScroller extends LinearSmoothScroller {
+
+            public WeekSmoothScroller(Context context) {
+                super(context);
+            }
+
+            @Override
+            public PointF computeScrollVectorForPosition(int targetPosition) {
+                return mLayoutManager.computeScrollVectorForPosition(targetPosition);
+            }
+
+            @Override
+            protected int getVerticalSnapPreference() {
+                return SNAP_TO_START;
+            }
+
+            @Override
+            public int calculateDtToFit(int viewStart, int viewEnd, int boxStart, int boxEnd, int snapPreference) {
+                return super.calculateDtToFit(viewStart, viewEnd, boxStart + mListScrollTopOffset, boxEnd,
+                        snapPreference);
+            }
+        }
+
+        private class WeeksRecyclerAdapter extends RecyclerView.Adapter<WeekHolder> {
+
+            @Override
+            public WeekHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+                WeekView weekView = new WeekView(mContext, getWeekHeight());
+                weekView.setLayoutParams(new RecyclerView.LayoutParams(
+                        LayoutParams.MATCH_PARENT, LayoutParams.WRAP_CONTENT));
+                weekView.setClickable(true);
+                weekView.setOnTouchListener(mAdapter);
+                return new WeekHolder(weekView);
+            }
+
+            @Override
+            public void onBindViewHolder(WeekHolder holder, int position) {
+                holder.mWeekView.init(position, mAdapter.getSelectedWeekDay(position), mAdapter.getFocusedMonth());
+            }
+
+            @Override
+            public void onBindViewHolder(WeekHolder holder, int position, List<Object> payloads) {
+                if (payloads.isEmpty()) {
+                    onBindViewHolder(holder, position);
+                    return;
+                }
+                for (Object payload : payloads) {
+                    if (PAYLOAD_SELECTION.equals(payload)) {
+                        holder.mWeekView.setSelectedWeekDay(mAdapter.getSelectedWeekDay(position));
+                    } else if (PAYLOAD_FOCUS.equals(payload)) {
+                        holder.mWeekView.setFocusedMonth(mAdapter.getFocusedMonth());
+                    } else if (PAYLOAD_DECORATIONS.equals(payload)) {
+                        holder.mWeekView.updateDecorations();
+                    } else {
+                        // Not a partial change of ours, rebind the whole week
+                        onBindViewHolder(holder, position);
+                        return;
                     }
                 }
-            });
-            mListView.setAdapter(mAdapter);
+            }
+
+            @Override
+            public int getItemCount() {
+                return mAdapter != null ? mAdapter.getCount() : 0;
+            }
+
+            @Override
+            public long getItemId(int position) {
+                return mWeekIndex.getFirstDayOf(position);
+            }
         }
+    }
 
-        mAdapter.notifyDataSetChanged();
+    private static class WeekHolder extends RecyclerView.ViewHolder {
+
+        private final WeekView mWeekView;
+
+        public WeekHolder(WeekView weekView) {
+            super(weekView);
+            mWeekView = weekView;
+        }
     }
 
-    private void setUpHeader() {
-        int[] mDayColors = new int[DAYS_PER_WEEK];
-        String[] mDayLabels = new String[DAYS_PER_WEEK];
-        for (int i = mFirstDayOfWeek, count = mFirstDayOfWeek + DAYS_PER_WEEK; i < count; i++) {
-            int calendarDay = (i > Calendar.SATURDAY) ? i - Calendar.SATURDAY : i;
-            mDayLabels[i - mFirstDayOfWeek] = mDaysOfWeekLocalized[calendarDay].substring(0, 1).toUpperCase();
-            mDayColors[i - mFirstDayOfWeek] = calendarDay == Calendar.SUNDAY ||
-                    calendarDay == Calendar.SATURDAY ? mWeekendColor : mWeekdayColor;
+    /**
+     * Draws the names of the days in a single view, laid out like the <code>day_names</code>
+     * header of the <code>calendar_view</code> layout.
+     */
+    private class DayNamesView extends View {
+
+        private final Paint mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        private final Paint.FontMetricsInt mFontMetrics = new Paint.FontMetricsInt();
+        private final int mLabelPadding;
+
+        private String[] mLabels;
+        private int[] mColors;
+
+        public DayNamesView(Context context, DisplayMetrics displayMetrics) {
+            super(context);
+            mLabelPadding = (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP,
+                    UNSCALED_WEEK_DAY_PADDING, displayMetrics);
+            float textSize = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP,
+                    DEFAULT_WEEK_DAY_TEXT_SIZE, displayMetrics);
+            int textStyle = Typeface.NORMAL;
+            if (mWeekDayTextAppearance > -1) {
+                TypedArray textAppearance = context.obtainStyledAttributes(mWeekDayTextAppearance,
+                        new int[] { android.R.attr.textSize, android.R.attr.textStyle });
+                textSize = textAppearance.getDimensionPixelSize(0, (int) textSize);
+                textStyle = textAppearance.getInt(1, textStyle);
+                textAppearance.recycle();
+            }
+            mPaint.setTextSize(textSize);
+            mPaint.setTypeface(Typeface.defaultFromStyle(textStyle));
         }
 
-        TextView label = (TextView) mDayNamesHeader.getChildAt(0);
-        if (mShowWeekNumber) {
-            label.setVisibility(View.VISIBLE);
-        } else {
-            label.setVisibility(View.GONE);
+        public void setDays(String[] labels, int[] colors) {
+            mLabels = labels;
+            mColors = colors;
+            invalidate();
         }
-        for (int i = 1, count = mDayNamesHeader.getChildCount(); i < count; i++) {
-            label = (TextView) mDayNamesHeader.getChildAt(i);
-            if (mWeekDayTextAppearance > -1) {
-                label.setTextAppearance(mContext, mWeekDayTextAppearance);
+
+        @Override
+        protected void onDraw(Canvas canvas) {
+            if (mLabels == null) {
+                return;
             }
-            if (i < DAYS_PER_WEEK + 1) {
-                label.setText(mDayLabels[i - 1]);
-                label.setTextColor(mDayColors[i - 1]);
-                label.setVisibility(View.VISIBLE);
-            } else {
-                label.setVisibility(View.GONE);
+            int columnCount = mShowWeekNumber ? DAYS_PER_WEEK + 1 : DAYS_PER_WEEK;
+            int firstDayColumn = mShowWeekNumber ? 1 : 0;
+            int width = getWidth();
+            mPaint.getFontMetricsInt(mFontMetrics);
+            int baseline = -mFontMetrics.ascent;
+            for (int i = 0; i < DAYS_PER_WEEK; i++) {
+                int left = (firstDayColumn + i) * width / columnCount;
+                mPaint.setColor(mColors[i]);
+                canvas.drawText(mLabels[i], left + mLabelPadding, baseline, mPaint);
             }
         }
-        mDayNamesHeader.invalidate();
     }
 
-    private void setUpListView() {
-        mListView.setItemsCanFocus(true);
-        mListView.setVerticalScrollBarEnabled(false);
-        mListView.setFriction(LIST_FRICTION);
-        mListView.setVelocityScale(LIST_VELOCITY_SCALE);
-        mListView.setOnScrollListener(new OnScrollListener() {
-            public void onScrollStateChanged(AbsListView view, int scrollState) {
-                CalendarView.this.onScrollStateChanged(view, scrollState);
+    /**
+     * Draws the twelve months of a year as small grids in a single pass. The position of the
+     * months and the size of the days are computed upon size change and the state of the days
+     * is kept in arrays indexed by the day of the year, updated when the year or the weeks
+     * change, so drawing does not allocate.
+     */
+    private class YearView extends View {
+
+        private static final int FLAG_IN_RANGE = 1;
+        private static final int FLAG_ENABLED = 1 << 1;
+        private static final int FLAG_SELECTED = 1 << 2;
+
+        private final Paint mTitlePaint = createDrawPaint();
+        private final Paint mDayPaint = createDrawPaint();
+        private final GestureDetector mGestureDetector;
+        private final int mMinFlingVelocity;
+
+        private final int[] mDayFlags = new int[366];
+        private final int[] mDecorationFlags = new int[366];
+        private final int[] mMonthStarts = new int[MONTHS_PER_YEAR + 1];
+        private final int[] mMonthColumns = new int[MONTHS_PER_YEAR];
+        private final int[] mMonthLefts = new int[MONTHS_PER_YEAR];
+        private final int[] mMonthTops = new int[MONTHS_PER_YEAR];
+        private final String[] mMonthTitles = new String[MONTHS_PER_YEAR];
+
+        private int mYear;
+        private long mFirstDay;
+        private int mColumnCount;
+        private int mMonthWidth;
+        private int mMonthHeight;
+        private int mTitleHeight;
+        private int mCellLeft;
+        private int mCellWidth;
+        private int mCellHeight;
+        private int mSelectedRadius;
+        private int mDotRadius;
+        private int mTitleBaseline;
+        private int mDayBaseline;
+
+        public YearView(Context context) {
+            super(context);
+
+            mTitlePaint.setFakeBoldText(true);
+            mGestureDetector = new GestureDetector(context, new YearGestureListener());
+            mGestureDetector.setIsLongpressEnabled(false);
+            mMinFlingVelocity = ViewConfiguration.get(context).getScaledMinimumFlingVelocity();
+        }
+
+        public void setYear(int year) {
+            mYear = year;
+            mFirstDay = WeekIndex.toEpochDay(year, Calendar.JANUARY, 1);
+            for (int month = 0; month < MONTHS_PER_YEAR; month++) {
+                mMonthStarts[month] = (int) (WeekIndex.toEpochDay(year, month, 1) - mFirstDay);
+                mMonthTitles[month] = mResources.getShortMonth(month);
             }
+            mMonthStarts[MONTHS_PER_YEAR] = WeekIndex.isLeapYear(year) ? 366 : 365;
+            mMonthName.setText(Integer.toString(year));
+            update();
+        }
 
-            public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
-                CalendarView.this.onScroll(view, firstVisibleItem, visibleItemCount, totalItemCount);
+        /**
+         * Updates the state of the days, e.g. after the selection or the rules changed.
+         */
+        public void update() {
+            for (int month = 0; month < MONTHS_PER_YEAR; month++) {
+                mMonthColumns[month] = WeekIndex.getDaysSinceWeekStart(mFirstDay + mMonthStarts[month],
+                        mFirstDayOfWeek);
             }
-        });
-    }
 
-    private void goTo(Calendar date, boolean animate, boolean setSelected, boolean forceScroll) {
-        if (date.before(mMinDate) || date.after(mMaxDate)) {
-            throw new IllegalArgumentException("Time not between " + mMinDate.getTime()
-                    + " and " + mMaxDate.getTime());
+            int dayCount = mMonthStarts[MONTHS_PER_YEAR];
+            long selectedDay = mSelectionMode == SELECTION_MODE_SINGLE ? mModel.getSelectedDay() : WeekIndex.NO_DAY;
+            for (int d = 0; d < dayCount; d += DAYS_PER_WEEK) {
+                long day = mFirstDay + d;
+                int enabledMask = CalendarModel.getEnabledMask(mWeekIndex, mDayRules, day);
+                int selectionMask = mAdapter.mDaySelection.getWeekMask(day);
+                for (int i = 0; i < DAYS_PER_WEEK && d + i < dayCount; i++) {
+                    int flags = mWeekIndex.isInRange(day + i) ? FLAG_IN_RANGE : 0;
+                    if ((enabledMask & (1 << i)) != 0) {
+                        flags |= FLAG_ENABLED;
+                    }
+                    if ((selectionMask & (1 << i)) != 0 || day + i == selectedDay) {
+                        flags |= FLAG_SELECTED;
+                    }
+                    mDayFlags[d + i] = flags;
+                }
+            }
+
+            if (mDayDecorations == null || mDayDecorations.size() == 0) {
+                Arrays.fill(mDecorationFlags, 0);
+            } else {
+                for (int month = 0; month < MONTHS_PER_YEAR; month++) {
+                    int[] monthFlags = getMonthDecorations(mYear, month);
+                    System.arraycopy(monthFlags, 0, mDecorationFlags, mMonthStarts[month], monthFlags.length);
+                }
+            }
+            invalidate();
         }
 
-        int firstFullyVisiblePosition = mListView.getFirstVisiblePosition();
-        View firstChild = mListView.getChildAt(0);
-        if (firstChild != null && firstChild.getTop() < 0) {
-            firstFullyVisiblePosition++;
+        @Override
+        protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+            int contentWidth = w - getPaddingLeft() - getPaddingRight();
+            int contentHeight = h - getPaddingTop() - getPaddingBottom();
+            mColumnCount = w > h ? 4 : 3;
+            mMonthWidth = contentWidth / mColumnCount;
+            mMonthHeight = contentHeight / (MONTHS_PER_YEAR / mColumnCount);
+
+            // A month is a title two days high above six weeks, with half a day on each side
+            mCellWidth = mMonthWidth / (DAYS_PER_WEEK + 1);
+            mCellHeight = mMonthHeight / (MONTH_PAGE_WEEK_COUNT + 2);
+            mCellLeft = (mMonthWidth - DAYS_PER_WEEK * mCellWidth) / 2;
+            mTitleHeight = mMonthHeight - MONTH_PAGE_WEEK_COUNT * mCellHeight;
+            for (int month = 0; month < MONTHS_PER_YEAR; month++) {
+                mMonthLefts[month] = getPaddingLeft() + month % mColumnCount * mMonthWidth;
+                mMonthTops[month] = getPaddingTop() + month / mColumnCount * mMonthHeight;
+            }
+
+            mTitlePaint.setTextSize(Math.min(mStyle.getDateTextSize(), mTitleHeight * YEAR_OVERVIEW_TEXT_SCALE));
+            mDayPaint.setTextSize(Math.min(mStyle.getDateTextSize(), mCellHeight * YEAR_OVERVIEW_TEXT_SCALE));
+            mTitleBaseline = (int) ((mTitleHeight + mTitlePaint.getTextSize()) / 2);
+            mDayBaseline = (int) ((mCellHeight + mDayPaint.getTextSize()) / 2);
+            mSelectedRadius = Math.min(mCellWidth, mCellHeight) / 2;
+            mDotRadius = Math.max(1, Math.min(mStyle.getDecorationRadius(), mCellHeight / 8));
         }
-        int lastFullyVisiblePosition = firstFullyVisiblePosition + mShownWeekCount - 1;
-        if (firstChild != null && firstChild.getTop() > mBottomBuffer) {
-            lastFullyVisiblePosition--;
+
+        @Override
+        protected void onDraw(Canvas canvas) {
+            if (mCellHeight <= 0 || mCellWidth <= 0) {
+                return;
+            }
+            long startNanos = beginSection(METRIC_DRAW);
+            int[] decorationColors = mStyle.getDecorationColors();
+            for (int month = 0; month < MONTHS_PER_YEAR; month++) {
+                int monthStart = mMonthStarts[month];
+                int monthEnd = mMonthStarts[month + 1];
+                boolean inRange = (mDayFlags[monthStart] & FLAG_IN_RANGE) != 0
+                        || (mDayFlags[monthEnd - 1] & FLAG_IN_RANGE) != 0;
+                mTitlePaint.setColor(inRange ? mStyle.getFocusedMonthDateColor() : mStyle.getDisabledDateColor());
+                canvas.drawText(mMonthTitles[month], mMonthLefts[month] + mMonthWidth / 2,
+                        mMonthTops[month] + mTitleBaseline, mTitlePaint);
+
+                int left = mMonthLefts[month] + mCellLeft;
+                int top = mMonthTops[month] + mTitleHeight;
+                int column = mMonthColumns[month];
+                for (int d = monthStart, dayOfMonth = 1; d < monthEnd; d++, dayOfMonth++, column++) {
+                    int flags = mDayFlags[d];
+                    if ((flags & FLAG_IN_RANGE) == 0) {
+                        continue;
+                    }
+                    int x = left + column % DAYS_PER_WEEK * mCellWidth + mCellWidth / 2;
+                    int y = top + column / DAYS_PER_WEEK * mCellHeight;
+                    if ((flags & FLAG_SELECTED) != 0) {
+                        mDayPaint.setColor(mStyle.getSelectedDateBackgroundColor());
+                        canvas.drawCircle(x, y + mCellHeight / 2, mSelectedRadius, mDayPaint);
+                    }
+                    mDayPaint.setColor((flags & FLAG_ENABLED) != 0
+                            ? mStyle.getFocusedMonthDateColor() : mStyle.getDisabledDateColor());
+                    canvas.drawText(WeekPainter.DAY_NUMBER_LABELS[dayOfMonth], x, y + mDayBaseline, mDayPaint);
+                    int decorations = mDecorationFlags[d];
+                    if (decorations != 0) {
+                        int flag = Integer.numberOfTrailingZeros(decorations);
+                        mDayPaint.setColor(decorationColors[flag % decorationColors.length]);
+                        canvas.drawCircle(x, y + mCellHeight - mDotRadius, mDotRadius, mDayPaint);
+                    }
+                }
+            }
+            endSection(METRIC_DRAW, startNanos);
         }
 
-        if (setSelected) {
-            mAdapter.setSelectedDay(date, false);
+        @Override
+        public boolean onTouchEvent(MotionEvent event) {
+            if (!isEnabled()) {
+                return false;
+            }
+            mGestureDetector.onTouchEvent(event);
+            return true;
         }
 
-        int position = getWeeksSinceMinDate(date);
-        if (position < firstFullyVisiblePosition || position > lastFullyVisiblePosition
-                || forceScroll) {
-            mFirstDayOfMonth.setTimeInMillis(date.getTimeInMillis());
-            mFirstDayOfMonth.set(Calendar.DAY_OF_MONTH, 1);
+        private void onMonthTapped(int month) {
+            long firstDay = mFirstDay + mMonthStarts[month];
+            long lastDay = mFirstDay + mMonthStarts[month + 1] - 1;
+            if (lastDay < mWeekIndex.getMinDay() || firstDay > mWeekIndex.getMaxDay()) {
+                return;
+            }
+            setYearOverviewShown(false);
+            // Jump straight to the month, scrolling there would bind all the weeks in between
+            Calendar date = mTempDate;
+            if (firstDay <= mWeekIndex.getMinDay()) {
+                date = mMinDate;
+            } else if (firstDay >= mWeekIndex.getMaxDay()) {
+                date = mMaxDate;
+            } else {
+                WeekIndex.setToEpochDay(mTempDate, firstDay);
+            }
+            goTo(date, false, false, true);
+        }
 
-            setMonthDisplayed(mFirstDayOfMonth, false);
+        private class YearGestureListener extends GestureDetector.SimpleOnGestureListener {
 
-            position = getWeeksSinceMinDate(mFirstDayOfMonth);
+            @Override
+            public boolean onDown(MotionEvent e) {
+                return true;
+            }
 
-            mPreviousScrollState = OnScrollListener.SCROLL_STATE_FLING;
-            if (animate) {
-                mListView.smoothScrollToPositionFromTop(position, mListScrollTopOffset, GOTO_SCROLL_DURATION);
-            } else {
-                mListView.setSelectionFromTop(position, mListScrollTopOffset);
-                onScrollStateChanged(mListView, OnScrollListener.SCROLL_STATE_IDLE);
+            @Override
+            public boolean onFling(MotionEvent e1, MotionEvent e2, float velocityX, float velocityY) {
+                if (Math.abs(velocityX) < mMinFlingVelocity || Math.abs(velocityX) < Math.abs(velocityY)) {
+                    return false;
+                }
+                int year = velocityX < 0 ? mYear + 1 : mYear - 1;
+                if (year >= WeekIndex.getYear(mWeekIndex.getMinDay())
+                        && year <= WeekIndex.getYear(mWeekIndex.getMaxDay())) {
+                    setYear(year);
+                }
+                return true;
+            }
+
+            @Override
+            public boolean onSingleTapUp(MotionEvent e) {
+                if (mMonthWidth <= 0 || mMonthHeight <= 0) {
+                    return true;
+                }
+                int column = (int) (e.getX() - getPaddingLeft()) / mMonthWidth;
+                int row = (int) (e.getY() - getPaddingTop()) / mMonthHeight;
+                int month = row * mColumnCount + column;
+                if (e.getX() >= getPaddingLeft() && e.getY() >= getPaddingTop()
+                        && column < mColumnCount && month < MONTHS_PER_YEAR) {
+                    onMonthTapped(month);
+                }
+                return true;
             }
-        } else if (setSelected) {
-            setMonthDisplayed(date, false);
         }
     }
 
-    private boolean parseDate(String date, Calendar outDate) {
-        try {
-            outDate.setTime(mDateFormat.parse(date));
-            return true;
-        } catch (ParseException e) {
-            Log.w(getClass().getSimpleName(), "Date: " + date + " not in format: " + DATE_FORMAT);
-            return false;
+    /**
+     * Holds the days and the geometry of a single week and draws it with a {@link WeekPainter}.
+     * A row can be bound to another week through {@link #init(int, int, int)} without allocations.
+     */
+    private class WeekRow {
+
+        private final WeekRenderCache.Key mRenderKey = new WeekRenderCache.Key();
+        private final WeekPainter mPainter = new WeekPainter();
+
+        private final int[] mDaysOfMonth = new int[DAYS_PER_WEEK];
+        private final int[] mMonths = new int[DAYS_PER_WEEK];
+        private final int[] mDecorations = new int[DAYS_PER_WEEK];
+
+        private long mFirstDay;
+
+        private int mWeek = -1;
+        private int mWidth;
+        private int mHeight;
+        private int mSelectedDay = -1;
+        private int mSelectionMask;
+        private int mEnabledMask;
+        private int mNumCells;
+
+        public void init(int weekNumber, int selectedWeekDay, int focusedMonth) {
+            long startNanos = beginSection(METRIC_BIND);
+            mNumCells = mShowWeekNumber ? DAYS_PER_WEEK + 1 : DAYS_PER_WEEK;
+            mWeek = weekNumber;
+            mFirstDay = mWeekIndex.getFirstDayOf(mWeek);
+
+            int weekOfYear;
+            WeekData weekData = getBuiltWeek(mWeek);
+            if (weekData != null) {
+                System.arraycopy(weekData.getDaysOfMonth(), 0, mDaysOfMonth, 0, DAYS_PER_WEEK);
+                System.arraycopy(weekData.getMonths(), 0, mMonths, 0, DAYS_PER_WEEK);
+                System.arraycopy(weekData.getDecorations(), 0, mDecorations, 0, DAYS_PER_WEEK);
+                weekOfYear = weekData.getWeekNumber();
+                mEnabledMask = weekData.getEnabledMask();
+            } else {
+                mWeekIndex.getWeekDays(mWeek, mDaysOfMonth, mMonths);
+                getWeekDecorations(mFirstDay, mDecorations);
+                weekOfYear = mWeekIndex.getWeekNumber(mWeek);
+                mEnabledMask = CalendarModel.getEnabledMask(mWeekIndex, mDayRules, mFirstDay);
+            }
+
+            int inRangeMask = 0;
+            for (int d = 0; d < DAYS_PER_WEEK; d++) {
+                if (mWeekIndex.isInRange(mFirstDay + d)) {
+                    inRangeMask |= 1 << d;
+                }
+            }
+            mPainter.setWeek(weekOfYear, mDaysOfMonth, mDecorations, inRangeMask, mEnabledMask,
+                    mShowWeekNumber, mWeek != 0);
+            setFocusedMonth(focusedMonth);
+            setSelectedWeekDay(selectedWeekDay);
+            endSection(METRIC_BIND, startNanos);
         }
-    }
 
-    private void onScrollStateChanged(AbsListView view, int scrollState) {
-        mScrollStateChangedRunnable.doScrollStateChange(view, scrollState);
-    }
+        /**
+         * Reads the decorations of the bound week again, the days and the selection are kept.
+         */
+        public void updateDecorations() {
+            if (mWeek == -1) {
+                return;
+            }
+            WeekData weekData = getBuiltWeek(mWeek);
+            if (weekData != null) {
+                System.arraycopy(weekData.getDecorations(), 0, mDecorations, 0, DAYS_PER_WEEK);
+            } else {
+                getWeekDecorations(mFirstDay, mDecorations);
+            }
+            mPainter.setDecorations(mDecorations);
+        }
 
-    private void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
-        WeekView child = (WeekView) view.getChildAt(0);
-        if (child == null) {
-            return;
+        public void setSelectedWeekDay(int selectedWeekDay) {
+            mSelectedDay = selectedWeekDay;
+            mSelectionMask = mAdapter.getSelectionMask(mWeek);
+            int selectedCell = mSelectedDay != -1 ? (mSelectedDay - mFirstDayOfWeek + DAYS_PER_WEEK) % DAYS_PER_WEEK : -1;
+            mPainter.setSelection(selectedCell, mSelectionMask);
         }
 
-        long currScroll = firstVisibleItem *
-                child.getHeight() - child.getBottom();
-        if (currScroll < mPreviousScrollPosition) {
-            mIsScrollingUp = true;
-        } else if (currScroll > mPreviousScrollPosition) {
-            mIsScrollingUp = false;
-        } else {
-            return;
+        public void setFocusedMonth(int focusedMonth) {
+            int focusMask = 0;
+            for (int d = 0; d < DAYS_PER_WEEK; d++) {
+                if (mMonths[d] == focusedMonth) {
+                    focusMask |= 1 << d;
+                }
+            }
+            mPainter.setFocusMask(focusMask);
+        }
+
+        public void setSize(int width, int height) {
+            if (mWidth == width && mHeight == height) {
+                return;
+            }
+            mWidth = width;
+            mHeight = height;
+            mPainter.setSize(width, height);
+        }
+
+        public int getWeek() {
+            return mWeek;
         }
 
-        int offset = child.getBottom() < mWeekMinVisibleHeight ? 1 : 0;
-        if (mIsScrollingUp) {
-            child = (WeekView) view.getChildAt(SCROLL_HYST_WEEKS + offset);
-        } else if (offset != 0) {
-            child = (WeekView) view.getChildAt(offset);
+        public long getFirstDay() {
+            return mFirstDay;
         }
 
-        int month;
-        if (mIsScrollingUp) {
-            month = child.getMonthOfFirstWeekDay();
-        } else {
-            month = child.getMonthOfLastWeekDay();
+        public boolean isSelected(long day) {
+            if ((mSelectionMask & (1 << (day - mFirstDay))) != 0) {
+                return true;
+            }
+            return mSelectedDay != -1 && WeekIndex.getDayOfWeek(day) == mSelectedDay;
         }
 
-        int monthDiff;
-        if (mCurrentMonthDisplayed == 11 && month == 0) {
-            monthDiff = 1;
-        } else if (mCurrentMonthDisplayed == 0 && month == 11) {
-            monthDiff = -1;
-        } else {
-            monthDiff = month - mCurrentMonthDisplayed;
+        /**
+         * Gets whether the given day is in the range and not disabled by the rules.
+         */
+        public boolean isEnabled(long day) {
+            long cell = day - mFirstDay;
+            return cell >= 0 && cell < DAYS_PER_WEEK && (mEnabledMask & (1 << cell)) != 0;
         }
 
-        if ((!mIsScrollingUp && monthDiff > 0) || (mIsScrollingUp && monthDiff < 0)) {
-            Calendar firstDay = child.getFirstDay();
-            if (mIsScrollingUp) {
-                firstDay.add(Calendar.DAY_OF_MONTH, -DAYS_PER_WEEK);
-            } else {
-                firstDay.add(Calendar.DAY_OF_MONTH, DAYS_PER_WEEK);
-            }
-            setMonthDisplayed(firstDay, true);
+        public void getCellBounds(int cell, Rect outBounds) {
+            int position = mShowWeekNumber ? cell + 1 : cell;
+            outBounds.set(position * mWidth / mNumCells, 0, (position + 1) * mWidth / mNumCells, mHeight);
         }
-        mPreviousScrollPosition = currScroll;
-        mPreviousScrollState = mCurrentScrollState;
-    }
 
-    private void setMonthDisplayed(Calendar calendar, boolean send) {
-        mMonthName.setText(mMonthFormatLocalized.format(calendar.getTime()));
-        mMonthName.invalidate();
+        public long getDayFromLocation(float x) {
+            int dayStart = mShowWeekNumber ? mWidth / mNumCells : 0;
+            if (x < dayStart || x > mWidth) {
+                return WeekIndex.NO_DAY;
+            }
 
-        if (send) {
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
-                mMonthName.sendAccessibilityEvent(AccessibilityEvent.TYPE_VIEW_ACCESSIBILITY_FOCUSED);
+            int dayPosition = (int) ((x - dayStart) * DAYS_PER_WEEK / (mWidth - dayStart));
+            return mFirstDay + Math.min(dayPosition, DAYS_PER_WEEK - 1);
+        }
+
+        public void draw(Canvas canvas, Paint paint) {
+            if (mRenderCache != null && mWidth > 0 && mHeight > 0) {
+                canvas.drawBitmap(getRenderedWeek(paint), 0, 0, null);
             } else {
-                mMonthName.sendAccessibilityEvent(AccessibilityEvent.TYPE_VIEW_FOCUSED);
+                drawWeek(canvas, paint);
             }
         }
 
-        mFirstDayOfMonth.setTimeInMillis(calendar.getTimeInMillis());
-        mFirstDayOfMonth.set(Calendar.DAY_OF_MONTH, 1);
-
-        mCurrentMonthDisplayed = calendar.get(Calendar.MONTH);
-        mAdapter.setFocusMonth(mCurrentMonthDisplayed);
-    }
+        private Bitmap getRenderedWeek(Paint paint) {
+            mRenderKey.set(mFirstDay, mPainter.getFocusMask(), mSelectedDay, mSelectionMask, mWidth, mHeight);
+            Bitmap bitmap = mRenderCache.get(mRenderKey);
+            if (bitmap == null) {
+                bitmap = Bitmap.createBitmap(mWidth, mHeight, Bitmap.Config.ARGB_8888);
+                drawWeek(new Canvas(bitmap), paint);
+                mRenderCache.put(mRenderKey.copy(), bitmap);
+            }
+            return bitmap;
+        }
 
-    private int getWeeksSinceMinDate(Calendar date) {
-        if (date.before(mMinDate)) {
-            return 0;
+        private void drawWeek(Canvas canvas, Paint paint) {
+            if (mTextCacheEnabled) {
+                mPainter.draw(canvas, paint, mStyle, getDayNumberAtlas(paint), getWeekNumberAtlas(paint));
+            } else {
+                mPainter.draw(canvas, paint, mStyle, null, null);
+            }
         }
-        long endTimeMillis = date.getTimeInMillis()
-                + date.getTimeZone().getOffset(date.getTimeInMillis());
-        long startTimeMillis = mMinDate.getTimeInMillis()
-                + mMinDate.getTimeZone().getOffset(mMinDate.getTimeInMillis());
-        long dayOffsetMillis = (mMinDate.get(Calendar.DAY_OF_WEEK) - mFirstDayOfWeek)
-                * MILLIS_IN_DAY;
-        return (int) ((endTimeMillis - startTimeMillis + dayOffsetMillis) / MILLIS_IN_WEEK);
     }
 
-    private class ScrollStateRunnable implements Runnable {
-
-        private AbsListView mView;
+    /**
+     * Exposes the days of the rows drawn by a display as virtual views, as the {@link WeekView}s
+     * expose their days in the list mode. A day is identified by its week position times
+     * {@link #DAYS_PER_WEEK} plus its cell, so it keeps its identifier while the rows scroll.
+     * The node texts are only formatted when an accessibility service queries them.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private abstract class RowsNodeProvider extends AccessibilityNodeProvider {
 
-        private int mNewState;
+        private final View mHost;
+        private final Rect mTempRect = new Rect();
+        private final int[] mLocationOnScreen = new int[2];
 
-        public void doScrollStateChange(AbsListView view, int scrollState) {
-            mView = view;
-            mNewState = scrollState;
-            removeCallbacks(this);
-            postDelayed(this, SCROLL_CHANGE_DELAY);
-        }
+        private int mHoveredDay = View.NO_ID;
+        private int mAccessibilityFocusedDay = View.NO_ID;
 
-        public void run() {
-            mCurrentScrollState = mNewState;
-            if (mNewState == OnScrollListener.SCROLL_STATE_IDLE
-                    && mPreviousScrollState != OnScrollListener.SCROLL_STATE_IDLE) {
-                View child = mView.getChildAt(0);
-                if (child == null) {
-                    return;
-                }
-                int dist = child.getBottom() - mListScrollTopOffset;
-                if (dist > mListScrollTopOffset) {
-                    if (mIsScrollingUp) {
-                        mView.smoothScrollBy(dist - child.getHeight(), ADJUSTMENT_SCROLL_DURATION);
-                    } else {
-                        mView.smoothScrollBy(dist, ADJUSTMENT_SCROLL_DURATION);
-                    }
-                }
-            }
-            mPreviousScrollState = mNewState;
+        RowsNodeProvider(View host) {
+            mHost = host;
         }
-    }
-
-    private class WeeksAdapter extends BaseAdapter implements OnTouchListener {
 
-        private final Calendar mSelectedDate = Calendar.getInstance(mCurrentLocale);
+        /**
+         * Gets the first visible week.
+         */
+        abstract int getFirstVisibleWeek();
 
-        private GestureDetector mGestureDetector;
+        /**
+         * Gets the number of visible weeks, 0 while the display is not laid out.
+         */
+        abstract int getVisibleWeekCount();
 
-        private int mFocusedMonth;
-        private int mSelectedWeek;
-        private int mTotalWeekCount;
+        /**
+         * Gets the row bound to the given visible week.
+         */
+        abstract WeekRow getRow(int week);
 
-        public WeeksAdapter(Context context) {
-            mGestureDetector = new GestureDetector(context, new CalendarGestureListener());
-            init();
-        }
+        /**
+         * Gets the top of the given visible week in the host.
+         */
+        abstract int getRowTop(int week);
 
-        private void init() {
-            mSelectedWeek = getWeeksSinceMinDate(mSelectedDate);
-            mTotalWeekCount = getWeeksSinceMinDate(mMaxDate);
-            if (mMinDate.get(Calendar.DAY_OF_WEEK) != mFirstDayOfWeek
-                    || mMaxDate.get(Calendar.DAY_OF_WEEK) != mFirstDayOfWeek) {
-                mTotalWeekCount++;
+        public boolean dispatchHoverEvent(MotionEvent event) {
+            if (mAccessibilityManager == null || !mAccessibilityManager.isTouchExplorationEnabled()) {
+                return false;
             }
-        }
-
-        public void setSelectedDay(Calendar calendar, boolean send) {
-            if (calendar.compareTo(mSelectedDate) == 0) {
-               return;
+            switch (event.getActionMasked()) {
+                case MotionEvent.ACTION_HOVER_ENTER:
+                case MotionEvent.ACTION_HOVER_MOVE:
+                    setHoveredDay(getDayFromLocation(event.getX(), event.getY()));
+                    return true;
+                case MotionEvent.ACTION_HOVER_EXIT:
+                    setHoveredDay(View.NO_ID);
+                    return true;
+                default:
+                    return false;
             }
-            mSelectedDate.setTimeInMillis(calendar.getTimeInMillis());
-            mSelectedWeek = getWeeksSinceMinDate(mSelectedDate);
-            mFocusedMonth = mSelectedDate.get(Calendar.MONTH);
-            notifyDataSetChanged();
+        }
 
-            if (send) {
-                mListView.setContentDescription(mDateFormatLocalized.format(mSelectedDate.getTime()));
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
-                    mListView.sendAccessibilityEvent(AccessibilityEvent.TYPE_ANNOUNCEMENT);
-                } else {
-                    mMonthName.sendAccessibilityEvent(AccessibilityEvent.TYPE_VIEW_FOCUSED);
+        @Override
+        public AccessibilityNodeInfo createAccessibilityNodeInfo(int virtualViewId) {
+            int firstWeek = getFirstVisibleWeek();
+            int weekCount = getVisibleWeekCount();
+            if (virtualViewId == View.NO_ID) {
+                AccessibilityNodeInfo info = AccessibilityNodeInfo.obtain(mHost);
+                mHost.onInitializeAccessibilityNodeInfo(info);
+                for (int week = firstWeek; week < firstWeek + weekCount; week++) {
+                    long firstDay = mWeekIndex.getFirstDayOf(week);
+                    for (int cell = 0; cell < DAYS_PER_WEEK; cell++) {
+                        if (mWeekIndex.isInRange(firstDay + cell)) {
+                            info.addChild(mHost, week * DAYS_PER_WEEK + cell);
+                        }
+                    }
                 }
+                return info;
+            }
+            int week = virtualViewId / DAYS_PER_WEEK;
+            if (virtualViewId < 0 || week < firstWeek || week >= firstWeek + weekCount) {
+                return null;
             }
-        }
-
-        public Calendar getSelectedDay() {
-            return mSelectedDate;
-        }
 
-        @Override
-        public int getCount() {
-            return mTotalWeekCount;
-        }
+            int cell = virtualViewId % DAYS_PER_WEEK;
+            WeekRow row = getRow(week);
+            long day = row.getFirstDay() + cell;
+            AccessibilityNodeInfo info = AccessibilityNodeInfo.obtain();
+            info.setSource(mHost, virtualViewId);
+            info.setParent(mHost);
+            info.setPackageName(mContext.getPackageName());
+            info.setClassName(mHost.getClass().getName());
+            info.setContentDescription(mResources.getDayDescription(day));
+            info.setEnabled(mHost.isEnabled() && row.isEnabled(day));
+            info.setSelected(row.isSelected(day));
+            info.setVisibleToUser(true);
+            info.setClickable(true);
+            info.addAction(AccessibilityNodeInfo.ACTION_CLICK);
+
+            if (mAccessibilityFocusedDay == virtualViewId) {
+                info.setAccessibilityFocused(true);
+                info.addAction(AccessibilityNodeInfo.ACTION_CLEAR_ACCESSIBILITY_FOCUS);
+            } else {
+                info.addAction(AccessibilityNodeInfo.ACTION_ACCESSIBILITY_FOCUS);
+            }
 
-        @Override
-        public Object getItem(int position) {
-            return null;
+            row.getCellBounds(cell, mTempRect);
+            mTempRect.offset(0, getRowTop(week));
+            info.setBoundsInParent(mTempRect);
+            mHost.getLocationOnScreen(mLocationOnScreen);
+            mTempRect.offset(mLocationOnScreen[0], mLocationOnScreen[1]);
+            info.setBoundsInScreen(mTempRect);
+            return info;
         }
 
         @Override
-        public long getItemId(int position) {
-            return position;
+        public boolean performAction(int virtualViewId, int action, Bundle arguments) {
+            if (virtualViewId < 0) {
+                return mHost.performAccessibilityAction(action, arguments);
+            }
+            switch (action) {
+                case AccessibilityNodeInfo.ACTION_ACCESSIBILITY_FOCUS:
+                    if (mAccessibilityFocusedDay == virtualViewId) {
+                        return false;
+                    }
+                    mAccessibilityFocusedDay = virtualViewId;
+                    mHost.invalidate();
+                    sendAccessibilityEventForDay(virtualViewId, AccessibilityEvent.TYPE_VIEW_ACCESSIBILITY_FOCUSED);
+                    return true;
+                case AccessibilityNodeInfo.ACTION_CLEAR_ACCESSIBILITY_FOCUS:
+                    if (mAccessibilityFocusedDay != virtualViewId) {
+                        return false;
+                    }
+                    mAccessibilityFocusedDay = View.NO_ID;
+                    mHost.invalidate();
+                    sendAccessibilityEventForDay(virtualViewId,
+                            AccessibilityEvent.TYPE_VIEW_ACCESSIBILITY_FOCUS_CLEARED);
+                    return true;
+                case AccessibilityNodeInfo.ACTION_CLICK:
+                    int week = virtualViewId / DAYS_PER_WEEK;
+                    int firstWeek = getFirstVisibleWeek();
+                    if (week < firstWeek || week >= firstWeek + getVisibleWeekCount()) {
+                        return false;
+                    }
+                    long day = getDay(virtualViewId);
+                    if (!CalendarView.this.isEnabled() || !getRow(week).isEnabled(day)) {
+                        return false;
+                    }
+                    mAdapter.onDayTapped(day);
+                    sendAccessibilityEventForDay(virtualViewId, AccessibilityEvent.TYPE_VIEW_CLICKED);
+                    return true;
+                default:
+                    return false;
+            }
         }
 
-        @Override
-        public View getView(int position, View convertView, ViewGroup parent) {
-            WeekView weekView;
-            if (convertView != null) {
-                weekView = (WeekView) convertView;
-            } else {
-                weekView = new WeekView(mContext);
-                AbsListView.LayoutParams params = new AbsListView.LayoutParams(
-                        LayoutParams.WRAP_CONTENT, LayoutParams.WRAP_CONTENT);
-                weekView.setLayoutParams(params);
-                weekView.setClickable(true);
-                weekView.setOnTouchListener(this);
+        private void setHoveredDay(int virtualViewId) {
+            if (mHoveredDay == virtualViewId) {
+                return;
             }
-
-            int selectedWeekDay = (mSelectedWeek == position) ?
-                    mSelectedDate.get(Calendar.DAY_OF_WEEK) : -1;
-            weekView.init(position, selectedWeekDay, mFocusedMonth);
-
-            return weekView;
+            int previousDay = mHoveredDay;
+            mHoveredDay = virtualViewId;
+            sendAccessibilityEventForDay(virtualViewId, AccessibilityEvent.TYPE_VIEW_HOVER_ENTER);
+            sendAccessibilityEventForDay(previousDay, AccessibilityEvent.TYPE_VIEW_HOVER_EXIT);
         }
 
-        public void setFocusMonth(int month) {
-            if (mFocusedMonth == month) {
+        private void sendAccessibilityEventForDay(int virtualViewId, int eventType) {
+            if (virtualViewId == View.NO_ID || mHost.getParent() == null || mAccessibilityManager == null
+                    || !mAccessibilityManager.isEnabled()) {
                 return;
             }
-            mFocusedMonth = month;
-            notifyDataSetChanged();
+            AccessibilityEvent event = AccessibilityEvent.obtain(eventType);
+            event.setPackageName(mContext.getPackageName());
+            event.setClassName(mHost.getClass().getName());
+            event.setSource(mHost, virtualViewId);
+            event.setEnabled(mHost.isEnabled());
+            event.setContentDescription(mResources.getDayDescription(getDay(virtualViewId)));
+            mHost.getParent().requestSendAccessibilityEvent(mHost, event);
         }
 
-        @Override
-        public boolean onTouch(View v, MotionEvent event) {
-            if (mListView.isEnabled() && mGestureDetector.onTouchEvent(event)) {
-                WeekView weekView = (WeekView) v;
-                if (!weekView.getDayFromLocation(event.getX(), mTempDate)) {
-                    return true;
+        private int getDayFromLocation(float x, float y) {
+            int firstWeek = getFirstVisibleWeek();
+            for (int week = firstWeek, end = firstWeek + getVisibleWeekCount(); week < end; week++) {
+                WeekRow row = getRow(week);
+                row.getCellBounds(0, mTempRect);
+                int top = getRowTop(week);
+                if (y < top || y >= top + mTempRect.height()) {
+                    continue;
                 }
-                if (mTempDate.before(mMinDate) || mTempDate.after(mMaxDate)) {
-                    return true;
+                long day = row.getDayFromLocation(x);
+                if (day == WeekIndex.NO_DAY || !mWeekIndex.isInRange(day)) {
+                    return View.NO_ID;
                 }
-                mTempDate.set(Calendar.HOUR_OF_DAY, mSelectedDate.get(Calendar.HOUR_OF_DAY));
-                mTempDate.set(Calendar.MINUTE, mSelectedDate.get(Calendar.MINUTE));
-
-                onDateTapped(mTempDate);
-
-                return true;
+                return week * DAYS_PER_WEEK + (int) (day - row.getFirstDay());
             }
-            return false;
-        }
-
-        private void onDateTapped(Calendar day) {
-            setSelectedDay(day, true);
-            setMonthDisplayed(day, false);
+            return View.NO_ID;
         }
 
-        class CalendarGestureListener extends GestureDetector.SimpleOnGestureListener {
-            @Override
-            public boolean onSingleTapUp(MotionEvent e) {
-                return true;
-            }
+        private long getDay(int virtualViewId) {
+            return mWeekIndex.getFirstDayOf(virtualViewId / DAYS_PER_WEEK) + virtualViewId % DAYS_PER_WEEK;
         }
     }
 
     private class WeekView extends View {
 
-        private final Rect mTempRect = new Rect();
-        private final Paint mDrawPaint = new Paint();
-
-        private Calendar mFirstDay;
+        private static final int NO_CELL = Integer.MIN_VALUE;
 
-        private String[] mDayNumbers;
-        private boolean[] mFocusDay;
+        private final WeekRow mRow = new WeekRow();
+        private final Paint mDrawPaint = createDrawPaint();
+        private final Rect mTempRect = new Rect();
+        private final int[] mLocationOnScreen = new int[2];
 
-        private int mMonthOfFirstWeekDay = -1;
-        private int mLastWeekDayMonth = -1;
-        private int mWeek = -1;
-        private int mWidth;
         private int mHeight;
-        private boolean mHasSelectedDay = false;
-        private int mSelectedDay = -1;
-        private int mNumCells;
-        private int mSelectedLeft = -1;
-        private int mSelectedRight = -1;
+        private int mHoveredCell = NO_CELL;
+        private int mAccessibilityFocusedCell = NO_CELL;
+
+        private AccessibilityNodeProvider mNodeProvider;
 
-        public WeekView(Context context) {
+        public WeekView(Context context, int height) {
             super(context);
 
-            mHeight = (mListView.getHeight() - mListView.getPaddingTop() -
-                    mListView.getPaddingBottom()) / mShownWeekCount;
-            setPaintProperties();
+            mHeight = height;
+            mRow.setSize(0, mHeight);
         }
 
         public void init(int weekNumber, int selectedWeekDay, int focusedMonth) {
-            mSelectedDay = selectedWeekDay;
-            mHasSelectedDay = mSelectedDay != -1;
-            mNumCells = mShowWeekNumber ? DAYS_PER_WEEK + 1 : DAYS_PER_WEEK;
-            mWeek = weekNumber;
-            mTempDate.setTimeInMillis(mMinDate.getTimeInMillis());
-
-            mTempDate.add(Calendar.WEEK_OF_YEAR, mWeek);
-            mTempDate.setFirstDayOfWeek(mFirstDayOfWeek);
-
-            mDayNumbers = new String[mNumCells];
-            mFocusDay = new boolean[mNumCells];
-
-            int i = 0;
-            String contentDesc = "";
-            if (mShowWeekNumber) {
-                mDayNumbers[0] = Integer.toString(mTempDate.get(Calendar.WEEK_OF_YEAR));
-                contentDesc = mDayNumbers[0] + ": ";
-                i++;
+            if (mRow.getWeek() != weekNumber) {
+                mHoveredCell = NO_CELL;
+                mAccessibilityFocusedCell = NO_CELL;
             }
+            mRow.init(weekNumber, selectedWeekDay, focusedMonth);
+        }
 
-            mTempDate.add(Calendar.DAY_OF_MONTH, mFirstDayOfWeek - mTempDate.get(Calendar.DAY_OF_WEEK));
+        public void setSelectedWeekDay(int selectedWeekDay) {
+            mRow.setSelectedWeekDay(selectedWeekDay);
+            invalidate();
+        }
 
-            mFirstDay = (Calendar) mTempDate.clone();
-            mMonthOfFirstWeekDay = mTempDate.get(Calendar.MONTH);
+        public void setFocusedMonth(int focusedMonth) {
+            mRow.setFocusedMonth(focusedMonth);
+            invalidate();
+        }
 
-            int d = 0;
-            for (; i < mNumCells; i++) {
-                mFocusDay[i] = mTempDate.get(Calendar.MONTH) == focusedMonth;
+        public void updateDecorations() {
+            mRow.updateDecorations();
+            invalidate();
+        }
 
-                if (mTempDate.before(mMinDate) || mTempDate.after(mMaxDate)) {
-                    mDayNumbers[i] = "";
-                } else {
-                    mDayNumbers[i] = Integer.toString(mTempDate.get(Calendar.DAY_OF_MONTH));
-                    contentDesc = contentDesc +
-                            mDayFormatLocalized.format(mFirstDay.getTime()) +
-                            (i != mNumCells - 1 ? ", " : "");
-                    mFirstDay.add(Calendar.DAY_OF_YEAR, 1);
-                    d++;
-                }
-                mTempDate.add(Calendar.DAY_OF_MONTH, 1);
+        @Override
+        public AccessibilityNodeProvider getAccessibilityNodeProvider() {
+            if (mNodeProvider == null) {
+                mNodeProvider = new WeekNodeProvider();
             }
-            mFirstDay.add(Calendar.DAY_OF_YEAR, -d);
+            return mNodeProvider;
+        }
 
-            if (mTempDate.get(Calendar.DAY_OF_MONTH) == 1) {
-                mTempDate.add(Calendar.DAY_OF_MONTH, -1);
+        @Override
+        public boolean dispatchHoverEvent(MotionEvent event) {
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN || mAccessibilityManager == null
+                    || !mAccessibilityManager.isTouchExplorationEnabled()) {
+                return super.dispatchHoverEvent(event);
+            }
+            switch (event.getActionMasked()) {
+                case MotionEvent.ACTION_HOVER_ENTER:
+                case MotionEvent.ACTION_HOVER_MOVE:
+                    setHoveredCell(getCellFromLocation(event.getX()));
+                    return true;
+                case MotionEvent.ACTION_HOVER_EXIT:
+                    setHoveredCell(NO_CELL);
+                    return true;
+                default:
+                    return super.dispatchHoverEvent(event);
             }
-            mLastWeekDayMonth = mTempDate.get(Calendar.MONTH);
-
-            setContentDescription(contentDesc);
-
-            updateSelectionPositions();
         }
 
-        private void setPaintProperties() {
-            mDrawPaint.setAntiAlias(true);
-            mDrawPaint.setStyle(Style.FILL);
-            mDrawPaint.setTextSize(mDateTextSize);
-            mDrawPaint.setTextAlign(Align.CENTER);
+        private void setHoveredCell(int cell) {
+            if (mHoveredCell == cell) {
+                return;
+            }
+            int previousCell = mHoveredCell;
+            mHoveredCell = cell;
+            sendAccessibilityEventForCell(cell, AccessibilityEvent.TYPE_VIEW_HOVER_ENTER);
+            sendAccessibilityEventForCell(previousCell, AccessibilityEvent.TYPE_VIEW_HOVER_EXIT);
         }
 
-        public int getMonthOfFirstWeekDay() {
-            return mMonthOfFirstWeekDay;
+        @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+        private void sendAccessibilityEventForCell(int cell, int eventType) {
+            if (cell == NO_CELL || getParent() == null || mAccessibilityManager == null
+                    || !mAccessibilityManager.isEnabled()) {
+                return;
+            }
+            AccessibilityEvent event = AccessibilityEvent.obtain(eventType);
+            event.setPackageName(mContext.getPackageName());
+            event.setClassName(WeekView.class.getName());
+            event.setSource(this, cell);
+            event.setEnabled(isEnabled());
+            event.setContentDescription(mResources.getDayDescription(mRow.getFirstDay() + cell));
+            getParent().requestSendAccessibilityEvent(this, event);
         }
 
-        public int getMonthOfLastWeekDay() {
-            return mLastWeekDayMonth;
+        private int getCellFromLocation(float x) {
+            long day = getDayFromLocation(x);
+            if (day == WeekIndex.NO_DAY || !mWeekIndex.isInRange(day)) {
+                return NO_CELL;
+            }
+            return (int) (day - mRow.getFirstDay());
         }
 
-        public Calendar getFirstDay() {
-            return mFirstDay;
+        public long getDayFromLocation(float x) {
+            return mRow.getDayFromLocation(x);
         }
 
-        public boolean getDayFromLocation(float x, Calendar outCalendar) {
-            int dayStart = mShowWeekNumber ? mWidth / mNumCells : 0;
-            if (x < dayStart || x > mWidth) {
-                outCalendar.clear();
-                return false;
-            }
-
-            int dayPosition = (int) ((x - dayStart) * DAYS_PER_WEEK / (mWidth - dayStart));
-            outCalendar.setTimeInMillis(mFirstDay.getTimeInMillis());
-            outCalendar.add(Calendar.DAY_OF_MONTH, dayPosition);
-            return true;
+        public boolean isDayEnabled(long day) {
+            return mRow.isEnabled(day);
         }
 
         @Override
         protected void onDraw(Canvas canvas) {
-            drawBackground(canvas);
-            drawWeekNumbers(canvas);
-            drawWeekSeparators(canvas);
-            drawSelectedDateArrows(canvas);
+            long startNanos = beginSection(METRIC_DRAW);
+            mRow.draw(canvas, mDrawPaint);
+            endSection(METRIC_DRAW, startNanos);
         }
 
-        private void drawBackground(Canvas canvas) {
-            if (!mHasSelectedDay) {
-                return;
-            }
+        @Override
+        protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+            mRow.setSize(w, mHeight);
+        }
 
-            mDrawPaint.setColor(mSelectedWeekBackgroundColor);
+        @Override
+        protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+            setMeasuredDimension(MeasureSpec.getSize(widthMeasureSpec), mHeight);
+        }
 
-            mTempRect.top = mWeekSeparatorLineWidth;
-            mTempRect.bottom = mHeight;
-            mTempRect.left = 0;
-            mTempRect.right = mSelectedLeft;
-            canvas.drawRect(mTempRect, mDrawPaint);
+        /**
+         * Exposes each day of the week as a virtual view. The node texts are
+         * only formatted when an accessibility service queries them.
+         */
+        @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+        private class WeekNodeProvider extends AccessibilityNodeProvider {
 
-            mTempRect.left = mSelectedRight;
-            mTempRect.right = mWidth;
-            canvas.drawRect(mTempRect, mDrawPaint);
-        }
+            @Override
+            public AccessibilityNodeInfo createAccessibilityNodeInfo(int virtualViewId) {
+                if (virtualViewId == View.NO_ID) {
+                    AccessibilityNodeInfo info = AccessibilityNodeInfo.obtain(WeekView.this);
+                    onInitializeAccessibilityNodeInfo(info);
+                    for (int cell = 0; cell < DAYS_PER_WEEK; cell++) {
+                        if (mWeekIndex.isInRange(mRow.getFirstDay() + cell)) {
+                            info.addChild(WeekView.this, cell);
+                        }
+                    }
+                    return info;
+                }
+                if (virtualViewId < 0 || virtualViewId >= DAYS_PER_WEEK) {
+                    return null;
+                }
 
-        private void drawWeekNumbers(Canvas canvas) {
-            int i = 0;
-            int divisor = 2 * mNumCells;
-            int y = (int) ((mHeight + mDrawPaint.getTextSize()) / 2) - mWeekSeparatorLineWidth;
-            if (mShowWeekNumber) {
-                mDrawPaint.setColor(mHasSelectedDay ? mSelectedWeekNumberColor : mWeekNumberColor);
-                mDrawPaint.setFakeBoldText(false);
-                int x = mWidth / divisor;
-                canvas.drawText(mDayNumbers[0], x, y, mDrawPaint);
-                i++;
-            }
+                long day = mRow.getFirstDay() + virtualViewId;
+                AccessibilityNodeInfo info = AccessibilityNodeInfo.obtain();
+                info.setSource(WeekView.this, virtualViewId);
+                info.setParent(WeekView.this);
+                info.setPackageName(mContext.getPackageName());
+                info.setClassName(WeekView.class.getName());
+                info.setContentDescription(mResources.getDayDescription(day));
+                info.setEnabled(isEnabled() && mRow.isEnabled(day));
+                info.setSelected(mRow.isSelected(day));
+                info.setVisibleToUser(true);
+                info.setClickable(true);
+                info.addAction(AccessibilityNodeInfo.ACTION_CLICK);
+
+                if (mAccessibilityFocusedCell == virtualViewId) {
+                    info.setAccessibilityFocused(true);
+                    info.addAction(AccessibilityNodeInfo.ACTION_CLEAR_ACCESSIBILITY_FOCUS);
+                } else {
+                    info.addAction(AccessibilityNodeInfo.ACTION_ACCESSIBILITY_FOCUS);
+                }
 
-            mDrawPaint.setFakeBoldText(true);
-            for (; i < mNumCells; i++) {
-                mDrawPaint.setColor(mFocusDay[i] ?
-                        mFocusedMonthDateColor : mUnfocusedMonthDateColor);
-                int x = (2 * i + 1) * mWidth / divisor;
-                canvas.drawText(mDayNumbers[i], x, y, mDrawPaint);
+                mRow.getCellBounds(virtualViewId, mTempRect);
+                info.setBoundsInParent(mTempRect);
+                getLocationOnScreen(mLocationOnScreen);
+                mTempRect.offset(mLocationOnScreen[0], mLocationOnScreen[1]);
+                info.setBoundsInScreen(mTempRect);
+                return info;
             }
-        }
 
-        private void drawWeekSeparators(Canvas canvas) {
-            if (mWeek == 0) {
-                return;
+            @Override
+            public boolean performAction(int virtualViewId, int action, Bundle arguments) {
+                if (virtualViewId < 0 || virtualViewId >= DAYS_PER_WEEK) {
+                    return performAccessibilityAction(action, arguments);
+                }
+                switch (action) {
+                    case AccessibilityNodeInfo.ACTION_ACCESSIBILITY_FOCUS:
+                        if (mAccessibilityFocusedCell == virtualViewId) {
+                            return false;
+                        }
+                        mAccessibilityFocusedCell = virtualViewId;
+                        invalidate();
+                        sendAccessibilityEventForCell(virtualViewId,
+                                AccessibilityEvent.TYPE_VIEW_ACCESSIBILITY_FOCUSED);
+                        return true;
+                    case AccessibilityNodeInfo.ACTION_CLEAR_ACCESSIBILITY_FOCUS:
+                        if (mAccessibilityFocusedCell != virtualViewId) {
+                            return false;
+                        }
+                        mAccessibilityFocusedCell = NO_CELL;
+                        invalidate();
+                        sendAccessibilityEventForCell(virtualViewId,
+                                AccessibilityEvent.TYPE_VIEW_ACCESSIBILITY_FOCUS_CLEARED);
+                        return true;
+                    case AccessibilityNodeInfo.ACTION_CLICK:
+                        long day = mRow.getFirstDay() + virtualViewId;
+                        if (!CalendarView.this.isEnabled() || !mRow.isEnabled(day)) {
+                            return false;
+                        }
+                        mAdapter.onDayTapped(day);
+                        sendAccessibilityEventForCell(virtualViewId, AccessibilityEvent.TYPE_VIEW_CLICKED);
+                        return true;
+                    default:
+                        return false;
+                }
             }
+        }
+    }
 
-            mDrawPaint.setColor(mWeekSeparatorLineColor);
-            mDrawPaint.setStrokeWidth(mWeekSeparatorLineWidth);
+    /**
+     * The state of a display drawing the weeks itself: the first day of the first visible week and
+     * the scroll offset from its top, or the first day of the displayed month in the month pager.
+     */
+    private static class DisplayState implements Parcelable {
 
-            canvas.drawLine(0, 0, mWidth, 0, mDrawPaint);
-        }
+        private final long mFirstDay;
+        private final int mOffset;
 
-        private void drawSelectedDateArrows(Canvas canvas) {
-            if (!mHasSelectedDay) {
-                return;
+        public static final Creator<DisplayState> CREATOR = new Creator<DisplayState>() {
+            public DisplayState createFromParcel(Parcel in) {
+                return new DisplayState(in.readLong(), in.readInt());
             }
 
-            mDrawPaint.setColor(mSelectedDateArrowsColor);
-
-            Point a = new Point(mSelectedLeft, mWeekSeparatorLineWidth);
-            Point b = new Point(mSelectedLeft + mSelectedDateArrowWidth,
-                    (mHeight - mWeekSeparatorLineWidth) / 2 + mWeekSeparatorLineWidth);
-            Point c = new Point(mSelectedLeft, mHeight);
+            public DisplayState[] newArray(int size) {
+                return new DisplayState[size];
+            }
+        };
 
-            for (int i = 0; i < 2; i++) {
-                if (i == 1) {
-                    a.x = mSelectedRight;
-                    b.x = mSelectedRight - mSelectedDateArrowWidth;
-                    c.x = mSelectedRight;
-                }
+        private DisplayState(long firstDay, int offset) {
+            mFirstDay = firstDay;
+            mOffset = offset;
+        }
 
-                Path path = new Path();
-                path.moveTo(a.x, a.y);
-                path.lineTo(b.x, b.y);
-                path.lineTo(c.x, c.y);
-                path.lineTo(a.x, a.y);
-                path.close();
-                canvas.drawPath(path, mDrawPaint);
-            }
+        public long getFirstDay() {
+            return mFirstDay;
         }
 
-        @Override
-        protected void onSizeChanged(int w, int h, int oldw, int oldh) {
-            mWidth = w;
-            updateSelectionPositions();
+        /**
+         * Gets the scroll offset of the display from the top of the week, 0 in the month pager.
+         */
+        public int getOffset() {
+            return mOffset;
         }
 
-        private void updateSelectionPositions() {
-            if (mHasSelectedDay) {
-                int selectedPosition = mSelectedDay - mFirstDayOfWeek;
-                if (selectedPosition < 0) {
-                    selectedPosition += DAYS_PER_WEEK;
-                }
-                if (mShowWeekNumber) {
-                    selectedPosition++;
-                }
-                mSelectedLeft = selectedPosition * mWidth / mNumCells;
-                mSelectedRight = (selectedPosition + 1) * mWidth / mNumCells;
-            }
+        @Override
+        public int describeContents() {
+            return 0;
         }
 
         @Override
-        protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-            setMeasuredDimension(MeasureSpec.getSize(widthMeasureSpec), mHeight);
+        public void writeToParcel(Parcel dest, int flags) {
+            dest.writeLong(mFirstDay);
+            dest.writeInt(mOffset);
         }
     }
 
@@ -1218,7 +4209,8 @@ public class CalendarView extends FrameLayout {
 
         private SavedState(Parcel in) {
             super(in);
-            mListState = in.readParcelable(null);
+            // The state of the canvas displays is a class of the library
+            mListState = in.readParcelable(CalendarView.class.getClassLoader());
             mSelectedDate = in.readLong();
             mFocusedDate = in.readLong();
         }
@@ -0,0 +1,179 @@
+package com.n1k0lai.calendarwidget;
+
+import java.util.Arrays;
+import java.util.Calendar;
+
+/**
+ * This class holds the decorations drawn by the {@link CalendarView} below the day numbers,
+ * e.g. event dots or busy ranges. Each decoration covers a range of days and carries
+ * application defined flags, every flag set on a day is drawn as a dot with the color of
+ * the flag, see {@link CalendarView#setDecorationColors(int...)}.
+ * <p>
+ * The decorations are kept in an interval index keyed by epoch day which is rebuilt on the
+ * first lookup after a change, so looking up the days of a week stays logarithmic in the
+ * number of decorations. The decorations may be read on a background thread while the
+ * application modifies them.
+ */
+public final class DayDecorations {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] mStartDays = new long[INITIAL_CAPACITY];
+    private long[] mEndDays = new long[INITIAL_CAPACITY];
+    private int[] mFlags = new int[INITIAL_CAPACITY];
+    private long[] mMaxEndDays = new long[INITIAL_CAPACITY];
+    private int mSize;
+    private boolean mIndexed = true;
+
+    /**
+     * Adds a decoration to a single day.
+     *
+     * @param day The decorated day in the time zone of the calendar.
+     * @param flags The flags of the decoration.
+     */
+    public void add(Calendar day, int flags) {
+        long epochDay = WeekIndex.toEpochDay(day);
+        add(epochDay, epochDay, flags);
+    }
+
+    /**
+     * Adds a decoration to a range of days.
+     *
+     * @param start The first decorated day in the time zone of the calendar.
+     * @param end The last decorated day, inclusive, in the time zone of the calendar.
+     * @param flags The flags of the decoration.
+     */
+    public void add(Calendar start, Calendar end, int flags) {
+        add(WeekIndex.toEpochDay(start), WeekIndex.toEpochDay(end), flags);
+    }
+
+    /**
+     * Removes all the decorations.
+     */
+    public synchronized void clear() {
+        mSize = 0;
+        mIndexed = true;
+    }
+
+    /**
+     * Gets the number of decorations.
+     *
+     * @return The number of decorations.
+     */
+    public synchronized int size() {
+        return mSize;
+    }
+
+    synchronized void add(long startDay, long endDay, int flags) {
+        if (endDay < startDay) {
+            throw new IllegalArgumentException("End day cannot be before start day.");
+        }
+        if (flags == 0) {
+            return;
+        }
+        if (mSize == mStartDays.length) {
+            int capacity = mSize * 2;
+            mStartDays = Arrays.copyOf(mStartDays, capacity);
+            mEndDays = Arrays.copyOf(mEndDays, capacity);
+            mFlags = Arrays.copyOf(mFlags, capacity);
+            mMaxEndDays = new long[capacity];
+        }
+        mStartDays[mSize] = startDay;
+        mEndDays[mSize] = endDay;
+        mFlags[mSize] = flags;
+        mSize++;
+        mIndexed = false;
+    }
+
+    /**
+     * Merges the flags of the decorations overlapping the given days into the given array.
+     *
+     * @param firstDay The first epoch day.
+     * @param lastDay The last epoch day, inclusive.
+     * @param outFlags Receives the flags of each day, starting at <code>offset</code>.
+     * @param offset The index receiving the flags of the first day.
+     */
+    synchronized void getFlags(long firstDay, long lastDay, int[] outFlags, int offset) {
+        if (!mIndexed) {
+            sort(0, mSize - 1);
+            buildIndex(0, mSize);
+            mIndexed = true;
+        }
+        collectFlags(0, mSize, firstDay, lastDay, outFlags, offset);
+    }
+
+    /**
+     * The index is an implicit balanced tree over the decorations sorted by start day where
+     * the middle of each range is the root of the range and stores the maximal end day of it.
+     */
+    private long buildIndex(int from, int to) {
+        if (from >= to) {
+            return Long.MIN_VALUE;
+        }
+        int middle = (from + to) >>> 1;
+        long maxEndDay = Math.max(mEndDays[middle],
+                Math.max(buildIndex(from, middle), buildIndex(middle + 1, to)));
+        mMaxEndDays[middle] = maxEndDay;
+        return maxEndDay;
+    }
+
+    private void collectFlags(int from, int to, long firstDay, long lastDay, int[] outFlags, int offset) {
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            if (mMaxEndDays[middle] < firstDay) {
+                return;
+            }
+            collectFlags(from, middle, firstDay, lastDay, outFlags, offset);
+            if (mStartDays[middle] > lastDay) {
+                return;
+            }
+            if (mEndDays[middle] >= firstDay) {
+                long start = Math.max(firstDay, mStartDays[middle]);
+                long end = Math.min(lastDay, mEndDays[middle]);
+                for (long day = start; day <= end; day++) {
+                    outFlags[offset + (int) (day - firstDay)] |= mFlags[middle];
+                }
+            }
+            from = middle + 1;
+        }
+    }
+
+    private void sort(int low, int high) {
+        while (low < high) {
+            long pivot = mStartDays[(low + high) >>> 1];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (mStartDays[i] < pivot) {
+                    i++;
+                }
+                while (mStartDays[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            // Recurse into the smaller part to keep the stack shallow
+            if (j - low < high - i) {
+                sort(low, j);
+                low = i;
+            } else {
+                sort(i, high);
+                high = j;
+            }
+        }
+    }
+
+    private void swap(int i, int j) {
+        long startDay = mStartDays[i];
+        mStartDays[i] = mStartDays[j];
+        mStartDays[j] = startDay;
+        long endDay = mEndDays[i];
+        mEndDays[i] = mEndDays[j];
+        mEndDays[j] = endDay;
+        int flags = mFlags[i];
+        mFlags[i] = mFlags[j];
+        mFlags[j] = flags;
+    }
+}
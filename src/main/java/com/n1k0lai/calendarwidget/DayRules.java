@@ -0,0 +1,343 @@
+package com.n1k0lai.calendarwidget;
+
+import java.util.Arrays;
+import java.util.Calendar;
+
+/**
+ * This class holds the rules disabling days of the {@link CalendarView}, e.g. weekends, holidays,
+ * blackout ranges or recurring days. A disabled day is dimmed and cannot be tapped.
+ * <p>
+ * The rules are compiled on the first lookup after a change: the days of week into a mask, the
+ * ranges into sorted and merged arrays searched by bisection and the single days into a hash set,
+ * so evaluating the days of a week does not depend on the number of days and ranges. The rules
+ * may be read on a background thread while the application modifies them.
+ */
+public final class DayRules {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final long EMPTY_SLOT = Long.MIN_VALUE;
+    private static final int ALL_DAYS_MASK = (1 << WeekIndex.DAYS_PER_WEEK) - 1;
+
+    private int mDisabledDaysOfWeek;
+    private int mDisabledDaysOfMonth;
+    private final int[] mDisabledDaysOfYear = new int[12];
+
+    private long[] mDays = new long[INITIAL_CAPACITY];
+    private int mDayCount;
+    private long[] mRangeStarts = new long[INITIAL_CAPACITY];
+    private long[] mRangeEnds = new long[INITIAL_CAPACITY];
+    private int mRangeCount;
+    private long[] mPatternStarts = new long[0];
+    private int[] mPatternIntervals = new int[0];
+
+    private boolean mCompiled = true;
+    private long[] mDaySlots = new long[0];
+
+    /**
+     * Disables the given days of every week.
+     *
+     * @param daysOfWeek The days of week, e.g. {@link Calendar#SATURDAY} and {@link Calendar#SUNDAY}.
+     */
+    public synchronized void disableDaysOfWeek(int... daysOfWeek) {
+        for (int dayOfWeek : daysOfWeek) {
+            if (dayOfWeek < Calendar.SUNDAY || dayOfWeek > Calendar.SATURDAY) {
+                throw new IllegalArgumentException("Invalid day of week: " + dayOfWeek);
+            }
+            mDisabledDaysOfWeek |= 1 << dayOfWeek;
+        }
+    }
+
+    /**
+     * Disables the given day of every month.
+     *
+     * @param dayOfMonth The day of the month [1-31].
+     */
+    public synchronized void disableDayOfMonth(int dayOfMonth) {
+        if (dayOfMonth < 1 || dayOfMonth > 31) {
+            throw new IllegalArgumentException("Invalid day of month: " + dayOfMonth);
+        }
+        mDisabledDaysOfMonth |= 1 << dayOfMonth;
+    }
+
+    /**
+     * Disables the given day of every year, e.g. a fixed holiday.
+     *
+     * @param month The month [0-11].
+     * @param dayOfMonth The day of the month [1-31].
+     */
+    public synchronized void disableDayOfYear(int month, int dayOfMonth) {
+        if (month < Calendar.JANUARY || month > Calendar.DECEMBER || dayOfMonth < 1 || dayOfMonth > 31) {
+            throw new IllegalArgumentException("Invalid day of year: " + month + "/" + dayOfMonth);
+        }
+        mDisabledDaysOfYear[month] |= 1 << dayOfMonth;
+    }
+
+    /**
+     * Disables a single day, e.g. a holiday.
+     *
+     * @param day The disabled day in the time zone of the calendar.
+     */
+    public void disable(Calendar day) {
+        disable(WeekIndex.toEpochDay(day));
+    }
+
+    /**
+     * Disables a range of days, e.g. a blackout period.
+     *
+     * @param start The first disabled day in the time zone of the calendar.
+     * @param end The last disabled day, inclusive, in the time zone of the calendar.
+     */
+    public void disable(Calendar start, Calendar end) {
+        disable(WeekIndex.toEpochDay(start), WeekIndex.toEpochDay(end));
+    }
+
+    /**
+     * Disables a day every given number of days from the given day on, e.g. every other
+     * Monday with an interval of 14 days.
+     *
+     * @param start The first disabled day in the time zone of the calendar.
+     * @param intervalDays The number of days between two disabled days.
+     */
+    public void disableEvery(Calendar start, int intervalDays) {
+        disableEvery(WeekIndex.toEpochDay(start), intervalDays);
+    }
+
+    /**
+     * Removes all the rules.
+     */
+    public synchronized void clear() {
+        mDisabledDaysOfWeek = 0;
+        mDisabledDaysOfMonth = 0;
+        Arrays.fill(mDisabledDaysOfYear, 0);
+        mDayCount = 0;
+        mRangeCount = 0;
+        mPatternStarts = new long[0];
+        mPatternIntervals = new int[0];
+        mCompiled = false;
+    }
+
+    /**
+     * Gets whether a day is enabled by the rules.
+     *
+     * @param day The day in the time zone of the calendar.
+     * @return True if no rule disables the day.
+     */
+    public boolean isEnabled(Calendar day) {
+        return (getEnabledMask(WeekIndex.toEpochDay(day)) & 1) != 0;
+    }
+
+    synchronized void disable(long day) {
+        if (mDayCount == mDays.length) {
+            mDays = Arrays.copyOf(mDays, mDayCount * 2);
+        }
+        mDays[mDayCount++] = day;
+        mCompiled = false;
+    }
+
+    synchronized void disable(long startDay, long endDay) {
+        if (endDay < startDay) {
+            throw new IllegalArgumentException("End day cannot be before start day.");
+        }
+        if (mRangeCount == mRangeStarts.length) {
+            mRangeStarts = Arrays.copyOf(mRangeStarts, mRangeCount * 2);
+            mRangeEnds = Arrays.copyOf(mRangeEnds, mRangeCount * 2);
+        }
+        mRangeStarts[mRangeCount] = startDay;
+        mRangeEnds[mRangeCount] = endDay;
+        mRangeCount++;
+        mCompiled = false;
+    }
+
+    synchronized void disableEvery(long startDay, int intervalDays) {
+        if (intervalDays <= 0) {
+            throw new IllegalArgumentException("Interval must be positive.");
+        }
+        int count = mPatternStarts.length;
+        mPatternStarts = Arrays.copyOf(mPatternStarts, count + 1);
+        mPatternIntervals = Arrays.copyOf(mPatternIntervals, count + 1);
+        mPatternStarts[count] = startDay;
+        mPatternIntervals[count] = intervalDays;
+    }
+
+    /**
+     * Gets the enabled days of the week starting at the given day, the bit <code>i</code> of
+     * the mask is set if the day <code>firstDay + i</code> is enabled.
+     */
+    synchronized int getEnabledMask(long firstDay) {
+        if (!mCompiled) {
+            compile();
+            mCompiled = true;
+        }
+        int disabled = 0;
+        long lastDay = firstDay + WeekIndex.DAYS_PER_WEEK - 1;
+
+        if (mDisabledDaysOfWeek != 0) {
+            int dayOfWeek = WeekIndex.getDayOfWeek(firstDay);
+            for (int d = 0; d < WeekIndex.DAYS_PER_WEEK; d++) {
+                if ((mDisabledDaysOfWeek & (1 << dayOfWeek)) != 0) {
+                    disabled |= 1 << d;
+                }
+                dayOfWeek = dayOfWeek == Calendar.SATURDAY ? Calendar.SUNDAY : dayOfWeek + 1;
+            }
+        }
+
+        if (mDisabledDaysOfMonth != 0 || hasDisabledDaysOfYear()) {
+            disabled |= getDisabledDatesMask(firstDay);
+        }
+
+        for (int i = findFirstRange(firstDay); i < mRangeCount && mRangeStarts[i] <= lastDay; i++) {
+            int from = (int) (Math.max(mRangeStarts[i], firstDay) - firstDay);
+            int to = (int) (Math.min(mRangeEnds[i], lastDay) - firstDay);
+            disabled |= ((1 << (to - from + 1)) - 1) << from;
+        }
+
+        if (mDayCount != 0) {
+            for (int d = 0; d < WeekIndex.DAYS_PER_WEEK; d++) {
+                if (containsDay(firstDay + d)) {
+                    disabled |= 1 << d;
+                }
+            }
+        }
+
+        for (int i = 0; i < mPatternStarts.length; i++) {
+            long start = mPatternStarts[i];
+            int interval = mPatternIntervals[i];
+            long offset = start >= firstDay ? start - firstDay
+                    : (interval - (firstDay - start) % interval) % interval;
+            for (; offset < WeekIndex.DAYS_PER_WEEK; offset += interval) {
+                disabled |= 1 << offset;
+            }
+        }
+
+        return ~disabled & ALL_DAYS_MASK;
+    }
+
+    private boolean hasDisabledDaysOfYear() {
+        for (int daysOfMonth : mDisabledDaysOfYear) {
+            if (daysOfMonth != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int getDisabledDatesMask(long firstDay) {
+        int disabled = 0;
+        int year = WeekIndex.getYear(firstDay);
+        int month = WeekIndex.getMonth(firstDay);
+        int dayOfMonth = WeekIndex.getDayOfMonth(firstDay);
+        int monthLength = WeekIndex.getMonthLength(year, month);
+        for (int d = 0; d < WeekIndex.DAYS_PER_WEEK; d++, dayOfMonth++) {
+            if (dayOfMonth > monthLength) {
+                dayOfMonth = 1;
+                if (++month > Calendar.DECEMBER) {
+                    month = Calendar.JANUARY;
+                    year++;
+                }
+                monthLength = WeekIndex.getMonthLength(year, month);
+            }
+            int dayBit = 1 << dayOfMonth;
+            if ((mDisabledDaysOfMonth & dayBit) != 0 || (mDisabledDaysOfYear[month] & dayBit) != 0) {
+                disabled |= 1 << d;
+            }
+        }
+        return disabled;
+    }
+
+    /**
+     * Sorts and merges the ranges and hashes the single days.
+     */
+    private void compile() {
+        sortRanges(0, mRangeCount - 1);
+        int merged = 0;
+        for (int i = 0; i < mRangeCount; i++) {
+            if (merged > 0 && mRangeStarts[i] <= mRangeEnds[merged - 1] + 1) {
+                mRangeEnds[merged - 1] = Math.max(mRangeEnds[merged - 1], mRangeEnds[i]);
+            } else {
+                mRangeStarts[merged] = mRangeStarts[i];
+                mRangeEnds[merged] = mRangeEnds[i];
+                merged++;
+            }
+        }
+        mRangeCount = merged;
+
+        int capacity = Integer.highestOneBit(Math.max(mDayCount, 1) * 2) * 2;
+        mDaySlots = new long[capacity];
+        Arrays.fill(mDaySlots, EMPTY_SLOT);
+        for (int i = 0; i < mDayCount; i++) {
+            int slot = hash(mDays[i]) & (capacity - 1);
+            while (mDaySlots[slot] != EMPTY_SLOT && mDaySlots[slot] != mDays[i]) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            mDaySlots[slot] = mDays[i];
+        }
+    }
+
+    private boolean containsDay(long day) {
+        int mask = mDaySlots.length - 1;
+        for (int slot = hash(day) & mask; mDaySlots[slot] != EMPTY_SLOT; slot = (slot + 1) & mask) {
+            if (mDaySlots[slot] == day) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int hash(long day) {
+        long h = day * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Gets the index of the first range ending on or after the given day.
+     */
+    private int findFirstRange(long day) {
+        int low = 0;
+        int high = mRangeCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (mRangeEnds[middle] < day) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private void sortRanges(int low, int high) {
+        while (low < high) {
+            long pivot = mRangeStarts[(low + high) >>> 1];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (mRangeStarts[i] < pivot) {
+                    i++;
+                }
+                while (mRangeStarts[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swapRanges(i++, j--);
+                }
+            }
+            // Recurse into the smaller part to keep the stack shallow
+            if (j - low < high - i) {
+                sortRanges(low, j);
+                low = i;
+            } else {
+                sortRanges(i, high);
+                high = j;
+            }
+        }
+    }
+
+    private void swapRanges(int i, int j) {
+        long start = mRangeStarts[i];
+        mRangeStarts[i] = mRangeStarts[j];
+        mRangeStarts[j] = start;
+        long end = mRangeEnds[i];
+        mRangeEnds[i] = mRangeEnds[j];
+        mRangeEnds[j] = end;
+    }
+}
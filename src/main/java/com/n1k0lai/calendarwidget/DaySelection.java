@@ -0,0 +1,232 @@
+package com.n1k0lai.calendarwidget;
+
+import java.util.Arrays;
+
+/**
+ * This class holds the days selected in the multiple and range selection modes of the
+ * {@link CalendarView} as a bitset indexed by the number of days since the first day of the
+ * range. The bits are stored in pages which are allocated when a day of the page is first
+ * selected, so thousands of days selected over years take a few kilobytes, and the selected
+ * days of a week are read as a 7-bit mask from at most two words.
+ */
+final class DaySelection {
+
+    private static final int WORD_SHIFT = 6;
+    private static final int WORD_MASK = (1 << WORD_SHIFT) - 1;
+    private static final int PAGE_SHIFT = 6;
+    private static final int WORDS_PER_PAGE = 1 << PAGE_SHIFT;
+    private static final int WEEK_MASK = (1 << WeekIndex.DAYS_PER_WEEK) - 1;
+
+    private final long mOriginDay;
+    private long[][] mPages = new long[0][];
+    private int mCount;
+
+    /**
+     * Creates a new empty selection.
+     *
+     * @param originDay The first epoch day which can be selected.
+     */
+    DaySelection(long originDay) {
+        mOriginDay = originDay;
+    }
+
+    public long getOriginDay() {
+        return mOriginDay;
+    }
+
+    /**
+     * Gets the number of selected days.
+     */
+    public int size() {
+        return mCount;
+    }
+
+    public boolean contains(long day) {
+        long index = day - mOriginDay;
+        return index >= 0 && (getWord(index >>> WORD_SHIFT) & (1L << (index & WORD_MASK))) != 0;
+    }
+
+    /**
+     * Gets the selected days of the week starting at the given day, the bit <code>i</code> of
+     * the mask is set if the day <code>firstDay + i</code> is selected.
+     */
+    public int getWeekMask(long firstDay) {
+        long index = firstDay - mOriginDay;
+        long bits;
+        if (index >= 0) {
+            long wordIndex = index >>> WORD_SHIFT;
+            int shift = (int) (index & WORD_MASK);
+            bits = getWord(wordIndex) >>> shift;
+            if (shift > Long.SIZE - WeekIndex.DAYS_PER_WEEK) {
+                bits |= getWord(wordIndex + 1) << (Long.SIZE - shift);
+            }
+        } else if (index > -WeekIndex.DAYS_PER_WEEK) {
+            bits = getWord(0) << -index;
+        } else {
+            bits = 0;
+        }
+        return (int) bits & WEEK_MASK;
+    }
+
+    /**
+     * Selects or deselects a range of days. The days before the origin are ignored.
+     *
+     * @param firstDay The first epoch day.
+     * @param lastDay The last epoch day, inclusive.
+     * @param selected True to select the days, false to deselect them.
+     * @param outChanges Receives the days which actually changed or null.
+     */
+    public void set(long firstDay, long lastDay, boolean selected, DayRanges outChanges) {
+        long firstIndex = Math.max(firstDay - mOriginDay, 0);
+        long lastIndex = lastDay - mOriginDay;
+        if (lastIndex < firstIndex) {
+            return;
+        }
+        long lastWordIndex = lastIndex >>> WORD_SHIFT;
+        for (long wordIndex = firstIndex >>> WORD_SHIFT; wordIndex <= lastWordIndex; wordIndex++) {
+            long mask = -1L;
+            if (wordIndex == firstIndex >>> WORD_SHIFT) {
+                mask &= -1L << (firstIndex & WORD_MASK);
+            }
+            if (wordIndex == lastWordIndex) {
+                mask &= -1L >>> (WORD_MASK - (lastIndex & WORD_MASK));
+            }
+            long[] page = getPage(wordIndex, selected);
+            if (page == null) {
+                continue;
+            }
+            int offset = (int) (wordIndex & (WORDS_PER_PAGE - 1));
+            long word = page[offset];
+            long changed = selected ? ~word & mask : word & mask;
+            if (changed == 0) {
+                continue;
+            }
+            page[offset] = word ^ changed;
+            mCount += selected ? Long.bitCount(changed) : -Long.bitCount(changed);
+            if (outChanges != null) {
+                addRuns(outChanges, mOriginDay + (wordIndex << WORD_SHIFT), changed);
+            }
+        }
+    }
+
+    /**
+     * Deselects all the days.
+     *
+     * @param outChanges Receives the days which were selected or null.
+     */
+    public void clear(DayRanges outChanges) {
+        if (outChanges != null) {
+            getRanges(outChanges);
+        }
+        mPages = new long[0][];
+        mCount = 0;
+    }
+
+    /**
+     * Gets the selected days as ranges of consecutive days.
+     *
+     * @param outRanges Receives the ranges.
+     */
+    public void getRanges(DayRanges outRanges) {
+        for (int p = 0; p < mPages.length; p++) {
+            long[] page = mPages[p];
+            if (page == null) {
+                continue;
+            }
+            for (int w = 0; w < WORDS_PER_PAGE; w++) {
+                if (page[w] != 0) {
+                    long wordIndex = ((long) p << PAGE_SHIFT) + w;
+                    addRuns(outRanges, mOriginDay + (wordIndex << WORD_SHIFT), page[w]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a selection of the given range with the days of this selection in the range.
+     *
+     * @param firstDay The first epoch day of the range, the origin of the new selection.
+     * @param lastDay The last epoch day of the range, inclusive.
+     */
+    public DaySelection copyRange(long firstDay, long lastDay) {
+        DaySelection selection = new DaySelection(firstDay);
+        DayRanges ranges = new DayRanges();
+        getRanges(ranges);
+        for (int i = 0; i < ranges.size(); i++) {
+            selection.set(ranges.getStart(i), Math.min(ranges.getEnd(i), lastDay), true, null);
+        }
+        return selection;
+    }
+
+    private long getWord(long wordIndex) {
+        long pageIndex = wordIndex >>> PAGE_SHIFT;
+        if (pageIndex >= mPages.length) {
+            return 0;
+        }
+        long[] page = mPages[(int) pageIndex];
+        return page != null ? page[(int) (wordIndex & (WORDS_PER_PAGE - 1))] : 0;
+    }
+
+    private long[] getPage(long wordIndex, boolean create) {
+        int pageIndex = (int) (wordIndex >>> PAGE_SHIFT);
+        if (pageIndex >= mPages.length) {
+            if (!create) {
+                return null;
+            }
+            mPages = Arrays.copyOf(mPages, Math.max(pageIndex + 1, 2 * mPages.length));
+        }
+        long[] page = mPages[pageIndex];
+        if (page == null && create) {
+            page = new long[WORDS_PER_PAGE];
+            mPages[pageIndex] = page;
+        }
+        return page;
+    }
+
+    private static void addRuns(DayRanges outRanges, long firstDay, long bits) {
+        while (bits != 0) {
+            int start = Long.numberOfTrailingZeros(bits);
+            int length = Long.numberOfTrailingZeros(~(bits >>> start));
+            outRanges.add(firstDay + start, firstDay + start + length - 1);
+            bits &= length == Long.SIZE ? 0 : ~(((1L << length) - 1) << start);
+        }
+    }
+
+    /**
+     * A list of ranges of epoch days in increasing order, adjacent ranges are merged.
+     */
+    static final class DayRanges {
+
+        private long[] mDays = new long[8];
+        private int mSize;
+
+        public void add(long startDay, long endDay) {
+            if (mSize > 0 && mDays[2 * mSize - 1] + 1 == startDay) {
+                mDays[2 * mSize - 1] = endDay;
+                return;
+            }
+            if (2 * mSize == mDays.length) {
+                mDays = Arrays.copyOf(mDays, 2 * mDays.length);
+            }
+            mDays[2 * mSize] = startDay;
+            mDays[2 * mSize + 1] = endDay;
+            mSize++;
+        }
+
+        public int size() {
+            return mSize;
+        }
+
+        public long getStart(int i) {
+            return mDays[2 * i];
+        }
+
+        public long getEnd(int i) {
+            return mDays[2 * i + 1];
+        }
+
+        public void clear() {
+            mSize = 0;
+        }
+    }
+}
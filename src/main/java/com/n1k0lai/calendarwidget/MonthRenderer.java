@@ -0,0 +1,554 @@
+package com.n1k0lai.calendarwidget;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Paint.Align;
+import android.util.DisplayMetrics;
+import android.util.LruCache;
+import android.util.TypedValue;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * This class draws the months of the {@link CalendarView} without a view, e.g. into the bitmap
+ * of an app widget or a notification. A month is drawn as the six weeks from the week of its
+ * first day with the same code and the same {@link Style} as the weeks of the view.
+ * <p>
+ * The rendered bitmaps are cached by month, size and selected date. The style is fixed for the
+ * lifetime of a renderer and is not part of the cache keys, another style needs another
+ * renderer; the layout of the weeks is fixed until the cache is invalidated. A selected date
+ * outside of the six weeks of a month does not change its bitmap, so an update which gets the
+ * same bitmap as the previous one can be skipped. The renderer may be used from any thread.
+ */
+public final class MonthRenderer {
+
+    private static final int DAYS_PER_WEEK = WeekIndex.DAYS_PER_WEEK;
+    private static final int WEEK_COUNT = 6;
+
+    private final Style mStyle;
+    private final TimeZone mTimeZone;
+    private final int mMinimalDaysInFirstWeek;
+    private final Paint mPaint = new Paint();
+    private final WeekPainter mPainter = new WeekPainter();
+    private final MonthCache mCache;
+    private final MonthCache.Key mKey = new MonthCache.Key();
+
+    private final int[] mDaysOfMonth = new int[DAYS_PER_WEEK];
+    private final int[] mMonths = new int[DAYS_PER_WEEK];
+    private final int[] mDecorations = new int[DAYS_PER_WEEK];
+
+    private int mFirstDayOfWeek;
+    private boolean mShowWeekNumber = true;
+    private DayDecorations mDayDecorations;
+    private DayRules mDayRules;
+
+    /**
+     * Creates a new renderer.
+     *
+     * @param style The colors and dimensions of the weeks.
+     * @param locale The locale providing the first day of week and the week numbers.
+     * @param zone The time zone of the selected dates.
+     * @param maxCacheKilobytes The maximal size of the cached bitmaps in kilobytes or 0 to disable
+     * the cache.
+     */
+    public MonthRenderer(Style style, Locale locale, TimeZone zone, int maxCacheKilobytes) {
+        Calendar calendar = CalendarResources.get(locale, zone).newCalendar();
+        mStyle = style;
+        mTimeZone = zone;
+        mFirstDayOfWeek = calendar.getFirstDayOfWeek();
+        mMinimalDaysInFirstWeek = calendar.getMinimalDaysInFirstWeek();
+        mCache = maxCacheKilobytes > 0 ? new MonthCache(maxCacheKilobytes) : null;
+
+        mPaint.setAntiAlias(true);
+        mPaint.setStyle(Paint.Style.FILL);
+        mPaint.setTextSize(style.getDateTextSize());
+        mPaint.setTextAlign(Align.CENTER);
+    }
+
+    /**
+     * Gets the style of the weeks.
+     *
+     * @return The style.
+     */
+    public Style getStyle() {
+        return mStyle;
+    }
+
+    /**
+     * Sets the first day of week.
+     *
+     * @param firstDayOfWeek The first day of the week, e.g. {@link Calendar#MONDAY}.
+     */
+    public synchronized void setFirstDayOfWeek(int firstDayOfWeek) {
+        if (mFirstDayOfWeek == firstDayOfWeek) {
+            return;
+        }
+        mFirstDayOfWeek = firstDayOfWeek;
+        invalidate();
+    }
+
+    /**
+     * Gets the first day of week.
+     *
+     * @return The first day of the week, e.g. {@link Calendar#MONDAY}.
+     */
+    public synchronized int getFirstDayOfWeek() {
+        return mFirstDayOfWeek;
+    }
+
+    /**
+     * Sets whether to show the week number.
+     *
+     * @param showWeekNumber True to show the week number.
+     */
+    public synchronized void setShowWeekNumber(boolean showWeekNumber) {
+        if (mShowWeekNumber == showWeekNumber) {
+            return;
+        }
+        mShowWeekNumber = showWeekNumber;
+        invalidate();
+    }
+
+    /**
+     * Gets whether the week number is shown.
+     *
+     * @return True if showing the week number.
+     */
+    public synchronized boolean getShowWeekNumber() {
+        return mShowWeekNumber;
+    }
+
+    /**
+     * Sets the decorations drawn below the day numbers. After modifying the decorations call
+     * {@link #invalidate()} to render the months again.
+     *
+     * @param decorations The decorations or null to draw none.
+     */
+    public synchronized void setDayDecorations(DayDecorations decorations) {
+        mDayDecorations = decorations;
+        invalidate();
+    }
+
+    /**
+     * Sets the rules disabling days. After modifying the rules call {@link #invalidate()} to
+     * render the months again.
+     *
+     * @param rules The rules or null to enable all the days.
+     */
+    public synchronized void setDayRules(DayRules rules) {
+        mDayRules = rules;
+        invalidate();
+    }
+
+    /**
+     * Discards the rendered months, e.g. after the decorations or the rules changed.
+     */
+    public synchronized void invalidate() {
+        if (mCache != null) {
+            mCache.evictAll();
+        }
+    }
+
+    /**
+     * Gets the rendered bitmap of a month without a selected date.
+     *
+     * @see #getBitmap(int, int, int, int, long)
+     */
+    public Bitmap getBitmap(int year, int month, int width, int height) {
+        return renderMonth(year, month, width, height, WeekIndex.NO_DAY);
+    }
+
+    /**
+     * Gets the rendered bitmap of a month, rendering it unless it is cached. The bitmap is shared
+     * by the cache and must be neither modified nor recycled.
+     *
+     * @param year The year.
+     * @param month The month [0-11].
+     * @param width The width of the bitmap.
+     * @param height The height of the bitmap.
+     * @param selectedDate The selected date in milliseconds since January 1, 1970 00:00:00 in the
+     * time zone of the renderer.
+     * @return The bitmap, the same instance as long as nothing drawn in the month changed.
+     * @throws IllegalArgumentException if the month is not in [0-11] or the size is not positive.
+     */
+    public Bitmap getBitmap(int year, int month, int width, int height, long selectedDate) {
+        return renderMonth(year, month, width, height, WeekIndex.toEpochDay(selectedDate, mTimeZone));
+    }
+
+    /**
+     * Draws a month without a selected date.
+     *
+     * @see #draw(Canvas, int, int, int, int, long)
+     */
+    public void draw(Canvas canvas, int year, int month, int width, int height) {
+        drawMonth(canvas, year, month, width, height, WeekIndex.NO_DAY);
+    }
+
+    /**
+     * Draws a month onto a canvas, bypassing the cache.
+     *
+     * @param canvas The canvas, the month is drawn from its origin.
+     * @param year The year.
+     * @param month The month [0-11].
+     * @param width The width of the month.
+     * @param height The height of the month.
+     * @param selectedDate The selected date in milliseconds since January 1, 1970 00:00:00 in the
+     * time zone of the renderer.
+     * @throws IllegalArgumentException if the month is not in [0-11].
+     */
+    public void draw(Canvas canvas, int year, int month, int width, int height, long selectedDate) {
+        drawMonth(canvas, year, month, width, height, WeekIndex.toEpochDay(selectedDate, mTimeZone));
+    }
+
+    private synchronized Bitmap renderMonth(int year, int month, int width, int height, long selectedDay) {
+        checkMonth(month);
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid size: " + width + "x" + height);
+        }
+        // A selected date out of the shown weeks does not change the month
+        long firstDay = getFirstShownDay(year, month);
+        if (selectedDay < firstDay || selectedDay >= firstDay + WEEK_COUNT * DAYS_PER_WEEK) {
+            selectedDay = WeekIndex.NO_DAY;
+        }
+        mKey.set(year * 12 + month, width, height, selectedDay);
+        Bitmap bitmap = mCache != null ? mCache.get(mKey) : null;
+        if (bitmap == null) {
+            bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            drawMonth(new Canvas(bitmap), year, month, width, height, selectedDay);
+            if (mCache != null) {
+                mCache.put(mKey.copy(), bitmap);
+            }
+        }
+        return bitmap;
+    }
+
+    private synchronized void drawMonth(Canvas canvas, int year, int month, int width, int height,
+            long selectedDay) {
+        checkMonth(month);
+        long firstDay = getFirstShownDay(year, month);
+        WeekIndex weekIndex = new WeekIndex(Math.max(firstDay, WeekIndex.MIN_SUPPORTED_DAY),
+                Math.min(firstDay + WEEK_COUNT * DAYS_PER_WEEK - 1, WeekIndex.MAX_SUPPORTED_DAY),
+                mFirstDayOfWeek, mMinimalDaysInFirstWeek);
+        int weekHeight = height / WEEK_COUNT;
+        mPainter.setSize(width, weekHeight);
+        for (int week = 0; week < weekIndex.getWeekCount() && week < WEEK_COUNT; week++) {
+            long weekFirstDay = weekIndex.getFirstDayOf(week);
+            weekIndex.getWeekDays(week, mDaysOfMonth, mMonths);
+            int inRangeMask = 0;
+            int focusMask = 0;
+            for (int d = 0; d < DAYS_PER_WEEK; d++) {
+                if (weekIndex.isInRange(weekFirstDay + d)) {
+                    inRangeMask |= 1 << d;
+                }
+                if (mMonths[d] == month) {
+                    focusMask |= 1 << d;
+                }
+            }
+            // The flags are merged into the array, clear the ones of the previous week
+            Arrays.fill(mDecorations, 0);
+            if (mDayDecorations != null && mDayDecorations.size() != 0) {
+                mDayDecorations.getFlags(weekFirstDay, weekFirstDay + DAYS_PER_WEEK - 1, mDecorations, 0);
+            }
+
+            mPainter.setWeek(weekIndex.getWeekNumber(week), mDaysOfMonth, mDecorations, inRangeMask,
+                    CalendarModel.getEnabledMask(weekIndex, mDayRules, weekFirstDay), mShowWeekNumber, week != 0);
+            mPainter.setFocusMask(focusMask);
+            long selectedCell = selectedDay - weekFirstDay;
+            mPainter.setSelection(selectedCell >= 0 && selectedCell < DAYS_PER_WEEK ? (int) selectedCell : -1, 0);
+
+            int saveCount = canvas.save();
+            canvas.translate(0, week * weekHeight);
+            mPainter.draw(canvas, mPaint, mStyle, null, null);
+            canvas.restoreToCount(saveCount);
+        }
+    }
+
+    private static void checkMonth(int month) {
+        if (month < Calendar.JANUARY || month > Calendar.DECEMBER) {
+            throw new IllegalArgumentException("Invalid month: " + month);
+        }
+    }
+
+    private long getFirstShownDay(int year, int month) {
+        long firstDay = WeekIndex.toEpochDay(year, month, 1);
+        return firstDay - WeekIndex.getDaysSinceWeekStart(firstDay, mFirstDayOfWeek);
+    }
+
+    /**
+     * The colors and dimensions of the weeks, read from the attributes of the {@link CalendarView}.
+     * A style is immutable and compared by identity.
+     */
+    public static final class Style {
+
+        private static final float DEFAULT_DATE_TEXT_SIZE = 14;
+
+        private static final int UNSCALED_SELECTED_DATE_ARROW_WIDTH = 2;
+        private static final int UNSCALED_WEEK_SEPARATOR_LINE_WIDTH = 1;
+        private static final int UNSCALED_DECORATION_RADIUS = 2;
+
+        private static final String DEFAULT_SELECTED_WEEK_BACKGROUND_COLOR_HEX = "#cc33b5e5";
+        private static final String DEFAULT_FOCUSED_MONTH_DATE_COLOR_HEX = "#000000";
+        private static final String DEFAULT_UNFOCUSED_MONTH_DATE_COLOR_HEX = "#cc808080";
+        private static final String DEFAULT_DISABLED_DATE_COLOR_HEX = "#40808080";
+        private static final String DEFAULT_WEEK_SEPARATOR_LINE_COLOR_HEX = "#00000000";
+        private static final String DEFAULT_WEEK_NUMBER_COLOR_HEX = "#cc0099cc";
+        private static final String DEFAULT_SELECTED_WEEK_NUMBER_COLOR_HEX = "#ffffff";
+        private static final String DEFAULT_SELECTED_DATE_ARROWS_COLOR_HEX = "#cc33b5e5";
+        private static final String DEFAULT_DECORATION_COLOR_HEX = "#cc0099cc";
+        private static final String DEFAULT_SELECTED_DATE_BACKGROUND_COLOR_HEX = "#6633b5e5";
+
+        private final int mSelectedWeekBackgroundColor;
+        private final int mSelectedDateBackgroundColor;
+        private final int mFocusedMonthDateColor;
+        private final int mUnfocusedMonthDateColor;
+        private final int mDisabledDateColor;
+        private final int mWeekSeparatorLineColor;
+        private final int mWeekNumberColor;
+        private final int mSelectedWeekNumberColor;
+        private final int mSelectedDateArrowsColor;
+        private final int[] mDecorationColors;
+        private final int mDateTextSize;
+        private final int mSelectedDateArrowWidth;
+        private final int mWeekSeparatorLineWidth;
+        private final int mDecorationRadius;
+
+        /**
+         * Reads a style from the <code>CalendarView</code> attributes.
+         *
+         * @param context The context providing the theme and the display metrics.
+         * @param attributes The attributes, not recycled.
+         */
+        Style(Context context, TypedArray attributes) {
+            mSelectedWeekBackgroundColor = attributes.getColor(
+                    R.styleable.CalendarView_selectedWeekBackgroundColor,
+                    Color.parseColor(DEFAULT_SELECTED_WEEK_BACKGROUND_COLOR_HEX));
+            mSelectedDateBackgroundColor = attributes.getColor(
+                    R.styleable.CalendarView_selectedDateBackgroundColor,
+                    Color.parseColor(DEFAULT_SELECTED_DATE_BACKGROUND_COLOR_HEX));
+            mFocusedMonthDateColor = attributes.getColor(
+                    R.styleable.CalendarView_focusedMonthDateColor,
+                    Color.parseColor(DEFAULT_FOCUSED_MONTH_DATE_COLOR_HEX));
+            mUnfocusedMonthDateColor = attributes.getColor(
+                    R.styleable.CalendarView_unfocusedMonthDateColor,
+                    Color.parseColor(DEFAULT_UNFOCUSED_MONTH_DATE_COLOR_HEX));
+            mDisabledDateColor = attributes.getColor(
+                    R.styleable.CalendarView_disabledDateColor,
+                    Color.parseColor(DEFAULT_DISABLED_DATE_COLOR_HEX));
+            mWeekSeparatorLineColor = attributes.getColor(
+                    R.styleable.CalendarView_weekSeparatorLineColor,
+                    Color.parseColor(DEFAULT_WEEK_SEPARATOR_LINE_COLOR_HEX));
+            mWeekNumberColor = attributes.getColor(
+                    R.styleable.CalendarView_weekNumberColor,
+                    Color.parseColor(DEFAULT_WEEK_NUMBER_COLOR_HEX));
+            mSelectedWeekNumberColor = attributes.getColor(
+                    R.styleable.CalendarView_selectedWeekNumberColor,
+                    Color.parseColor(DEFAULT_SELECTED_WEEK_NUMBER_COLOR_HEX));
+            mSelectedDateArrowsColor = attributes.getColor(
+                    R.styleable.CalendarView_selectedDateArrowsColor,
+                    Color.parseColor(DEFAULT_SELECTED_DATE_ARROWS_COLOR_HEX));
+            mDecorationColors = new int[] { attributes.getColor(
+                    R.styleable.CalendarView_decorationColor,
+                    Color.parseColor(DEFAULT_DECORATION_COLOR_HEX)) };
+
+            DisplayMetrics displayMetrics = context.getResources().getDisplayMetrics();
+
+            int dateTextAppearanceResId = attributes.getResourceId(
+                    R.styleable.CalendarView_dateTextAppearance, android.R.style.TextAppearance_Small);
+            TypedArray dateTextAppearance = context.obtainStyledAttributes(dateTextAppearanceResId,
+                    R.styleable.DateTextAppearance);
+            mDateTextSize = dateTextAppearance.getDimensionPixelSize(
+                    R.styleable.DateTextAppearance_textSize, (int) TypedValue.applyDimension(
+                            TypedValue.COMPLEX_UNIT_SP, DEFAULT_DATE_TEXT_SIZE, displayMetrics));
+            dateTextAppearance.recycle();
+
+            mSelectedDateArrowWidth = (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP,
+                    UNSCALED_SELECTED_DATE_ARROW_WIDTH, displayMetrics);
+            mWeekSeparatorLineWidth = (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP,
+                    UNSCALED_WEEK_SEPARATOR_LINE_WIDTH, displayMetrics);
+            mDecorationRadius = (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP,
+                    UNSCALED_DECORATION_RADIUS, displayMetrics);
+        }
+
+        private Style(Style style, int[] decorationColors) {
+            mSelectedWeekBackgroundColor = style.mSelectedWeekBackgroundColor;
+            mSelectedDateBackgroundColor = style.mSelectedDateBackgroundColor;
+            mFocusedMonthDateColor = style.mFocusedMonthDateColor;
+            mUnfocusedMonthDateColor = style.mUnfocusedMonthDateColor;
+            mDisabledDateColor = style.mDisabledDateColor;
+            mWeekSeparatorLineColor = style.mWeekSeparatorLineColor;
+            mWeekNumberColor = style.mWeekNumberColor;
+            mSelectedWeekNumberColor = style.mSelectedWeekNumberColor;
+            mSelectedDateArrowsColor = style.mSelectedDateArrowsColor;
+            mDecorationColors = decorationColors;
+            mDateTextSize = style.mDateTextSize;
+            mSelectedDateArrowWidth = style.mSelectedDateArrowWidth;
+            mWeekSeparatorLineWidth = style.mWeekSeparatorLineWidth;
+            mDecorationRadius = style.mDecorationRadius;
+        }
+
+        /**
+         * Reads the style of the calendars of the theme of the given context, i.e. its
+         * <code>calendarViewStyle</code>.
+         *
+         * @param context The context.
+         * @return The style.
+         */
+        public static Style obtain(Context context) {
+            return obtain(context, 0);
+        }
+
+        /**
+         * Reads a style of the calendar from a style resource, e.g. the style of the calendars of
+         * an application set on its app widget.
+         *
+         * @param context The context.
+         * @param styleResId The style resource, used when the theme defines no calendar style.
+         * @return The style.
+         */
+        public static Style obtain(Context context, int styleResId) {
+            TypedArray attributes = context.obtainStyledAttributes(null, R.styleable.CalendarView,
+                    R.attr.calendarViewStyle, styleResId);
+            Style style = new Style(context, attributes);
+            attributes.recycle();
+            return style;
+        }
+
+        /**
+         * Gets a copy of this style with other decoration colors, see
+         * {@link CalendarView#setDecorationColors(int...)}.
+         *
+         * @param colors The colors of the flags.
+         * @return The new style.
+         */
+        public Style withDecorationColors(int... colors) {
+            if (colors.length == 0) {
+                throw new IllegalArgumentException("At least one decoration color is required.");
+            }
+            return new Style(this, colors.clone());
+        }
+
+        int getSelectedWeekBackgroundColor() {
+            return mSelectedWeekBackgroundColor;
+        }
+
+        int getSelectedDateBackgroundColor() {
+            return mSelectedDateBackgroundColor;
+        }
+
+        int getFocusedMonthDateColor() {
+            return mFocusedMonthDateColor;
+        }
+
+        int getUnfocusedMonthDateColor() {
+            return mUnfocusedMonthDateColor;
+        }
+
+        int getDisabledDateColor() {
+            return mDisabledDateColor;
+        }
+
+        int getWeekSeparatorLineColor() {
+            return mWeekSeparatorLineColor;
+        }
+
+        int getWeekNumberColor() {
+            return mWeekNumberColor;
+        }
+
+        int getSelectedWeekNumberColor() {
+            return mSelectedWeekNumberColor;
+        }
+
+        int getSelectedDateArrowsColor() {
+            return mSelectedDateArrowsColor;
+        }
+
+        int[] getDecorationColors() {
+            return mDecorationColors;
+        }
+
+        int getDateTextSize() {
+            return mDateTextSize;
+        }
+
+        int getSelectedDateArrowWidth() {
+            return mSelectedDateArrowWidth;
+        }
+
+        int getWeekSeparatorLineWidth() {
+            return mWeekSeparatorLineWidth;
+        }
+
+        int getDecorationRadius() {
+            return mDecorationRadius;
+        }
+    }
+
+    /**
+     * The rendered months, bounded in kilobytes.
+     */
+    private static final class MonthCache extends LruCache<MonthCache.Key, Bitmap> {
+
+        MonthCache(int maxKilobytes) {
+            super(maxKilobytes);
+        }
+
+        @Override
+        protected int sizeOf(Key key, Bitmap bitmap) {
+            return Math.max(1, bitmap.getByteCount() / 1024);
+        }
+
+        /**
+         * The month, size and selected day of a rendered month. A single mutable instance is
+         * used for the lookups, the cached instances are copies which are never modified.
+         */
+        static final class Key {
+
+            private int mMonthKey;
+            private int mWidth;
+            private int mHeight;
+            private long mSelectedDay;
+
+            public Key set(int monthKey, int width, int height, long selectedDay) {
+                mMonthKey = monthKey;
+                mWidth = width;
+                mHeight = height;
+                mSelectedDay = selectedDay;
+                return this;
+            }
+
+            public Key copy() {
+                return new Key().set(mMonthKey, mWidth, mHeight, mSelectedDay);
+            }
+
+            @Override
+            public boolean equals(Object o) {
+                if (this == o) {
+                    return true;
+                }
+                if (!(o instanceof Key)) {
+                    return false;
+                }
+                Key key = (Key) o;
+                return mMonthKey == key.mMonthKey && mWidth == key.mWidth && mHeight == key.mHeight
+                        && mSelectedDay == key.mSelectedDay;
+            }
+
+            @Override
+            public int hashCode() {
+                int result = mMonthKey;
+                result = 31 * result + mWidth;
+                result = 31 * result + mHeight;
+                result = 31 * result + (int) (mSelectedDay ^ (mSelectedDay >>> 32));
+                return result;
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.n1k0lai.calendarwidget;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Paint.Align;
+import android.graphics.Paint.FontMetricsInt;
+import android.graphics.Rect;
+
+/**
+ * This class renders a fixed set of number labels once into an alpha-only bitmap so they can be
+ * drawn with a single blit each. The bitmap is tinted by the color of the paint used to draw it,
+ * hence one atlas serves all the colors of a given text size and typeface.
+ */
+final class NumberAtlas {
+
+    private static final int COLUMN_COUNT = 8;
+    private static final int CELL_PADDING = 1;
+
+    private final Bitmap mBitmap;
+    private final int mMaxNumber;
+    private final int mCellWidth;
+    private final int mCellHeight;
+    private final int mBaseline;
+    private final Rect mSourceRect = new Rect();
+    private final Rect mDestinationRect = new Rect();
+
+    /**
+     * Creates a new atlas.
+     *
+     * @param textPaint The paint providing the text size and the typeface of the labels.
+     * @param labels The labels indexed by their number, the index 0 is unused.
+     */
+    NumberAtlas(Paint textPaint, String[] labels) {
+        Paint paint = new Paint(textPaint);
+        paint.setColor(Color.BLACK);
+        paint.setTextAlign(Align.CENTER);
+
+        mMaxNumber = labels.length - 1;
+        float maxWidth = 0;
+        for (int i = 1; i <= mMaxNumber; i++) {
+            maxWidth = Math.max(maxWidth, paint.measureText(labels[i]));
+        }
+        FontMetricsInt fontMetrics = new FontMetricsInt();
+        paint.getFontMetricsInt(fontMetrics);
+        mCellWidth = (int) Math.ceil(maxWidth) + 2 * CELL_PADDING;
+        mCellHeight = fontMetrics.descent - fontMetrics.ascent + 2 * CELL_PADDING;
+        mBaseline = CELL_PADDING - fontMetrics.ascent;
+
+        int rowCount = (mMaxNumber + COLUMN_COUNT - 1) / COLUMN_COUNT;
+        mBitmap = Bitmap.createBitmap(COLUMN_COUNT * mCellWidth, rowCount * mCellHeight, Bitmap.Config.ALPHA_8);
+        Canvas canvas = new Canvas(mBitmap);
+        for (int i = 1; i <= mMaxNumber; i++) {
+            int column = (i - 1) % COLUMN_COUNT;
+            int row = (i - 1) / COLUMN_COUNT;
+            canvas.drawText(labels[i], column * mCellWidth + mCellWidth / 2f, row * mCellHeight + mBaseline, paint);
+        }
+    }
+
+    /**
+     * Draws the label of the given number centered horizontally on the given position.
+     *
+     * @param canvas The canvas to draw on.
+     * @param number The number of the label.
+     * @param centerX The horizontal center of the label.
+     * @param baseline The baseline of the label.
+     * @param paint The paint providing the color of the label.
+     */
+    public void draw(Canvas canvas, int number, int centerX, int baseline, Paint paint) {
+        if (number < 1 || number > mMaxNumber) {
+            return;
+        }
+        int left = ((number - 1) % COLUMN_COUNT) * mCellWidth;
+        int top = ((number - 1) / COLUMN_COUNT) * mCellHeight;
+        mSourceRect.set(left, top, left + mCellWidth, top + mCellHeight);
+        int destinationLeft = centerX - mCellWidth / 2;
+        int destinationTop = baseline - mBaseline;
+        mDestinationRect.set(destinationLeft, destinationTop,
+                destinationLeft + mCellWidth, destinationTop + mCellHeight);
+        canvas.drawBitmap(mBitmap, mSourceRect, mDestinationRect, paint);
+    }
+}
@@ -0,0 +1,51 @@
+package com.n1k0lai.calendarwidget;
+
+/**
+ * This class holds the content of a week built from a {@link CalendarModel}. The arrays are
+ * owned by the instance and must not be modified.
+ */
+final class WeekData {
+
+    private final int mWeek;
+    private final int mWeekNumber;
+    private final int[] mDaysOfMonth;
+    private final int[] mMonths;
+    private final int[] mDecorations;
+    private final int mEnabledMask;
+
+    WeekData(int week, int weekNumber, int[] daysOfMonth, int[] months, int[] decorations, int enabledMask) {
+        mWeek = week;
+        mWeekNumber = weekNumber;
+        mDaysOfMonth = daysOfMonth;
+        mMonths = months;
+        mDecorations = decorations;
+        mEnabledMask = enabledMask;
+    }
+
+    public int getWeek() {
+        return mWeek;
+    }
+
+    public int getWeekNumber() {
+        return mWeekNumber;
+    }
+
+    public int[] getDaysOfMonth() {
+        return mDaysOfMonth;
+    }
+
+    public int[] getMonths() {
+        return mMonths;
+    }
+
+    public int[] getDecorations() {
+        return mDecorations;
+    }
+
+    /**
+     * Gets the enabled days, see {@link CalendarModel#getEnabledMask(WeekIndex, DayRules, long)}.
+     */
+    public int getEnabledMask() {
+        return mEnabledMask;
+    }
+}
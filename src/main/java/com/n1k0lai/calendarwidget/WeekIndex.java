@@ -0,0 +1,289 @@
+package com.n1k0lai.calendarwidget;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * This class maps the weeks shown by the {@link CalendarView} to epoch days, i.e. the number of
+ * days since January 1, 1970 in the local time of the calendar. All the lookups are done with
+ * integer arithmetic, so binding a week does not need to mutate or recompute a {@link Calendar}.
+ * Instances are immutable and must be recreated when the range or the first day of week change.
+ */
+final class WeekIndex {
+
+    static final long MILLIS_IN_DAY = 86400000L;
+    static final int DAYS_PER_WEEK = 7;
+
+    /**
+     * Returned by the lookups which cannot resolve a day.
+     */
+    static final long NO_DAY = Long.MIN_VALUE;
+
+    /**
+     * The first supported epoch day, January 1 of year 1. Bounding the range keeps the week
+     * positions, and the pixel offsets of the weeks, well within the range of an int.
+     */
+    static final long MIN_SUPPORTED_DAY = -719162L;
+
+    /**
+     * The last supported epoch day, December 31 of year 9999.
+     */
+    static final long MAX_SUPPORTED_DAY = 2932896L;
+
+    private static final int EPOCH_DAY_OF_WEEK_OFFSET = Calendar.THURSDAY - Calendar.SUNDAY;
+    private static final long DAYS_FROM_CIVIL_EPOCH = 719468L;
+    private static final int DAYS_PER_ERA = 146097;
+
+    private final long mMinDay;
+    private final long mMaxDay;
+    private final long mFirstWeekStartDay;
+    private final int mFirstDayOfWeek;
+    private final int mMinimalDaysInFirstWeek;
+    private final int mWeekCount;
+
+    /**
+     * Creates a new index.
+     *
+     * @param minDay The first epoch day of the range.
+     * @param maxDay The last epoch day of the range.
+     * @param firstDayOfWeek The first day of the week, e.g. {@link Calendar#SUNDAY}.
+     * @param minimalDaysInFirstWeek The minimal number of days of the first week of a year.
+     */
+    WeekIndex(long minDay, long maxDay, int firstDayOfWeek, int minimalDaysInFirstWeek) {
+        if (maxDay < minDay) {
+            throw new IllegalArgumentException("Max day cannot be before min day.");
+        }
+        if (minDay < MIN_SUPPORTED_DAY || maxDay > MAX_SUPPORTED_DAY) {
+            throw new IllegalArgumentException("Range not between years 1 and 9999.");
+        }
+        mMinDay = minDay;
+        mMaxDay = maxDay;
+        mFirstDayOfWeek = firstDayOfWeek;
+        mMinimalDaysInFirstWeek = minimalDaysInFirstWeek;
+        mFirstWeekStartDay = minDay - getDaysSinceWeekStart(minDay, firstDayOfWeek);
+        mWeekCount = (int) ((maxDay - mFirstWeekStartDay) / DAYS_PER_WEEK) + 1;
+    }
+
+    public long getMinDay() {
+        return mMinDay;
+    }
+
+    public long getMaxDay() {
+        return mMaxDay;
+    }
+
+    public int getFirstDayOfWeek() {
+        return mFirstDayOfWeek;
+    }
+
+    public int getWeekCount() {
+        return mWeekCount;
+    }
+
+    public boolean isInRange(long epochDay) {
+        return epochDay >= mMinDay && epochDay <= mMaxDay;
+    }
+
+    /**
+     * Gets the position of the week containing the given day clamped to the range.
+     */
+    public int getWeekOf(long epochDay) {
+        if (epochDay <= mMinDay) {
+            return 0;
+        }
+        if (epochDay >= mMaxDay) {
+            return mWeekCount - 1;
+        }
+        return (int) ((epochDay - mFirstWeekStartDay) / DAYS_PER_WEEK);
+    }
+
+    /**
+     * Gets the epoch day of the first cell of the given week.
+     */
+    public long getFirstDayOf(int week) {
+        return mFirstWeekStartDay + (long) week * DAYS_PER_WEEK;
+    }
+
+    /**
+     * Gets the week of year of the given week as defined by {@link Calendar#WEEK_OF_YEAR}.
+     */
+    public int getWeekNumber(int week) {
+        long anchorDay = getFirstDayOf(week) + DAYS_PER_WEEK - mMinimalDaysInFirstWeek;
+        long firstDayOfYear = toEpochDay(getYear(anchorDay), Calendar.JANUARY, 1);
+        return (int) ((anchorDay - firstDayOfYear) / DAYS_PER_WEEK) + 1;
+    }
+
+    /**
+     * Fills the day of month and the month [0-11] of each cell of the given week.
+     *
+     * @param week The week position.
+     * @param outDaysOfMonth Receives {@link #DAYS_PER_WEEK} days of month.
+     * @param outMonths Receives {@link #DAYS_PER_WEEK} months.
+     */
+    public void getWeekDays(int week, int[] outDaysOfMonth, int[] outMonths) {
+        long firstDay = getFirstDayOf(week);
+        int year = getYear(firstDay);
+        int month = getMonth(firstDay);
+        int dayOfMonth = getDayOfMonth(firstDay);
+        int monthLength = getMonthLength(year, month);
+        for (int i = 0; i < DAYS_PER_WEEK; i++) {
+            if (dayOfMonth > monthLength) {
+                dayOfMonth = 1;
+                if (++month > Calendar.DECEMBER) {
+                    month = Calendar.JANUARY;
+                    year++;
+                }
+                monthLength = getMonthLength(year, month);
+            }
+            outDaysOfMonth[i] = dayOfMonth++;
+            outMonths[i] = month;
+        }
+    }
+
+    /**
+     * Gets the epoch day of the given calendar in its own time zone.
+     */
+    public static long toEpochDay(Calendar calendar) {
+        return toEpochDay(calendar.getTimeInMillis(), calendar.getTimeZone());
+    }
+
+    /**
+     * Gets the epoch day of the given instant in the given time zone.
+     */
+    public static long toEpochDay(long millis, TimeZone zone) {
+        return floorDiv(millis + zone.getOffset(millis), MILLIS_IN_DAY);
+    }
+
+    /**
+     * Gets the epoch day of the given date of the proleptic Gregorian calendar.
+     *
+     * @param year The year.
+     * @param month The month [0-11].
+     * @param dayOfMonth The day of the month.
+     */
+    public static long toEpochDay(int year, int month, int dayOfMonth) {
+        int civilMonth = month + 1;
+        long civilYear = civilMonth <= 2 ? year - 1 : year;
+        long era = floorDiv(civilYear, 400);
+        long yearOfEra = civilYear - era * 400;
+        long dayOfYear = (153 * (civilMonth > 2 ? civilMonth - 3 : civilMonth + 9) + 2) / 5
+                + dayOfMonth - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * DAYS_PER_ERA + dayOfEra - DAYS_FROM_CIVIL_EPOCH;
+    }
+
+    /**
+     * Gets an instant at the middle of the given epoch day in the given time zone. The middle of
+     * the day is used because the local midnight does not exist in some time zones on DST days.
+     */
+    public static long toMillis(long epochDay, TimeZone zone) {
+        long localMillis = epochDay * MILLIS_IN_DAY + MILLIS_IN_DAY / 2;
+        return localMillis - zone.getOffset(localMillis);
+    }
+
+    /**
+     * Sets the date fields of the given calendar to the given epoch day keeping its time of day.
+     */
+    public static void setToEpochDay(Calendar outCalendar, long epochDay) {
+        outCalendar.set(getYear(epochDay), getMonth(epochDay), getDayOfMonth(epochDay));
+    }
+
+    /**
+     * Gets the day of week of the given epoch day, e.g. {@link Calendar#SUNDAY}.
+     */
+    public static int getDayOfWeek(long epochDay) {
+        return (int) floorMod(epochDay + EPOCH_DAY_OF_WEEK_OFFSET, DAYS_PER_WEEK) + Calendar.SUNDAY;
+    }
+
+    /**
+     * Gets the number of days between the first day of week and the given epoch day [0-6].
+     */
+    public static int getDaysSinceWeekStart(long epochDay, int firstDayOfWeek) {
+        return (int) floorMod(getDayOfWeek(epochDay) - firstDayOfWeek, DAYS_PER_WEEK);
+    }
+
+    public static int getYear(long epochDay) {
+        long dayOfEra = getDayOfEra(epochDay);
+        long yearOfEra = getYearOfEra(dayOfEra);
+        int civilMonth = getCivilMonth(dayOfEra, yearOfEra);
+        long year = yearOfEra + getEra(epochDay) * 400;
+        return (int) (civilMonth <= 2 ? year + 1 : year);
+    }
+
+    /**
+     * Gets the month [0-11] of the given epoch day.
+     */
+    public static int getMonth(long epochDay) {
+        long dayOfEra = getDayOfEra(epochDay);
+        return getCivilMonth(dayOfEra, getYearOfEra(dayOfEra)) - 1;
+    }
+
+    public static int getDayOfMonth(long epochDay) {
+        long dayOfEra = getDayOfEra(epochDay);
+        long dayOfYear = getDayOfYear(dayOfEra, getYearOfEra(dayOfEra));
+        long monthIndex = (5 * dayOfYear + 2) / 153;
+        return (int) (dayOfYear - (153 * monthIndex + 2) / 5 + 1);
+    }
+
+    /**
+     * Gets a key identifying the month of the given epoch day, i.e. <code>year * 12 + month</code>,
+     * so consecutive months have consecutive keys.
+     */
+    public static int getMonthKey(long epochDay) {
+        return getYear(epochDay) * 12 + getMonth(epochDay);
+    }
+
+    /**
+     * Gets the number of days of the given month [0-11].
+     */
+    public static int getMonthLength(int year, int month) {
+        switch (month) {
+            case Calendar.FEBRUARY:
+                return isLeapYear(year) ? 29 : 28;
+            case Calendar.APRIL:
+            case Calendar.JUNE:
+            case Calendar.SEPTEMBER:
+            case Calendar.NOVEMBER:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    public static boolean isLeapYear(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    private static long getEra(long epochDay) {
+        return floorDiv(epochDay + DAYS_FROM_CIVIL_EPOCH, DAYS_PER_ERA);
+    }
+
+    private static long getDayOfEra(long epochDay) {
+        return floorMod(epochDay + DAYS_FROM_CIVIL_EPOCH, DAYS_PER_ERA);
+    }
+
+    private static long getYearOfEra(long dayOfEra) {
+        return (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+    }
+
+    private static long getDayOfYear(long dayOfEra, long yearOfEra) {
+        return dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+    }
+
+    private static int getCivilMonth(long dayOfEra, long yearOfEra) {
+        int monthIndex = (int) ((5 * getDayOfYear(dayOfEra, yearOfEra) + 2) / 153);
+        return monthIndex < 10 ? monthIndex + 3 : monthIndex - 9;
+    }
+
+    private static long floorDiv(long x, long y) {
+        long quotient = x / y;
+        if ((x % y != 0) && ((x ^ y) < 0)) {
+            quotient--;
+        }
+        return quotient;
+    }
+
+    private static long floorMod(long x, long y) {
+        return x - floorDiv(x, y) * y;
+    }
+}
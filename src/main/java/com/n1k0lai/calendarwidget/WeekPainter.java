@@ -0,0 +1,284 @@
+package com.n1k0lai.calendarwidget;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
+
+/**
+ * This class draws a single week of the calendar: the backgrounds of the selected week and days,
+ * the week and day numbers, the decoration dots, the week separator and the selected date arrows.
+ * It holds the cells of the week it is bound to, so the rows of the {@link CalendarView} and the
+ * {@link MonthRenderer} draw the weeks with the same code. A painter is bound to another week
+ * without allocations.
+ */
+final class WeekPainter {
+
+    static final int MAX_DAYS_IN_MONTH = 31;
+    static final int MAX_WEEKS_IN_YEAR = 53;
+    static final String[] DAY_NUMBER_LABELS = createNumberLabels(MAX_DAYS_IN_MONTH);
+    static final String[] WEEK_NUMBER_LABELS = createNumberLabels(MAX_WEEKS_IN_YEAR);
+
+    private static final int DAYS_PER_WEEK = WeekIndex.DAYS_PER_WEEK;
+    private static final int MAX_DECORATION_DOTS = 4;
+
+    private final Rect mTempRect = new Rect();
+    private final Path mLeftArrowPath = new Path();
+    private final Path mRightArrowPath = new Path();
+
+    private final int[] mDaysOfMonth = new int[DAYS_PER_WEEK];
+    private final int[] mDecorations = new int[DAYS_PER_WEEK];
+
+    private int mWeekOfYear;
+    private int mInRangeMask;
+    private int mEnabledMask;
+    private int mFocusMask;
+    private int mSelectionMask;
+    private int mSelectedCell = -1;
+    private boolean mShowWeekNumber;
+    private boolean mShowSeparator;
+    private int mNumCells;
+    private int mWidth;
+    private int mHeight;
+    private int mSelectedLeft = -1;
+    private int mSelectedRight = -1;
+    private int mArrowWidth = -1;
+
+    /**
+     * Binds the painter to a week.
+     *
+     * @param weekOfYear The week of year.
+     * @param daysOfMonth The days of month of the week.
+     * @param decorations The decoration flags of the days.
+     * @param inRangeMask The days in the range, bit <code>i</code> for the day <code>i</code>.
+     * @param enabledMask The enabled days.
+     * @param showWeekNumber Whether the week number is shown in front of the days.
+     * @param showSeparator Whether the separator is drawn above the week.
+     */
+    public void setWeek(int weekOfYear, int[] daysOfMonth, int[] decorations, int inRangeMask,
+            int enabledMask, boolean showWeekNumber, boolean showSeparator) {
+        mWeekOfYear = weekOfYear;
+        System.arraycopy(daysOfMonth, 0, mDaysOfMonth, 0, DAYS_PER_WEEK);
+        mInRangeMask = inRangeMask;
+        setDecorations(decorations);
+        mEnabledMask = enabledMask;
+        mShowWeekNumber = showWeekNumber;
+        mShowSeparator = showSeparator;
+        int numCells = showWeekNumber ? DAYS_PER_WEEK + 1 : DAYS_PER_WEEK;
+        if (numCells != mNumCells) {
+            // The arrows only depend on the geometry, keep them when binding another week
+            mNumCells = numCells;
+            mSelectedLeft = -1;
+        }
+    }
+
+    /**
+     * Sets the decoration flags of the days of the bound week, the days out of the range are
+     * not decorated.
+     */
+    public void setDecorations(int[] decorations) {
+        for (int d = 0; d < DAYS_PER_WEEK; d++) {
+            mDecorations[d] = (mInRangeMask & (1 << d)) != 0 ? decorations[d] : 0;
+        }
+    }
+
+    /**
+     * Sets the days of the focused month, bit <code>i</code> for the day <code>i</code>.
+     */
+    public void setFocusMask(int focusMask) {
+        mFocusMask = focusMask;
+    }
+
+    public int getFocusMask() {
+        return mFocusMask;
+    }
+
+    /**
+     * Sets the selection of the week.
+     *
+     * @param selectedCell The day [0-6] of the selected date in the single selection mode or -1.
+     * @param selectionMask The days selected in the multiple and range modes.
+     */
+    public void setSelection(int selectedCell, int selectionMask) {
+        mSelectedCell = selectedCell;
+        mSelectionMask = selectionMask;
+    }
+
+    public void setSize(int width, int height) {
+        mWidth = width;
+        mHeight = height;
+        mSelectedLeft = -1;
+    }
+
+    /**
+     * Draws the week.
+     *
+     * @param canvas The canvas, the week is drawn from its origin.
+     * @param paint The paint providing the text size, it is modified.
+     * @param style The colors and dimensions.
+     * @param dayNumberAtlas The atlas of the day numbers or null to draw them as text.
+     * @param weekNumberAtlas The atlas of the week numbers or null to draw them as text.
+     */
+    public void draw(Canvas canvas, Paint paint, MonthRenderer.Style style, NumberAtlas dayNumberAtlas,
+            NumberAtlas weekNumberAtlas) {
+        drawBackground(canvas, paint, style);
+        drawWeekNumbers(canvas, paint, style, dayNumberAtlas, weekNumberAtlas);
+        drawDecorations(canvas, paint, style);
+        drawWeekSeparators(canvas, paint, style);
+        drawSelectedDateArrows(canvas, paint, style);
+    }
+
+    private void drawBackground(Canvas canvas, Paint paint, MonthRenderer.Style style) {
+        if (mSelectionMask != 0) {
+            drawSelectedDays(canvas, paint, style);
+        }
+        if (mSelectedCell == -1) {
+            return;
+        }
+        updateSelectionPositions(style);
+
+        paint.setColor(style.getSelectedWeekBackgroundColor());
+
+        mTempRect.top = style.getWeekSeparatorLineWidth();
+        mTempRect.bottom = mHeight;
+        mTempRect.left = 0;
+        mTempRect.right = mSelectedLeft;
+        canvas.drawRect(mTempRect, paint);
+
+        mTempRect.left = mSelectedRight;
+        mTempRect.right = mWidth;
+        canvas.drawRect(mTempRect, paint);
+    }
+
+    private void drawSelectedDays(Canvas canvas, Paint paint, MonthRenderer.Style style) {
+        paint.setColor(style.getSelectedDateBackgroundColor());
+        mTempRect.top = style.getWeekSeparatorLineWidth();
+        mTempRect.bottom = mHeight;
+        int offset = mShowWeekNumber ? 1 : 0;
+        int mask = mSelectionMask;
+        while (mask != 0) {
+            // Draw each run of consecutive selected days as one rectangle
+            int start = Integer.numberOfTrailingZeros(mask);
+            int length = Integer.numberOfTrailingZeros(~(mask >>> start));
+            mTempRect.left = (start + offset) * mWidth / mNumCells;
+            mTempRect.right = (start + length + offset) * mWidth / mNumCells;
+            canvas.drawRect(mTempRect, paint);
+            mask &= ~(((1 << length) - 1) << start);
+        }
+    }
+
+    private void drawWeekNumbers(Canvas canvas, Paint paint, MonthRenderer.Style style,
+            NumberAtlas dayNumberAtlas, NumberAtlas weekNumberAtlas) {
+        int i = 0;
+        int divisor = 2 * mNumCells;
+        int y = (int) ((mHeight + paint.getTextSize()) / 2) - style.getWeekSeparatorLineWidth();
+        if (mShowWeekNumber) {
+            paint.setColor(mSelectedCell != -1 ? style.getSelectedWeekNumberColor() : style.getWeekNumberColor());
+            if (weekNumberAtlas != null) {
+                weekNumberAtlas.draw(canvas, mWeekOfYear, mWidth / divisor, y, paint);
+            } else {
+                paint.setFakeBoldText(false);
+                canvas.drawText(WEEK_NUMBER_LABELS[mWeekOfYear], mWidth / divisor, y, paint);
+            }
+            i++;
+        }
+
+        paint.setFakeBoldText(true);
+        for (int d = 0; i < mNumCells; i++, d++) {
+            if ((mInRangeMask & (1 << d)) == 0) {
+                continue;
+            }
+            paint.setColor(getDayNumberColor(d, style));
+            int x = (2 * i + 1) * mWidth / divisor;
+            if (dayNumberAtlas != null) {
+                dayNumberAtlas.draw(canvas, mDaysOfMonth[d], x, y, paint);
+            } else {
+                canvas.drawText(DAY_NUMBER_LABELS[mDaysOfMonth[d]], x, y, paint);
+            }
+        }
+    }
+
+    private int getDayNumberColor(int day, MonthRenderer.Style style) {
+        if ((mEnabledMask & (1 << day)) == 0) {
+            return style.getDisabledDateColor();
+        }
+        return (mFocusMask & (1 << day)) != 0 ? style.getFocusedMonthDateColor() : style.getUnfocusedMonthDateColor();
+    }
+
+    private void drawDecorations(Canvas canvas, Paint paint, MonthRenderer.Style style) {
+        int[] colors = style.getDecorationColors();
+        int radius = style.getDecorationRadius();
+        int divisor = 2 * mNumCells;
+        int spacing = 3 * radius;
+        int baseline = (int) ((mHeight + paint.getTextSize()) / 2) - style.getWeekSeparatorLineWidth();
+        int y = Math.min(baseline + spacing, mHeight - radius);
+        for (int i = mShowWeekNumber ? 1 : 0, d = 0; i < mNumCells; i++, d++) {
+            int flags = mDecorations[d];
+            if (flags == 0) {
+                continue;
+            }
+            int dotCount = Math.min(Integer.bitCount(flags), MAX_DECORATION_DOTS);
+            int x = (2 * i + 1) * mWidth / divisor - (dotCount - 1) * spacing / 2;
+            for (int dot = 0; dot < dotCount; dot++, x += spacing) {
+                int flag = Integer.numberOfTrailingZeros(flags);
+                flags &= flags - 1;
+                paint.setColor(colors[flag % colors.length]);
+                canvas.drawCircle(x, y, radius, paint);
+            }
+        }
+    }
+
+    private void drawWeekSeparators(Canvas canvas, Paint paint, MonthRenderer.Style style) {
+        if (!mShowSeparator) {
+            return;
+        }
+
+        paint.setColor(style.getWeekSeparatorLineColor());
+        paint.setStrokeWidth(style.getWeekSeparatorLineWidth());
+
+        canvas.drawLine(0, 0, mWidth, 0, paint);
+    }
+
+    private void drawSelectedDateArrows(Canvas canvas, Paint paint, MonthRenderer.Style style) {
+        if (mSelectedCell == -1) {
+            return;
+        }
+
+        paint.setColor(style.getSelectedDateArrowsColor());
+        canvas.drawPath(mLeftArrowPath, paint);
+        canvas.drawPath(mRightArrowPath, paint);
+    }
+
+    private void updateArrowPath(Path path, int x, int tipX, int lineWidth) {
+        int tipY = (mHeight - lineWidth) / 2 + lineWidth;
+        path.rewind();
+        path.moveTo(x, lineWidth);
+        path.lineTo(tipX, tipY);
+        path.lineTo(x, mHeight);
+        path.lineTo(x, lineWidth);
+        path.close();
+    }
+
+    private void updateSelectionPositions(MonthRenderer.Style style) {
+        int selectedPosition = mShowWeekNumber ? mSelectedCell + 1 : mSelectedCell;
+        int selectedLeft = selectedPosition * mWidth / mNumCells;
+        int selectedRight = (selectedPosition + 1) * mWidth / mNumCells;
+        int arrowWidth = style.getSelectedDateArrowWidth();
+        if (selectedLeft != mSelectedLeft || selectedRight != mSelectedRight || arrowWidth != mArrowWidth) {
+            mSelectedLeft = selectedLeft;
+            mSelectedRight = selectedRight;
+            mArrowWidth = arrowWidth;
+            int lineWidth = style.getWeekSeparatorLineWidth();
+            updateArrowPath(mLeftArrowPath, mSelectedLeft, mSelectedLeft + arrowWidth, lineWidth);
+            updateArrowPath(mRightArrowPath, mSelectedRight, mSelectedRight - arrowWidth, lineWidth);
+        }
+    }
+
+    private static String[] createNumberLabels(int maxNumber) {
+        String[] labels = new String[maxNumber + 1];
+        for (int i = 1; i <= maxNumber; i++) {
+            labels[i] = Integer.toString(i);
+        }
+        return labels;
+    }
+}
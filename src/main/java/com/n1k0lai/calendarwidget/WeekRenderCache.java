@@ -0,0 +1,107 @@
+package com.n1k0lai.calendarwidget;
+
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+/**
+ * This class caches the rendered weeks of the {@link CalendarView} as bitmaps, so a week
+ * scrolling back into view is drawn with a single bitmap instead of its text and shapes.
+ * The size of the cache is bounded in kilobytes. The key holds the state a week is drawn with
+ * which changes without rebinding the weeks, i.e. the focused days and the selection. A change
+ * of the decorations evicts the weeks of the changed days, any other change must evict the
+ * whole cache.
+ */
+final class WeekRenderCache extends LruCache<WeekRenderCache.Key, Bitmap> {
+
+    /**
+     * Creates a new cache.
+     *
+     * @param maxKilobytes The maximal size of the bitmaps in kilobytes.
+     */
+    WeekRenderCache(int maxKilobytes) {
+        super(maxKilobytes);
+    }
+
+    @Override
+    protected int sizeOf(Key key, Bitmap bitmap) {
+        return Math.max(1, bitmap.getByteCount() / 1024);
+    }
+
+    /**
+     * Evicts the weeks starting in the given days.
+     *
+     * @param firstDay The first epoch day.
+     * @param lastDay The last epoch day.
+     */
+    public void evictWeeks(long firstDay, long lastDay) {
+        for (Key key : snapshot().keySet()) {
+            if (key.mFirstDay >= firstDay && key.mFirstDay <= lastDay) {
+                remove(key);
+            }
+        }
+    }
+
+    /**
+     * The state of a rendered week. A single mutable instance may be used for the lookups,
+     * the cached instances are copies which are never modified.
+     */
+    static final class Key {
+
+        private long mFirstDay;
+        private int mFocusMask;
+        private int mSelectedDay;
+        private int mSelectionMask;
+        private int mWidth;
+        private int mHeight;
+
+        /**
+         * Sets the state of the key.
+         *
+         * @param firstDay The first epoch day of the week.
+         * @param focusMask The days of the focused month, bit <code>i</code> for <code>firstDay + i</code>.
+         * @param selectedDay The selected day of week or -1 if none.
+         * @param selectionMask The days selected in the multiple and range modes.
+         * @param width The width of the week.
+         * @param height The height of the week.
+         * @return This key.
+         */
+        public Key set(long firstDay, int focusMask, int selectedDay, int selectionMask, int width, int height) {
+            mFirstDay = firstDay;
+            mFocusMask = focusMask;
+            mSelectedDay = selectedDay;
+            mSelectionMask = selectionMask;
+            mWidth = width;
+            mHeight = height;
+            return this;
+        }
+
+        public Key copy() {
+            return new Key().set(mFirstDay, mFocusMask, mSelectedDay, mSelectionMask, mWidth, mHeight);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return mFirstDay == key.mFirstDay && mFocusMask == key.mFocusMask
+                    && mSelectedDay == key.mSelectedDay && mSelectionMask == key.mSelectionMask
+                    && mWidth == key.mWidth && mHeight == key.mHeight;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = (int) (mFirstDay ^ (mFirstDay >>> 32));
+            result = 31 * result + mFocusMask;
+            result = 31 * result + mSelectedDay;
+            result = 31 * result + mSelectionMask;
+            result = 31 * result + mWidth;
+            result = 31 * result + mHeight;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.n1k0lai.calendarwidget;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Message;
+import android.os.Process;
+
+/**
+ * This class builds windows of weeks of a {@link CalendarModel} on a background thread and
+ * publishes them on the main thread. Only the latest request is built, the pending ones are
+ * dropped when a new one arrives.
+ */
+final class WeeksBuilder implements Handler.Callback {
+
+    private static final String THREAD_NAME = "CalendarView.WeeksBuilder";
+    private static final int MSG_BUILD = 1;
+
+    /**
+     * The callback used to publish the built weeks on the main thread.
+     */
+    interface OnWeeksBuiltListener {
+
+        /**
+         * Called upon completion of a build.
+         *
+         * @param model The model the weeks were built from.
+         * @param firstWeek The position of the first built week.
+         * @param weeks The built weeks.
+         */
+        void onWeeksBuilt(CalendarModel model, int firstWeek, WeekData[] weeks);
+    }
+
+    private final HandlerThread mThread;
+    private final Handler mWorkerHandler;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final OnWeeksBuiltListener mListener;
+
+    private volatile boolean mQuit;
+
+    WeeksBuilder(OnWeeksBuiltListener listener) {
+        mListener = listener;
+        mThread = new HandlerThread(THREAD_NAME, Process.THREAD_PRIORITY_BACKGROUND);
+        mThread.start();
+        mWorkerHandler = new Handler(mThread.getLooper(), this);
+    }
+
+    /**
+     * Requests the weeks between the given positions, inclusive.
+     */
+    public void build(CalendarModel model, int firstWeek, int lastWeek) {
+        mWorkerHandler.removeMessages(MSG_BUILD);
+        mWorkerHandler.obtainMessage(MSG_BUILD, firstWeek, lastWeek, model).sendToTarget();
+    }
+
+    /**
+     * Stops the background thread and drops the pending results.
+     */
+    public void quit() {
+        mQuit = true;
+        mWorkerHandler.removeMessages(MSG_BUILD);
+        mMainHandler.removeCallbacksAndMessages(null);
+        mThread.quit();
+    }
+
+    @Override
+    public boolean handleMessage(Message message) {
+        final CalendarModel model = (CalendarModel) message.obj;
+        final int firstWeek = message.arg1;
+        final WeekData[] weeks = new WeekData[message.arg2 - firstWeek + 1];
+        for (int i = 0; i < weeks.length && !mQuit; i++) {
+            weeks[i] = model.buildWeek(firstWeek + i);
+        }
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!mQuit) {
+                    mListener.onWeeksBuilt(model, firstWeek, weeks);
+                }
+            }
+        });
+        return true;
+    }
+}
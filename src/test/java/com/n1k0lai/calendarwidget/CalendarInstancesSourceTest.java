@@ -0,0 +1,248 @@
+package com.n1k0lai.calendarwidget;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.os.HandlerThread;
+import android.provider.CalendarContract;
+import android.provider.CalendarContract.Instances;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.Shadows;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowContentResolver;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class CalendarInstancesSourceTest {
+
+    private static final int YEAR = 2030;
+    private static final int MONTH = 5;
+    private static final int MONTH_KEY = YEAR * 12 + MONTH;
+    private static final long JULIAN_DAY_OF_EPOCH = 2440588L;
+    private static final long RELOAD_DELAY_MILLIS = 250;
+
+    private final FakeCalendarProvider mProvider = new FakeCalendarProvider();
+
+    private RecordingCalendarView mView;
+    private CalendarInstancesSource mSource;
+
+    @Before
+    public void setUp() {
+        ShadowContentResolver.registerProvider(CalendarContract.AUTHORITY, mProvider);
+        mProvider.addInstance(WeekIndex.toEpochDay(YEAR, MONTH, 12), WeekIndex.toEpochDay(YEAR, MONTH, 13));
+
+        mView = CalendarViews.attach(new RecordingCalendarView(CalendarViews.createActivity()));
+        mView.setDate(CalendarViews.toMillis(mView, WeekIndex.toEpochDay(YEAR, MONTH, 15)));
+        mSource = new CalendarInstancesSource(RuntimeEnvironment.application.getContentResolver());
+        mView.setInstancesSource(mSource);
+        runLoads();
+    }
+
+    @Test
+    public void queriesTheMonthsAroundTheFocusedMonth() {
+        // The focused month first, then alternating away from it
+        assertEquals(Arrays.asList(MONTH_KEY, MONTH_KEY + 1, MONTH_KEY - 1, MONTH_KEY + 2, MONTH_KEY - 2),
+                mProvider.getQueriedMonths());
+        assertEquals(1, getFlags(WeekIndex.toEpochDay(YEAR, MONTH, 12)));
+        assertEquals(1, getFlags(WeekIndex.toEpochDay(YEAR, MONTH, 13)));
+        assertEquals(0, getFlags(WeekIndex.toEpochDay(YEAR, MONTH, 14)));
+        assertEquals(Arrays.asList(MONTH_KEY), mView.getInvalidatedMonths());
+    }
+
+    @Test
+    public void queriesOnlyTheMonthsEnteringTheWindow() {
+        mProvider.clearQueries();
+        mView.getInvalidatedMonths().clear();
+
+        mView.setDate(CalendarViews.toMillis(mView, WeekIndex.toEpochDay(YEAR, MONTH + 1, 15)));
+        runLoads();
+
+        assertEquals(Arrays.asList(MONTH_KEY + 3), mProvider.getQueriedMonths());
+        assertEquals(1, getFlags(WeekIndex.toEpochDay(YEAR, MONTH, 12)));
+        assertEquals(0, mView.getInvalidatedMonths().size());
+    }
+
+    @Test
+    public void reloadsOnChangeAndInvalidatesOnlyTheChangedMonths() {
+        mProvider.clearQueries();
+        mView.getInvalidatedMonths().clear();
+        CalendarMetrics metrics = new CalendarMetrics();
+        mView.setMetricsSink(metrics);
+        long addedDay = WeekIndex.toEpochDay(YEAR, MONTH + 1, 20);
+        mProvider.addInstance(addedDay, addedDay);
+
+        // A burst of notifications is reloaded once
+        RuntimeEnvironment.application.getContentResolver().notifyChange(CalendarContract.CONTENT_URI, null);
+        RuntimeEnvironment.application.getContentResolver().notifyChange(CalendarContract.CONTENT_URI, null);
+        assertEquals(0, mProvider.getQueriedMonths().size());
+        ShadowLooper.idleMainLooper(RELOAD_DELAY_MILLIS);
+        runLoads();
+
+        assertEquals(5, mProvider.getQueriedMonths().size());
+        assertEquals(1, getFlags(addedDay));
+        assertEquals(Arrays.asList(MONTH_KEY + 1), mView.getInvalidatedMonths());
+        // The shown weeks read their decorations again without being bound
+        assertEquals(0, metrics.getDataSetChangedCount());
+        assertEquals(0, metrics.getCount(CalendarView.METRIC_BIND));
+    }
+
+    @Test
+    public void keepsTheFlagsUntilReloadedWithAnotherMapper() {
+        long eventDay = WeekIndex.toEpochDay(YEAR, MONTH, 12);
+        mView.getInvalidatedMonths().clear();
+        ShadowLooper.pauseMainLooper();
+
+        mSource.setFlagMapper(new CalendarInstancesSource.FlagMapper() {
+            @Override
+            public int getFlags(long calendarId, boolean allDay) {
+                return 2;
+            }
+        });
+        runLoads();
+        assertEquals(1, getFlags(eventDay));
+        assertEquals(0, mView.getInvalidatedMonths().size());
+
+        ShadowLooper.unPauseMainLooper();
+        assertEquals(2, getFlags(eventDay));
+        assertEquals(Arrays.asList(MONTH_KEY), mView.getInvalidatedMonths());
+    }
+
+    /**
+     * Runs the queries queued on the background thread of the source, their results are
+     * posted to the main looper. The clock of the background looper lags the main one, so
+     * the queries sent after idling the main looper are delayed on it.
+     */
+    private void runLoads() {
+        HandlerThread thread = ReflectionHelpers.getField(mSource, "mThread");
+        Shadows.shadowOf(thread.getLooper()).runToEndOfTasks();
+    }
+
+    private int getFlags(long day) {
+        int[] flags = new int[1];
+        mSource.getDayDecorations().getFlags(day, day, flags, 0);
+        return flags[0];
+    }
+
+    /**
+     * Records the months whose decorations are invalidated.
+     */
+    private static class RecordingCalendarView extends CalendarView {
+
+        private final List<Integer> mInvalidatedMonths = new ArrayList<Integer>();
+
+        RecordingCalendarView(Context context) {
+            super(context);
+        }
+
+        @Override
+        void invalidateDayDecorations(int firstMonthKey, int lastMonthKey) {
+            for (int monthKey = firstMonthKey; monthKey <= lastMonthKey; monthKey++) {
+                mInvalidatedMonths.add(monthKey);
+            }
+            super.invalidateDayDecorations(firstMonthKey, lastMonthKey);
+        }
+
+        List<Integer> getInvalidatedMonths() {
+            return mInvalidatedMonths;
+        }
+    }
+
+    /**
+     * Serves the instances of a single calendar by Julian days and records the queried months.
+     */
+    private static class FakeCalendarProvider extends ContentProvider {
+
+        private final List<long[]> mInstances = new ArrayList<long[]>();
+        private final List<Integer> mQueriedMonths = new ArrayList<Integer>();
+
+        void addInstance(long startDay, long endDay) {
+            mInstances.add(new long[] { startDay, endDay });
+        }
+
+        List<Integer> getQueriedMonths() {
+            return mQueriedMonths;
+        }
+
+        void clearQueries() {
+            mQueriedMonths.clear();
+        }
+
+        @Override
+        public boolean onCreate() {
+            return true;
+        }
+
+        @Override
+        public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
+                String sortOrder) {
+            // content://com.android.calendar/instances/whenbyday/<first>/<last>
+            List<String> segments = uri.getPathSegments();
+            long firstDay = Long.parseLong(segments.get(segments.size() - 2)) - JULIAN_DAY_OF_EPOCH;
+            long lastDay = Long.parseLong(segments.get(segments.size() - 1)) - JULIAN_DAY_OF_EPOCH;
+            int monthKey = WeekIndex.getMonthKey(firstDay);
+            int year = monthKey / 12;
+            int month = monthKey % 12;
+            // A query covers exactly one month
+            assertTrue(uri.getPath().startsWith(Instances.CONTENT_BY_DAY_URI.getPath()));
+            assertEquals(WeekIndex.toEpochDay(year, month, 1), firstDay);
+            assertEquals(firstDay + WeekIndex.getMonthLength(year, month) - 1, lastDay);
+            mQueriedMonths.add(monthKey);
+
+            MatrixCursor cursor = new MatrixCursor(projection);
+            for (long[] instance : mInstances) {
+                if (instance[0] > lastDay || instance[1] < firstDay) {
+                    continue;
+                }
+                Object[] row = new Object[projection.length];
+                for (int i = 0; i < projection.length; i++) {
+                    if (Instances.START_DAY.equals(projection[i])) {
+                        row[i] = instance[0] + JULIAN_DAY_OF_EPOCH;
+                    } else if (Instances.END_DAY.equals(projection[i])) {
+                        row[i] = instance[1] + JULIAN_DAY_OF_EPOCH;
+                    } else {
+                        row[i] = 1;
+                    }
+                }
+                cursor.addRow(row);
+            }
+            return cursor;
+        }
+
+        @Override
+        public String getType(Uri uri) {
+            return null;
+        }
+
+        @Override
+        public Uri insert(Uri uri, ContentValues values) {
+            return null;
+        }
+
+        @Override
+        public int delete(Uri uri, String selection, String[] selectionArgs) {
+            return 0;
+        }
+
+        @Override
+        public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+            return 0;
+        }
+    }
+}
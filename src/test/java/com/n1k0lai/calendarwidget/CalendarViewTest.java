@@ -0,0 +1,274 @@
+package com.n1k0lai.calendarwidget;
+
+import android.view.ViewGroup;
+import android.view.accessibility.AccessibilityNodeInfo;
+import android.widget.ListView;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.Shadows;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class CalendarViewTest {
+
+    private static final long SELECTED_DAY = WeekIndex.toEpochDay(2030, 5, 12);
+    private static final int WARMUP_SWITCHES = 10;
+    private static final int MEASURED_SWITCHES = 50;
+    private static final long MAX_SWITCH_NANOS = 5000000L;
+
+    /**
+     * The weeks bound by a refresh of the shown rows: the shown weeks and the partially visible
+     * ones above and below.
+     */
+    private static final int MAX_VISIBLE_ROWS = CalendarViews.SHOWN_WEEK_COUNT + 2;
+
+    private static final long MIN_DAY = WeekIndex.toEpochDay(2020, 0, 1);
+    private static final long MAX_DAY = WeekIndex.toEpochDay(2040, 11, 31);
+
+    /**
+     * Switches between the first days of week the way a settings screen does.
+     */
+    private static final Switch FIRST_DAY_OF_WEEK_SWITCH = new Switch() {
+        @Override
+        public void apply(CalendarView view, int i) {
+            view.setFirstDayOfWeek(i % 2 == 0 ? Calendar.SUNDAY : Calendar.MONDAY);
+        }
+    };
+
+    /**
+     * Switches between time zones on both sides of the date line, the selected instant falls
+     * on another day in each of them.
+     */
+    private static final Switch TIME_ZONE_SWITCH = new Switch() {
+        @Override
+        public void apply(CalendarView view, int i) {
+            view.setTimeZone(TimeZone.getTimeZone(i % 2 == 0 ? "America/Los_Angeles" : "Asia/Tokyo"));
+        }
+    };
+
+    @Test
+    public void firstDayOfWeekRebindsOnlyTheVisibleRowsOfTheList() {
+        CalendarView view = CalendarViews.create();
+        // The list is notified of the new week count on each switch
+        CalendarMetrics metrics = assertSwitchRebindsOnlyTheVisibleRows(view, FIRST_DAY_OF_WEEK_SWITCH,
+                MEASURED_SWITCHES);
+        assertTrue(metrics.getCount(CalendarView.METRIC_BIND) > 0);
+        assertEquals(SELECTED_DAY, WeekIndex.toEpochDay(view.getDate(), view.getTimeZone()));
+    }
+
+    @Test
+    public void firstDayOfWeekRebindsOnlyTheVisibleRowsOfTheCanvas() {
+        CalendarView view = CalendarViews.create("displayMode", "canvas");
+        CalendarMetrics metrics = assertSwitchRebindsOnlyTheVisibleRows(view, FIRST_DAY_OF_WEEK_SWITCH, 0);
+        assertTrue(metrics.getCount(CalendarView.METRIC_BIND) > 0);
+        assertEquals(SELECTED_DAY, WeekIndex.toEpochDay(view.getDate(), view.getTimeZone()));
+    }
+
+    @Test
+    public void timeZoneRebindsOnlyTheVisibleRowsOfTheList() {
+        assertTimeZoneKeepsTheRange(CalendarViews.create());
+    }
+
+    @Test
+    public void timeZoneRebindsOnlyTheVisibleRowsOfTheCanvas() {
+        assertTimeZoneKeepsTheRange(CalendarViews.create("displayMode", "canvas"));
+    }
+
+    @Test
+    public void selectionChangeRefreshesOnlyTheOldAndTheNewWeeks() {
+        CalendarView view = CalendarViews.create();
+        view.setFirstDayOfWeek(Calendar.MONDAY);
+        view.setDate(CalendarViews.toMillis(view, SELECTED_DAY));
+        CalendarViews.layoutAndDraw(view);
+        ListView list = (ListView) view.findViewById(android.R.id.list);
+        int firstPosition = list.getFirstVisiblePosition();
+        CalendarMetrics metrics = new CalendarMetrics();
+        view.setMetricsSink(metrics);
+        clearInvalidated(list);
+
+        // A week below in the same month, only the selection changes
+        long newSelectedDay = SELECTED_DAY + WeekIndex.DAYS_PER_WEEK;
+        view.setDate(CalendarViews.toMillis(view, newSelectedDay));
+
+        assertEquals(firstPosition, list.getFirstVisiblePosition());
+        assertEquals(0, metrics.getCount(CalendarView.METRIC_BIND));
+        int oldWeek = CalendarViews.getVirtualViewId(view, SELECTED_DAY) / WeekIndex.DAYS_PER_WEEK;
+        int newWeek = CalendarViews.getVirtualViewId(view, newSelectedDay) / WeekIndex.DAYS_PER_WEEK;
+        for (int i = 0; i < list.getChildCount(); i++) {
+            int week = firstPosition + i;
+            assertEquals("Week " + week, week == oldWeek || week == newWeek,
+                    Shadows.shadowOf(list.getChildAt(i)).wasInvalidated());
+        }
+    }
+
+    @Test
+    public void focusMonthChangeDoesNotRebind() {
+        CalendarView view = CalendarViews.create();
+        view.setFirstDayOfWeek(Calendar.MONDAY);
+        view.setDate(CalendarViews.toMillis(view, SELECTED_DAY));
+        CalendarViews.layoutAndDraw(view);
+        ListView list = (ListView) view.findViewById(android.R.id.list);
+        int firstPosition = list.getFirstVisiblePosition();
+        CalendarMetrics metrics = new CalendarMetrics();
+        view.setMetricsSink(metrics);
+
+        // A shown day of the next month, the focus follows the selected date
+        long newSelectedDay = WeekIndex.toEpochDay(2030, 6, 3);
+        view.setDate(CalendarViews.toMillis(view, newSelectedDay));
+        CalendarViews.layoutAndDraw(view);
+
+        assertEquals(firstPosition, list.getFirstVisiblePosition());
+        assertEquals(0, metrics.getCount(CalendarView.METRIC_BIND));
+        assertTrue(metrics.getCount(CalendarView.METRIC_DRAW) > 0);
+    }
+
+    @Test
+    public void unboundedRangeSpansTheSupportedYears() {
+        CalendarView view = CalendarViews.create("displayMode", "canvas");
+        view.setUnboundedRange();
+
+        assertEquals(WeekIndex.MIN_SUPPORTED_DAY, WeekIndex.toEpochDay(view.getMinDate(), view.getTimeZone()));
+        assertEquals(WeekIndex.MAX_SUPPORTED_DAY, WeekIndex.toEpochDay(view.getMaxDate(), view.getTimeZone()));
+        for (long day : new long[] { WeekIndex.MIN_SUPPORTED_DAY, WeekIndex.MAX_SUPPORTED_DAY }) {
+            view.setDate(CalendarViews.toMillis(view, day));
+            CalendarViews.layoutAndDraw(view);
+            assertEquals(day, WeekIndex.toEpochDay(view.getDate(), view.getTimeZone()));
+            // The edge day is shown and selected at its position
+            AccessibilityNodeInfo info = CalendarViews.findWeeksDisplay(view).getAccessibilityNodeProvider()
+                    .createAccessibilityNodeInfo(CalendarViews.getVirtualViewId(view, day));
+            assertTrue(info.isSelected());
+        }
+    }
+
+    @Test
+    public void tapInSingleModeChangesTheDate() {
+        CalendarView view = CalendarViews.create("displayMode", "canvas");
+        view.setDate(CalendarViews.toMillis(view, SELECTED_DAY));
+        TapListener listener = new TapListener();
+        view.setOnDateChangeListener(listener);
+        view.setOnSelectionChangeListener(listener);
+
+        tap(view, SELECTED_DAY + 1);
+
+        assertEquals(SELECTED_DAY + 1, WeekIndex.toEpochDay(view.getDate(), view.getTimeZone()));
+        assertEquals(1, listener.mDateChangeCount);
+        assertEquals(0, listener.mSelectionChangeCount);
+    }
+
+    @Test
+    public void tapInMultipleModeOnlyReportsTheSelection() {
+        CalendarView view = CalendarViews.create("displayMode", "canvas", "selectionMode", "multiple");
+        view.setDate(CalendarViews.toMillis(view, SELECTED_DAY));
+        TapListener listener = new TapListener();
+        view.setOnDateChangeListener(listener);
+        view.setOnSelectionChangeListener(listener);
+
+        tap(view, SELECTED_DAY + 1);
+        tap(view, SELECTED_DAY + 1);
+
+        assertEquals(SELECTED_DAY, WeekIndex.toEpochDay(view.getDate(), view.getTimeZone()));
+        assertEquals(0, listener.mDateChangeCount);
+        assertEquals(2, listener.mSelectionChangeCount);
+    }
+
+    /**
+     * Taps the given day through its virtual view and runs the posted callbacks.
+     */
+    private static void tap(CalendarView view, long day) {
+        assertTrue(CalendarViews.findWeeksDisplay(view).getAccessibilityNodeProvider().performAction(
+                CalendarViews.getVirtualViewId(view, day), AccessibilityNodeInfo.ACTION_CLICK, null));
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+    }
+
+    private static void assertTimeZoneKeepsTheRange(CalendarView view) {
+        view.setMinDate(CalendarViews.toMillis(view, MIN_DAY));
+        view.setMaxDate(CalendarViews.toMillis(view, MAX_DAY));
+        // The selected date changes by a day at most, the weeks are the same in every zone
+        assertSwitchRebindsOnlyTheVisibleRows(view, TIME_ZONE_SWITCH, 0);
+        assertEquals(MIN_DAY, WeekIndex.toEpochDay(view.getMinDate(), view.getTimeZone()));
+        assertEquals(MAX_DAY, WeekIndex.toEpochDay(view.getMaxDate(), view.getTimeZone()));
+        long selectedDay = WeekIndex.toEpochDay(view.getDate(), view.getTimeZone());
+        assertTrue("Selected " + selectedDay, Math.abs(selectedDay - SELECTED_DAY) <= 1);
+    }
+
+    /**
+     * Measures the given switch, each one followed by the layout and the drawing of a frame,
+     * and checks that it binds at most the visible rows with the given number of data set
+     * changes.
+     *
+     * @return The metrics of the measured switches.
+     */
+    private static CalendarMetrics assertSwitchRebindsOnlyTheVisibleRows(CalendarView view, Switch weeksSwitch,
+            int expectedDataSetChanges) {
+        view.setFirstDayOfWeek(Calendar.MONDAY);
+        view.setDate(CalendarViews.toMillis(view, SELECTED_DAY));
+        CalendarViews.layoutAndDraw(view);
+        CalendarMetrics metrics = new CalendarMetrics();
+        view.setMetricsSink(metrics);
+
+        for (int i = 0; i < WARMUP_SWITCHES; i++) {
+            weeksSwitch.apply(view, i);
+            CalendarViews.layoutAndDraw(view);
+        }
+        metrics.reset();
+        for (int i = 0; i < MEASURED_SWITCHES; i++) {
+            weeksSwitch.apply(view, i);
+            CalendarViews.layoutAndDraw(view);
+        }
+
+        long bindsPerSwitch = metrics.getCount(CalendarView.METRIC_BIND) / MEASURED_SWITCHES;
+        assertTrue("Bound " + bindsPerSwitch + " weeks per switch", bindsPerSwitch <= MAX_VISIBLE_ROWS);
+        assertEquals(expectedDataSetChanges, metrics.getDataSetChangedCount());
+        // The latency of the calendar itself, the time spent in the shadows of the framework
+        // under Robolectric says nothing of a device
+        long switchNanos = (getTotalNanos(metrics, CalendarView.METRIC_BIND)
+                + getTotalNanos(metrics, CalendarView.METRIC_DRAW)) / MEASURED_SWITCHES;
+        assertTrue("Switched in " + switchNanos + " ns", switchNanos < MAX_SWITCH_NANOS);
+        return metrics;
+    }
+
+    /**
+     * A change of a setting of the calendar.
+     */
+    private interface Switch {
+
+        void apply(CalendarView view, int i);
+    }
+
+    private static final class TapListener implements CalendarView.OnDateChangeListener,
+            CalendarView.OnSelectionChangeListener {
+
+        int mDateChangeCount;
+        int mSelectionChangeCount;
+
+        @Override
+        public void onSelectedDayChange(CalendarView view, int year, int month, int dayOfMonth) {
+            mDateChangeCount++;
+        }
+
+        @Override
+        public void onSelectionChange(CalendarView view, long[] selectedRanges, long[] deselectedRanges) {
+            mSelectionChangeCount++;
+        }
+    }
+
+    private static void clearInvalidated(ViewGroup group) {
+        for (int i = 0; i < group.getChildCount(); i++) {
+            Shadows.shadowOf(group.getChildAt(i)).clearWasInvalidated();
+        }
+    }
+
+    private static long getTotalNanos(CalendarMetrics metrics, int metric) {
+        return metrics.getMeanNanos(metric) * metrics.getCount(metric);
+    }
+}
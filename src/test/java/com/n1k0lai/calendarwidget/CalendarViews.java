@@ -0,0 +1,172 @@
+package com.n1k0lai.calendarwidget;
+
+import android.app.Activity;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.SystemClock;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+
+import org.robolectric.Robolectric;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.res.Attribute;
+import org.robolectric.shadows.RoboAttributeSet;
+import org.robolectric.shadows.ShadowApplication;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.util.ArrayList;
+
+/**
+ * Creates and drives the calendar views of the tests.
+ */
+final class CalendarViews {
+
+    static final int WIDTH = 700;
+    static final int HEIGHT = 900;
+
+    /**
+     * The default number of shown weeks.
+     */
+    static final int SHOWN_WEEK_COUNT = 6;
+
+    private static final String PACKAGE_NAME = "com.n1k0lai.calendarwidget";
+
+    private CalendarViews() {
+    }
+
+    /**
+     * Creates a calendar with the given attributes of the library, e.g. <code>displayMode</code>,
+     * attaches it to an activity and lays it out.
+     *
+     * @param attributes The names and values of the attributes.
+     */
+    static CalendarView create(String... attributes) {
+        return attach(new CalendarView(createActivity(), createAttributes(attributes)));
+    }
+
+    /**
+     * Creates a visible activity for the calendars to attach to.
+     */
+    static Activity createActivity() {
+        return Robolectric.buildActivity(Activity.class).create().start().resume().visible().get();
+    }
+
+    /**
+     * Sets the given calendar, created with an activity, as the content of its activity and
+     * lays it out.
+     */
+    static <T extends CalendarView> T attach(T view) {
+        ((Activity) view.getContext()).setContentView(view, new ViewGroup.LayoutParams(WIDTH, HEIGHT));
+        layout(view);
+        return view;
+    }
+
+    /**
+     * Creates a calendar with the given attributes without laying it out.
+     */
+    static CalendarView createDetached(String... attributes) {
+        return new CalendarView(RuntimeEnvironment.application, createAttributes(attributes));
+    }
+
+    static void layout(View view) {
+        view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, WIDTH, HEIGHT);
+    }
+
+    /**
+     * Lays out the given view and draws it into a bitmap, the way a frame does. The shadows of
+     * the views do not draw their content, so the hierarchy is walked and drawn here.
+     */
+    static void layoutAndDraw(View view) {
+        layout(view);
+        Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+        draw(view, new Canvas(bitmap));
+        bitmap.recycle();
+    }
+
+    private static void draw(View view, Canvas canvas) {
+        if (view.getVisibility() != View.VISIBLE) {
+            return;
+        }
+        int saveCount = canvas.save();
+        canvas.translate(view.getLeft() - view.getScrollX(), view.getTop() - view.getScrollY());
+        ReflectionHelpers.callInstanceMethod(View.class, view, "onDraw",
+                ReflectionHelpers.ClassParameter.from(Canvas.class, canvas));
+        if (view instanceof ViewGroup) {
+            ViewGroup group = (ViewGroup) view;
+            for (int i = 0; i < group.getChildCount(); i++) {
+                draw(group.getChildAt(i), canvas);
+            }
+        }
+        canvas.restoreToCount(saveCount);
+    }
+
+    /**
+     * Gets the view displaying the weeks in the canvas and the month pager modes, the only
+     * views of the calendar exposing their days as virtual views.
+     */
+    static View findWeeksDisplay(View view) {
+        if (view.getAccessibilityNodeProvider() != null) {
+            return view;
+        }
+        if (view instanceof ViewGroup) {
+            ViewGroup group = (ViewGroup) view;
+            for (int i = 0; i < group.getChildCount(); i++) {
+                View display = findWeeksDisplay(group.getChildAt(i));
+                if (display != null) {
+                    return display;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Drags the given view by the given distance and releases it without a fling.
+     */
+    static void drag(View view, float dx, float dy) {
+        long downTime = SystemClock.uptimeMillis();
+        float x = view.getWidth() / 2f;
+        float y = view.getHeight() / 2f;
+        dispatch(view, MotionEvent.obtain(downTime, downTime, MotionEvent.ACTION_DOWN, x, y, 0));
+        // Slow moves, so the velocity on release is below the fling threshold
+        int steps = 10;
+        for (int i = 1; i <= steps; i++) {
+            long time = downTime + i * 1000;
+            dispatch(view, MotionEvent.obtain(downTime, time, MotionEvent.ACTION_MOVE,
+                    x + dx * i / steps, y + dy * i / steps, 0));
+        }
+        long upTime = downTime + (steps + 1) * 1000;
+        dispatch(view, MotionEvent.obtain(downTime, upTime, MotionEvent.ACTION_UP, x + dx, y + dy, 0));
+    }
+
+    /**
+     * Gets the virtual view of the given day in the canvas and the month pager modes, i.e. its
+     * number of days from the first day of the first week of the range.
+     */
+    static int getVirtualViewId(CalendarView view, long day) {
+        long minDay = WeekIndex.toEpochDay(view.getMinDate(), view.getTimeZone());
+        long firstWeekStartDay = minDay - WeekIndex.getDaysSinceWeekStart(minDay, view.getFirstDayOfWeek());
+        return (int) (day - firstWeekStartDay);
+    }
+
+    static long toMillis(CalendarView view, long day) {
+        return WeekIndex.toMillis(day, view.getTimeZone());
+    }
+
+    private static void dispatch(View view, MotionEvent event) {
+        view.dispatchTouchEvent(event);
+        event.recycle();
+    }
+
+    private static RoboAttributeSet createAttributes(String... attributes) {
+        RoboAttributeSet attributeSet = new RoboAttributeSet(new ArrayList<Attribute>(),
+                ShadowApplication.getInstance().getResourceLoader());
+        for (int i = 0; i < attributes.length; i += 2) {
+            attributeSet.put(PACKAGE_NAME + ":attr/" + attributes[i], attributes[i + 1], PACKAGE_NAME);
+        }
+        return attributeSet;
+    }
+}
@@ -0,0 +1,94 @@
+package com.n1k0lai.calendarwidget;
+
+import android.os.Parcelable;
+import android.text.TextUtils;
+import android.view.View;
+import android.view.accessibility.AccessibilityNodeInfo;
+import android.view.accessibility.AccessibilityNodeProvider;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class MonthPagerViewTest {
+
+    private static final long SELECTED_DAY = WeekIndex.toEpochDay(2030, 5, 12);
+    private static final long NEXT_MONTH_DAY = WeekIndex.toEpochDay(2030, 6, 15);
+    private static final long SETTLE_MILLIS = 1000;
+
+    @Test
+    public void exposesTheDaysOfTheDisplayedMonth() {
+        CalendarView view = CalendarViews.create("displayMode", "monthPager");
+        view.setDate(CalendarViews.toMillis(view, SELECTED_DAY));
+        AccessibilityNodeProvider provider = CalendarViews.findWeeksDisplay(view).getAccessibilityNodeProvider();
+
+        assertNotNull(provider.createAccessibilityNodeInfo(View.NO_ID));
+        AccessibilityNodeInfo info = provider.createAccessibilityNodeInfo(CalendarViews.getVirtualViewId(view, SELECTED_DAY));
+        assertNotNull(info);
+        assertTrue(info.isSelected());
+        assertFalse(TextUtils.isEmpty(info.getContentDescription()));
+        assertNull(provider.createAccessibilityNodeInfo(CalendarViews.getVirtualViewId(view, NEXT_MONTH_DAY)));
+
+        assertTrue(provider.performAction(CalendarViews.getVirtualViewId(view, SELECTED_DAY + 1),
+                AccessibilityNodeInfo.ACTION_CLICK, null));
+        assertEquals(SELECTED_DAY + 1, WeekIndex.toEpochDay(view.getDate(), view.getTimeZone()));
+        assertTrue(provider.createAccessibilityNodeInfo(CalendarViews.getVirtualViewId(view, SELECTED_DAY + 1))
+                .isSelected());
+    }
+
+    @Test
+    public void exposesTheDaysOfTheMonthSwipedTo() {
+        CalendarView view = CalendarViews.create("displayMode", "monthPager");
+        view.setDate(CalendarViews.toMillis(view, SELECTED_DAY));
+        CalendarViews.layoutAndDraw(view);
+
+        swipeToNextMonth(view);
+
+        assertTrue(isShown(view, NEXT_MONTH_DAY));
+        assertFalse(isShown(view, SELECTED_DAY));
+    }
+
+    @Test
+    public void restoresTheDisplayedMonth() {
+        CalendarView view = CalendarViews.create("displayMode", "monthPager");
+        view.setDate(CalendarViews.toMillis(view, SELECTED_DAY));
+        CalendarViews.layoutAndDraw(view);
+        swipeToNextMonth(view);
+
+        Parcelable state = view.onSaveInstanceState();
+        CalendarView restoredView = CalendarViews.createDetached("displayMode", "monthPager");
+        restoredView.onRestoreInstanceState(state);
+        CalendarViews.layout(restoredView);
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+
+        assertTrue(isShown(restoredView, NEXT_MONTH_DAY));
+        assertFalse(isShown(restoredView, SELECTED_DAY));
+        assertEquals(view.getDate(), restoredView.getDate());
+    }
+
+    /**
+     * Swipes the pager to the next month and lets it settle.
+     */
+    private static void swipeToNextMonth(CalendarView view) {
+        View display = CalendarViews.findWeeksDisplay(view);
+        CalendarViews.drag(display, -display.getWidth() * 3 / 4, 0);
+        ShadowLooper.idleMainLooper(SETTLE_MILLIS);
+        display.computeScroll();
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+    }
+
+    private static boolean isShown(CalendarView view, long day) {
+        AccessibilityNodeProvider provider = CalendarViews.findWeeksDisplay(view).getAccessibilityNodeProvider();
+        return provider.createAccessibilityNodeInfo(CalendarViews.getVirtualViewId(view, day)) != null;
+    }
+}
@@ -0,0 +1,91 @@
+package com.n1k0lai.calendarwidget;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class MonthRendererTest {
+
+    private static final int WIDTH = 700;
+    private static final int HEIGHT = 600;
+    private static final int WEEK_HEIGHT = HEIGHT / 6;
+
+    private MonthRenderer mRenderer;
+    private DayDecorations mDecorations;
+
+    @Before
+    public void setUp() {
+        mRenderer = new MonthRenderer(MonthRenderer.Style.obtain(RuntimeEnvironment.application),
+                Locale.US, TimeZone.getTimeZone("UTC"), 0);
+        mDecorations = new DayDecorations();
+        mRenderer.setDayDecorations(mDecorations);
+    }
+
+    @Test
+    public void decoratesOnlyTheWeekOfTheDecoratedDay() {
+        // June 1, 2030 is the last day of the first shown week of June, starting on Sunday
+        long day = WeekIndex.toEpochDay(2030, 5, 1);
+        mDecorations.add(day, day, 1);
+        mRenderer.invalidate();
+
+        DecorationCanvas canvas = new DecorationCanvas();
+        mRenderer.draw(canvas, 2030, 5, WIDTH, HEIGHT);
+        assertEquals(Arrays.asList(0), canvas.mDecoratedWeeks);
+
+        // Drawing again does not carry the flags over from the previous drawing
+        canvas = new DecorationCanvas();
+        mRenderer.draw(canvas, 2030, 5, WIDTH, HEIGHT);
+        assertEquals(Arrays.asList(0), canvas.mDecoratedWeeks);
+
+        // July starts on June 30, its weeks do not contain the decorated day
+        canvas = new DecorationCanvas();
+        mRenderer.draw(canvas, 2030, 6, WIDTH, HEIGHT);
+        assertEquals(0, canvas.mDecoratedWeeks.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsAnInvalidMonth() {
+        mRenderer.draw(new DecorationCanvas(), 2030, 12, WIDTH, HEIGHT);
+    }
+
+    /**
+     * Records the week of each decoration dot, the renderer translating the canvas to each week.
+     */
+    private static final class DecorationCanvas extends Canvas {
+
+        final List<Integer> mDecoratedWeeks = new ArrayList<Integer>();
+
+        private float mTranslateY;
+
+        @Override
+        public void translate(float dx, float dy) {
+            mTranslateY += dy;
+        }
+
+        @Override
+        public void restoreToCount(int saveCount) {
+            mTranslateY = 0;
+        }
+
+        @Override
+        public void drawCircle(float cx, float cy, float radius, Paint paint) {
+            mDecoratedWeeks.add((int) (mTranslateY / WEEK_HEIGHT));
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.n1k0lai.calendarwidget;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the arithmetic of the {@link WeekIndex} against the proleptic Gregorian
+ * {@link Calendar} at the edges of the supported range and across the DST transitions.
+ */
+public class WeekIndexTest {
+
+    private static final int DAYS_PER_WEEK = WeekIndex.DAYS_PER_WEEK;
+    private static final int EDGE_WEEK_COUNT = 60;
+    private static final int MAX_WEEK_HEIGHT = 1000;
+    private static final String[] DST_TIME_ZONES = {
+            "America/New_York", "Europe/Berlin", "America/Sao_Paulo", "Australia/Lord_Howe"
+    };
+
+    @Test
+    public void matchesTheCalendarAtTheFirstSupportedYear() {
+        for (int firstDayOfWeek = Calendar.SUNDAY; firstDayOfWeek <= Calendar.SATURDAY; firstDayOfWeek++) {
+            for (int minimalDays = 1; minimalDays <= DAYS_PER_WEEK; minimalDays += 3) {
+                WeekIndex weekIndex = newUnboundedIndex(firstDayOfWeek, minimalDays);
+                assertWeeksMatchTheCalendar(weekIndex, minimalDays, 0, EDGE_WEEK_COUNT);
+            }
+        }
+    }
+
+    @Test
+    public void matchesTheCalendarAtTheLastSupportedYear() {
+        for (int firstDayOfWeek = Calendar.SUNDAY; firstDayOfWeek <= Calendar.SATURDAY; firstDayOfWeek++) {
+            for (int minimalDays = 1; minimalDays <= DAYS_PER_WEEK; minimalDays += 3) {
+                WeekIndex weekIndex = newUnboundedIndex(firstDayOfWeek, minimalDays);
+                int weekCount = weekIndex.getWeekCount();
+                assertWeeksMatchTheCalendar(weekIndex, minimalDays, weekCount - EDGE_WEEK_COUNT, weekCount);
+            }
+        }
+    }
+
+    @Test
+    public void positionsTheEdgesOfTheSupportedRange() {
+        WeekIndex weekIndex = newUnboundedIndex(Calendar.MONDAY, 4);
+        assertEquals(WeekIndex.MIN_SUPPORTED_DAY, WeekIndex.toEpochDay(1, Calendar.JANUARY, 1));
+        assertEquals(WeekIndex.MAX_SUPPORTED_DAY, WeekIndex.toEpochDay(9999, Calendar.DECEMBER, 31));
+        // January 1 of year 1 is a Monday
+        assertEquals(Calendar.MONDAY, WeekIndex.getDayOfWeek(WeekIndex.MIN_SUPPORTED_DAY));
+        assertEquals(WeekIndex.MIN_SUPPORTED_DAY, weekIndex.getFirstDayOf(0));
+        assertEquals(0, weekIndex.getWeekOf(WeekIndex.MIN_SUPPORTED_DAY));
+        assertEquals(0, weekIndex.getWeekOf(WeekIndex.MIN_SUPPORTED_DAY - 1));
+        assertEquals(weekIndex.getWeekCount() - 1, weekIndex.getWeekOf(WeekIndex.MAX_SUPPORTED_DAY));
+        assertEquals(weekIndex.getWeekCount() - 1, weekIndex.getWeekOf(WeekIndex.MAX_SUPPORTED_DAY + 1));
+        long lastWeekFirstDay = weekIndex.getFirstDayOf(weekIndex.getWeekCount() - 1);
+        assertEquals(WeekIndex.MAX_SUPPORTED_DAY - WeekIndex.getDaysSinceWeekStart(
+                WeekIndex.MAX_SUPPORTED_DAY, Calendar.MONDAY), lastWeekFirstDay);
+        // The pixel offsets of the weeks stay within an int for rows of up to a thousand pixels
+        assertTrue((long) weekIndex.getWeekCount() * MAX_WEEK_HEIGHT < Integer.MAX_VALUE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsADayBeforeTheFirstSupportedYear() {
+        new WeekIndex(WeekIndex.MIN_SUPPORTED_DAY - 1, WeekIndex.MAX_SUPPORTED_DAY, Calendar.SUNDAY, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsADayAfterTheLastSupportedYear() {
+        new WeekIndex(WeekIndex.MIN_SUPPORTED_DAY, WeekIndex.MAX_SUPPORTED_DAY + 1, Calendar.SUNDAY, 1);
+    }
+
+    @Test
+    public void mapsEveryHourOfTheDstDaysToTheirDay() {
+        for (String id : DST_TIME_ZONES) {
+            TimeZone zone = TimeZone.getTimeZone(id);
+            Calendar calendar = newCalendar(zone, Calendar.SUNDAY, 1);
+            for (int year : new int[] { 2015, 2030 }) {
+                long firstDay = WeekIndex.toEpochDay(year, Calendar.JANUARY, 1);
+                long lastDay = WeekIndex.toEpochDay(year, Calendar.DECEMBER, 31);
+                for (long day = firstDay; day <= lastDay; day++) {
+                    long millis = WeekIndex.toMillis(day, zone);
+                    assertEquals(id, day, WeekIndex.toEpochDay(millis, zone));
+                    calendar.setTimeInMillis(millis);
+                    assertDayMatches(id, day, calendar);
+                    if (zone.getOffset(millis - WeekIndex.MILLIS_IN_DAY) != zone.getOffset(millis)) {
+                        assertEveryHourMapsToItsDay(zone, calendar, day);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void positionsTheWeeksAcrossTheDstTransitions() {
+        for (String id : DST_TIME_ZONES) {
+            TimeZone zone = TimeZone.getTimeZone(id);
+            long minDay = WeekIndex.toEpochDay(2030, Calendar.JANUARY, 1);
+            long maxDay = WeekIndex.toEpochDay(2030, Calendar.DECEMBER, 31);
+            WeekIndex weekIndex = new WeekIndex(minDay, maxDay, Calendar.SUNDAY, 1);
+            Calendar calendar = newCalendar(zone, Calendar.SUNDAY, 1);
+            for (long day = minDay; day <= maxDay; day++) {
+                // Walk the calendar by days, as the list did, and compare the positions
+                calendar.setTimeInMillis(WeekIndex.toMillis(minDay, zone));
+                calendar.add(Calendar.DAY_OF_MONTH, (int) (day - minDay));
+                long calendarDay = WeekIndex.toEpochDay(calendar);
+                assertEquals(id, day, calendarDay);
+                int week = weekIndex.getWeekOf(day);
+                assertEquals(id, weekIndex.getFirstDayOf(week),
+                        day - WeekIndex.getDaysSinceWeekStart(day, Calendar.SUNDAY));
+            }
+        }
+    }
+
+    private static void assertWeeksMatchTheCalendar(WeekIndex weekIndex, int minimalDaysInFirstWeek,
+            int fromWeek, int toWeek) {
+        Calendar calendar = newCalendar(TimeZone.getTimeZone("UTC"), weekIndex.getFirstDayOfWeek(),
+                minimalDaysInFirstWeek);
+        int[] daysOfMonth = new int[DAYS_PER_WEEK];
+        int[] months = new int[DAYS_PER_WEEK];
+        for (int week = fromWeek; week < toWeek; week++) {
+            long firstDay = weekIndex.getFirstDayOf(week);
+            assertEquals(weekIndex.getFirstDayOfWeek(), WeekIndex.getDayOfWeek(firstDay));
+            assertEquals(week, weekIndex.getWeekOf(Math.max(firstDay, weekIndex.getMinDay())));
+            weekIndex.getWeekDays(week, daysOfMonth, months);
+            for (int d = 0; d < DAYS_PER_WEEK; d++) {
+                long day = firstDay + d;
+                if (!weekIndex.isInRange(day)) {
+                    continue;
+                }
+                calendar.setTimeInMillis(day * WeekIndex.MILLIS_IN_DAY);
+                String message = "Week " + week + " day " + d;
+                assertEquals(message, calendar.get(Calendar.DAY_OF_MONTH), daysOfMonth[d]);
+                assertEquals(message, calendar.get(Calendar.MONTH), months[d]);
+                assertEquals(message, calendar.get(Calendar.WEEK_OF_YEAR), weekIndex.getWeekNumber(week));
+                assertEquals(message, calendar.get(Calendar.DAY_OF_WEEK), WeekIndex.getDayOfWeek(day));
+                assertEquals(message, day, WeekIndex.toEpochDay(WeekIndex.getYear(day),
+                        WeekIndex.getMonth(day), WeekIndex.getDayOfMonth(day)));
+            }
+        }
+    }
+
+    private static void assertEveryHourMapsToItsDay(TimeZone zone, Calendar calendar, long day) {
+        calendar.setTimeInMillis(WeekIndex.toMillis(day, zone));
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        while (calendar.get(Calendar.DAY_OF_MONTH) == WeekIndex.getDayOfMonth(day)) {
+            assertEquals(zone.getID() + " " + calendar.getTime(), day, WeekIndex.toEpochDay(calendar));
+            calendar.add(Calendar.MINUTE, 30);
+        }
+    }
+
+    private static void assertDayMatches(String message, long day, Calendar calendar) {
+        assertEquals(message, WeekIndex.getYear(day), calendar.get(Calendar.YEAR));
+        assertEquals(message, WeekIndex.getMonth(day), calendar.get(Calendar.MONTH));
+        assertEquals(message, WeekIndex.getDayOfMonth(day), calendar.get(Calendar.DAY_OF_MONTH));
+    }
+
+    private static WeekIndex newUnboundedIndex(int firstDayOfWeek, int minimalDaysInFirstWeek) {
+        return new WeekIndex(WeekIndex.MIN_SUPPORTED_DAY, WeekIndex.MAX_SUPPORTED_DAY, firstDayOfWeek,
+                minimalDaysInFirstWeek);
+    }
+
+    /**
+     * Creates a calendar following the proleptic Gregorian calendar, like the {@link WeekIndex}.
+     */
+    private static Calendar newCalendar(TimeZone zone, int firstDayOfWeek, int minimalDaysInFirstWeek) {
+        GregorianCalendar calendar = new GregorianCalendar(zone);
+        calendar.setGregorianChange(new Date(Long.MIN_VALUE));
+        calendar.setFirstDayOfWeek(firstDayOfWeek);
+        calendar.setMinimalDaysInFirstWeek(minimalDaysInFirstWeek);
+        return calendar;
+    }
+}
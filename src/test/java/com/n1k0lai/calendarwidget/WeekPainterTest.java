@@ -0,0 +1,194 @@
+package com.n1k0lai.calendarwidget;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.lang.management.ManagementFactory;
+import java.util.Calendar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class WeekPainterTest {
+
+    private static final int DAYS_PER_WEEK = WeekIndex.DAYS_PER_WEEK;
+    private static final int WARMUP_CYCLES = 2000;
+    private static final int MEASURED_CYCLES = 10000;
+    private static final int WIDTH = 720;
+    private static final int HEIGHT = 96;
+    private static final int SELECTED_CELL = 3;
+
+    private final int[] mDaysOfMonth = new int[DAYS_PER_WEEK];
+    private final int[] mMonths = new int[DAYS_PER_WEEK];
+    private final int[] mDecorations = new int[DAYS_PER_WEEK];
+
+    private WeekIndex mWeekIndex;
+    private MonthRenderer.Style mStyle;
+    private WeekPainter mPainter;
+    private CountingCanvas mCanvas;
+    private RecordingPaint mPaint;
+    private com.sun.management.ThreadMXBean mThreadBean;
+
+    @Before
+    public void setUp() {
+        long minDay = WeekIndex.toEpochDay(1900, 0, 1);
+        long maxDay = WeekIndex.toEpochDay(2100, 11, 31);
+        mWeekIndex = new WeekIndex(minDay, maxDay, Calendar.MONDAY, 4);
+        mStyle = MonthRenderer.Style.obtain(RuntimeEnvironment.application);
+        mPainter = new WeekPainter();
+        mPainter.setSize(WIDTH, HEIGHT);
+        mCanvas = new CountingCanvas();
+        mPaint = new RecordingPaint();
+        mThreadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    }
+
+    @Test
+    public void bindAndDrawDoNotAllocate() {
+        for (int i = 0; i < WARMUP_CYCLES; i++) {
+            bindAndDraw(i);
+        }
+        getAllocatedBytes();
+
+        long allocatedBytes = getAllocatedBytes();
+        for (int i = 0; i < MEASURED_CYCLES; i++) {
+            bindAndDraw(i);
+        }
+        allocatedBytes = getAllocatedBytes() - allocatedBytes;
+
+        // Allow for the few bytes of the measurement itself, far below one byte per cycle
+        assertTrue("Allocated " + allocatedBytes + " bytes in " + MEASURED_CYCLES + " cycles",
+                allocatedBytes < MEASURED_CYCLES);
+    }
+
+    @Test
+    public void drawsEveryDayOfTheWeek() {
+        bindAndDraw(0);
+        assertEquals(DAYS_PER_WEEK + 1, mCanvas.mTextCount);
+    }
+
+    /**
+     * Binds the painter to a week the way a row of the view does and draws it, cycling through
+     * the weeks, the decorations and the selection.
+     */
+    private void bindAndDraw(int cycle) {
+        int week = cycle % mWeekIndex.getWeekCount();
+        long firstDay = mWeekIndex.getFirstDayOf(week);
+        mWeekIndex.getWeekDays(week, mDaysOfMonth, mMonths);
+        int inRangeMask = 0;
+        for (int d = 0; d < DAYS_PER_WEEK; d++) {
+            if (mWeekIndex.isInRange(firstDay + d)) {
+                inRangeMask |= 1 << d;
+            }
+            mDecorations[d] = (cycle + d) % 3;
+        }
+        mPainter.setWeek(mWeekIndex.getWeekNumber(week), mDaysOfMonth, mDecorations, inRangeMask,
+                inRangeMask, true, week != 0);
+
+        int focusMask = 0;
+        for (int d = 0; d < DAYS_PER_WEEK; d++) {
+            if (mMonths[d] == mMonths[0]) {
+                focusMask |= 1 << d;
+            }
+        }
+        mPainter.setFocusMask(focusMask);
+        // Alternate the single and the multiple selection, the arrows keep their geometry as the
+        // paths of the shadows allocate when rebuilt
+        if (cycle % 2 == 0) {
+            mPainter.setSelection(SELECTED_CELL, 0);
+        } else {
+            mPainter.setSelection(-1, cycle & 0x7f);
+        }
+
+        mCanvas.mTextCount = 0;
+        mPainter.draw(mCanvas, mPaint, mStyle, null, null);
+    }
+
+    private long getAllocatedBytes() {
+        return mThreadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * A canvas dropping the drawing, so the measured allocations are only the ones of the
+     * painter and not the ones of the shadows of the graphics.
+     */
+    private static final class CountingCanvas extends Canvas {
+
+        int mTextCount;
+
+        @Override
+        public void drawRect(Rect rect, Paint paint) {
+        }
+
+        @Override
+        public void drawText(String text, float x, float y, Paint paint) {
+            mTextCount++;
+        }
+
+        @Override
+        public void drawCircle(float cx, float cy, float radius, Paint paint) {
+        }
+
+        @Override
+        public void drawLine(float startX, float startY, float stopX, float stopY, Paint paint) {
+        }
+
+        @Override
+        public void drawPath(Path path, Paint paint) {
+        }
+
+        @Override
+        public void drawBitmap(Bitmap bitmap, Rect src, Rect dst, Paint paint) {
+        }
+    }
+
+    /**
+     * A paint holding its state in plain fields for the same reason.
+     */
+    private static final class RecordingPaint extends Paint {
+
+        private int mColor;
+        private float mStrokeWidth;
+        private float mTextSize = 14;
+
+        @Override
+        public void setColor(int color) {
+            mColor = color;
+        }
+
+        @Override
+        public int getColor() {
+            return mColor;
+        }
+
+        @Override
+        public void setStrokeWidth(float width) {
+            mStrokeWidth = width;
+        }
+
+        @Override
+        public float getStrokeWidth() {
+            return mStrokeWidth;
+        }
+
+        @Override
+        public void setFakeBoldText(boolean fakeBoldText) {
+        }
+
+        @Override
+        public float getTextSize() {
+            return mTextSize;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.n1k0lai.calendarwidget;
+
+import android.os.Parcelable;
+import android.text.TextUtils;
+import android.view.View;
+import android.view.accessibility.AccessibilityNodeInfo;
+import android.view.accessibility.AccessibilityNodeProvider;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class WeeksCanvasViewTest {
+
+    private static final long SELECTED_DAY = WeekIndex.toEpochDay(2030, 5, 12);
+
+    @Test
+    public void exposesTheVisibleDaysAsVirtualViews() {
+        CalendarView view = CalendarViews.create("displayMode", "canvas");
+        view.setDate(CalendarViews.toMillis(view, SELECTED_DAY));
+        View display = CalendarViews.findWeeksDisplay(view);
+        AccessibilityNodeProvider provider = display.getAccessibilityNodeProvider();
+
+        assertNotNull(provider.createAccessibilityNodeInfo(View.NO_ID));
+        AccessibilityNodeInfo info = provider.createAccessibilityNodeInfo(CalendarViews.getVirtualViewId(view, SELECTED_DAY));
+        assertNotNull(info);
+        assertTrue(info.isSelected());
+        assertTrue(info.isEnabled());
+        assertFalse(TextUtils.isEmpty(info.getContentDescription()));
+        assertNull(provider.createAccessibilityNodeInfo(CalendarViews.getVirtualViewId(view, SELECTED_DAY + 365)));
+
+        AccessibilityNodeInfo nextInfo = provider.createAccessibilityNodeInfo(
+                CalendarViews.getVirtualViewId(view, SELECTED_DAY + 1));
+        assertFalse(nextInfo.isSelected());
+        assertTrue(provider.performAction(CalendarViews.getVirtualViewId(view, SELECTED_DAY + 1),
+                AccessibilityNodeInfo.ACTION_CLICK, null));
+        assertEquals(SELECTED_DAY + 1, WeekIndex.toEpochDay(view.getDate(), view.getTimeZone()));
+    }
+
+    @Test
+    public void restoresTheFirstVisibleWeek() {
+        CalendarView view = CalendarViews.create("displayMode", "canvas");
+        view.setDate(CalendarViews.toMillis(view, SELECTED_DAY));
+        View display = CalendarViews.findWeeksDisplay(view);
+        int firstVisibleId = getFirstVisibleId(view);
+
+        // Scroll three weeks down, away from the selected date
+        CalendarViews.drag(display, 0, -3 * getWeekHeight(display));
+        int scrolledFirstVisibleId = getFirstVisibleId(view);
+        assertEquals(firstVisibleId + 3 * WeekIndex.DAYS_PER_WEEK, scrolledFirstVisibleId);
+
+        Parcelable state = view.onSaveInstanceState();
+        CalendarView restoredView = CalendarViews.createDetached("displayMode", "canvas");
+        restoredView.onRestoreInstanceState(state);
+        CalendarViews.layout(restoredView);
+
+        assertEquals(scrolledFirstVisibleId, getFirstVisibleId(restoredView));
+        assertEquals(view.getDate(), restoredView.getDate());
+    }
+
+    @Test
+    public void restoresTheFirstVisibleWeekOnceLaidOut() {
+        CalendarView view = CalendarViews.create("displayMode", "canvas");
+        view.setDate(CalendarViews.toMillis(view, SELECTED_DAY));
+        View display = CalendarViews.findWeeksDisplay(view);
+        CalendarViews.drag(display, 0, -2 * getWeekHeight(display));
+        int firstVisibleId = getFirstVisibleId(view);
+
+        CalendarView restoredView = CalendarViews.create("displayMode", "canvas");
+        assertNotEquals(firstVisibleId, getFirstVisibleId(restoredView));
+        restoredView.onRestoreInstanceState(view.onSaveInstanceState());
+
+        assertEquals(firstVisibleId, getFirstVisibleId(restoredView));
+    }
+
+    private static int getWeekHeight(View display) {
+        return (display.getHeight() - display.getPaddingTop() - display.getPaddingBottom())
+                / CalendarViews.SHOWN_WEEK_COUNT;
+    }
+
+    /**
+     * Gets the virtual view of the first day exposed by the display.
+     */
+    private static int getFirstVisibleId(CalendarView view) {
+        AccessibilityNodeProvider provider = CalendarViews.findWeeksDisplay(view).getAccessibilityNodeProvider();
+        int selectedId = CalendarViews.getVirtualViewId(view, WeekIndex.toEpochDay(view.getDate(), view.getTimeZone()));
+        for (int id = selectedId - 100 * WeekIndex.DAYS_PER_WEEK; id < selectedId + 100 * WeekIndex.DAYS_PER_WEEK; id++) {
+            if (provider.createAccessibilityNodeInfo(id) != null) {
+                return id;
+            }
+        }
+        return View.NO_ID;
+    }
+}